@@ -2,12 +2,14 @@ package com.ratingsandreviews;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main application class for Ratings and Reviews System.
  * A PlayStore-like application system where users can add ratings and reviews to applications.
  */
 @SpringBootApplication
+@EnableScheduling
 public class RatingsAndReviewsApplication {
 
     public static void main(String[] args) {
@@ -1,5 +1,6 @@
 package com.ratingsandreviews.application;
 
+import com.ratingsandreviews.util.CursorPage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -31,11 +32,30 @@ public class ApplicationController {
                                              @RequestParam(defaultValue = "desc") String order,
                                              @RequestParam (defaultValue = "0") Integer page,
                                              @RequestParam (defaultValue = "10") Integer size) {
-        Sort sort = order.equalsIgnoreCase("asc") ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
+        Sort sort = ApplicationSort.of(sortBy).toSort(order.equalsIgnoreCase("asc"));
         Pageable pageable = PageRequest.of(page, size, sort);
         return this.applicationService.getApplications(filterKey, filterValue, pageable);
     }
 
+    // Keyset variant, selected by passing `after` (empty for the first page)
+    @GetMapping(params = "after")
+    public CursorPage<Application> getApplicationsAfter(@RequestParam(required = false) String filterKey,
+                                                        @RequestParam(required = false) String filterValue,
+                                                        @RequestParam(defaultValue = "updatedAt") String sortBy,
+                                                        @RequestParam(defaultValue = "desc") String order,
+                                                        @RequestParam(required = false) String after,
+                                                        @RequestParam(defaultValue = "10") int size) {
+        return this.applicationService.getApplicationsAfter(filterKey, filterValue, ApplicationSort.of(sortBy),
+            order.equalsIgnoreCase("asc"), after, size);
+    }
+
+    // Name autocomplete: applications with a word starting with q, shortest names first; no database or cache round trip
+    @GetMapping("/autocomplete")
+    public List<ApplicationNameIndex.Suggestion> autocomplete(@RequestParam String q,
+                                                              @RequestParam(defaultValue = "10") int limit) {
+        return this.applicationService.suggestApplications(q, limit);
+    }
+
     @PostMapping(value = "/install")
     public void installApplication(@RequestBody ApplicationIdRequest applicationIdRequest) {
         String applicationId = applicationIdRequest.applicationId();
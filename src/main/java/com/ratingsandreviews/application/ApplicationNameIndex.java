@@ -0,0 +1,351 @@
+package com.ratingsandreviews.application;
+
+import com.ratingsandreviews.util.AppLogger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process autocomplete over application names.
+ * Names are normalised to lower-case words, and every word prefix is indexed as trigrams of the word padded with two
+ * leading spaces ("  a", " an", "ang", ...), so a query's own trigrams select candidates without touching the database.
+ * Each posting list is an int array of name ordinals kept in rank order (shorter names first), so a lookup walks the
+ * shortest list of the query's trigrams and intersects it with the others, which all advance in the same order, then
+ * checks each surviving candidate against the query and stops after limit matches or MAX_CANDIDATES candidates.
+ * The index is bulk-built once the application is ready, kept current by polling applications by updated_at, and
+ * rebuilt on a schedule to drop deleted applications and compact removed entries. Until a bulk build has succeeded,
+ * each poll retries it instead.
+ */
+@Component
+public class ApplicationNameIndex {
+    private static final AppLogger logger = AppLogger.getInstance(ApplicationNameIndex.class);
+    static final int MAX_LIMIT = 50;
+    // Candidates holding every trigram of the query that are checked before a search gives up on filling its limit
+    static final int MAX_CANDIDATES = 5_000;
+    // Rows updated within this much of the last poll are read again, covering transactions that committed late
+    private static final Duration POLL_OVERLAP = Duration.ofSeconds(5);
+
+    private final ApplicationRepositoryWrapper applicationRepository;
+    private volatile Index index = new Index();
+    private volatile Instant watermark = Instant.EPOCH;
+    // False until a rebuild succeeds; before that there is no snapshot for refresh to catch up from
+    private volatile boolean built;
+
+    @Autowired
+    public ApplicationNameIndex(ApplicationRepositoryWrapper applicationRepository) {
+        this.applicationRepository = applicationRepository;
+    }
+
+    // Applications whose name has a word (or run of words) starting with the query, best ranked first
+    public List<Suggestion> suggest(String query, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        String normalized = normalize(query);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        return index.search(normalized, limit);
+    }
+
+    public void put(UUID id, String name) {
+        index.put(id, name);
+    }
+
+    public void remove(UUID id) {
+        index.remove(id);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${application.applications.name-index.rebuild-cron:0 0 * * * *}")
+    public synchronized void rebuild() {
+        long started = System.currentTimeMillis();
+        Instant rebuildStart = Instant.now();
+        Map<UUID, String> names = new HashMap<>();
+        try {
+            applicationRepository.forEachName(Instant.EPOCH, (id, name, updatedAt) -> names.put(id, name));
+        } catch (RuntimeException e) {
+            // Keep serving the previous index; the next scheduled rebuild tries again
+            logger.error("Application name index rebuild failed: " + e.getMessage());
+            return;
+        }
+        index = Index.build(names);
+        // Catch up with whatever changed while the snapshot was being read
+        watermark = rebuildStart.minus(POLL_OVERLAP);
+        built = true;
+        refresh();
+        logger.info("Application name index rebuilt with " + names.size() + " names in " + (System.currentTimeMillis() - started) + " ms");
+    }
+
+    @Scheduled(fixedDelayString = "${application.applications.name-index.poll-interval-ms:5000}",
+               initialDelayString = "${application.applications.name-index.poll-interval-ms:5000}")
+    public synchronized void refresh() {
+        if (!built) {
+            // Polling from EPOCH would stream the whole catalogue through put under the write lock; bulk-build instead
+            rebuild();
+            return;
+        }
+        Instant[] latest = {watermark};
+        applicationRepository.forEachName(watermark.minus(POLL_OVERLAP), (id, name, updatedAt) -> {
+            index.put(id, name);
+            if (updatedAt.isAfter(latest[0])) {
+                latest[0] = updatedAt;
+            }
+        });
+        watermark = latest[0];
+    }
+
+    // Lower-cased words separated by single spaces, each preceded by one; anything not a letter or digit separates words
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder out = new StringBuilder(text.length() + 1);
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                if (!inWord) {
+                    out.append(' ');
+                    inWord = true;
+                }
+                out.append(c);
+            } else {
+                inWord = false;
+            }
+        }
+        return out.toString();
+    }
+
+    // Trigrams of every word of a normalized text, each word padded with two leading spaces
+    static long[] trigrams(String normalized) {
+        Set<Long> grams = new LinkedHashSet<>();
+        int start = 0;
+        while (start < normalized.length()) {
+            while (start < normalized.length() && normalized.charAt(start) == ' ') {
+                start++;
+            }
+            int end = start;
+            while (end < normalized.length() && normalized.charAt(end) != ' ') {
+                end++;
+            }
+            char previous2 = ' ';
+            char previous1 = ' ';
+            for (int i = start; i < end; i++) {
+                char c = normalized.charAt(i);
+                grams.add(((long) previous2 << 32) | ((long) previous1 << 16) | c);
+                previous2 = previous1;
+                previous1 = c;
+            }
+            start = end;
+        }
+        long[] result = new long[grams.size()];
+        int i = 0;
+        for (Long gram : grams) {
+            result[i++] = gram;
+        }
+        return result;
+    }
+
+    public record Suggestion(UUID id, String name) {
+    }
+
+    /**
+     * Names by ordinal plus trigram postings. Ordinals are never reused: a renamed or removed application leaves a
+     * dead ordinal behind, skipped by lookups and dropped by the next rebuild.
+     */
+    static final class Index {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<UUID, Integer> ordinals = new HashMap<>();
+        private final Map<Long, Postings> postings = new HashMap<>();
+        private final BitSet removed = new BitSet();
+        private final Comparator<Integer> rank = Comparator
+            .<Integer>comparingInt(ordinal -> this.normalized[ordinal].length())
+            .thenComparing(ordinal -> this.normalized[ordinal])
+            .thenComparingInt(ordinal -> ordinal);
+        private UUID[] ids = new UUID[16];
+        private String[] names = new String[16];
+        private String[] normalized = new String[16];
+        private int count;
+
+        // Ordinals are handed out in rank order, so appending keeps every posting list sorted without comparisons
+        static Index build(Map<UUID, String> names) {
+            Index built = new Index();
+            List<Map.Entry<UUID, String>> entries = new ArrayList<>(names.entrySet());
+            List<String> keys = entries.stream().map(entry -> normalize(entry.getValue())).toList();
+            Integer[] order = new Integer[entries.size()];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, Comparator.<Integer>comparingInt(i -> keys.get(i).length()).thenComparing(keys::get));
+            for (int i : order) {
+                built.append(entries.get(i).getKey(), entries.get(i).getValue(), keys.get(i), false);
+            }
+            return built;
+        }
+
+        List<Suggestion> search(String query, int limit) {
+            long[] grams = trigrams(query);
+            lock.readLock().lock();
+            try {
+                Postings[] lists = new Postings[grams.length];
+                for (int i = 0; i < grams.length; i++) {
+                    lists[i] = postings.get(grams[i]);
+                    if (lists[i] == null) {
+                        return List.of();
+                    }
+                }
+                if (lists.length == 0) {
+                    return List.of();
+                }
+                Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+                // One position per other list; candidates come in rank order, so positions only move forward
+                int[] positions = new int[lists.length];
+                List<Suggestion> matches = new ArrayList<>(limit);
+                int examined = 0;
+                for (int i = 0; i < lists[0].size && matches.size() < limit && examined < MAX_CANDIDATES; i++) {
+                    int ordinal = lists[0].ordinals[i];
+                    if (removed.get(ordinal) || !inAll(lists, positions, ordinal)) {
+                        continue;
+                    }
+                    examined++;
+                    if (normalized[ordinal].contains(query)) {
+                        matches.add(new Suggestion(ids[ordinal], names[ordinal]));
+                    }
+                }
+                return matches;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private boolean inAll(Postings[] lists, int[] positions, int ordinal) {
+            for (int j = 1; j < lists.length; j++) {
+                positions[j] = lists[j].seek(positions[j], ordinal, rank);
+                if (positions[j] == lists[j].size || lists[j].ordinals[positions[j]] != ordinal) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void put(UUID id, String name) {
+            String key = normalize(name);
+            lock.writeLock().lock();
+            try {
+                Integer existing = ordinals.get(id);
+                if (existing != null) {
+                    if (names[existing].equals(name)) {
+                        return;
+                    }
+                    removed.set(existing);
+                }
+                append(id, name, key, true);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(UUID id) {
+            lock.writeLock().lock();
+            try {
+                Integer existing = ordinals.remove(id);
+                if (existing != null) {
+                    removed.set(existing);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        int size() {
+            lock.readLock().lock();
+            try {
+                return ordinals.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void append(UUID id, String name, String key, boolean ranked) {
+            if (count == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                names = Arrays.copyOf(names, capacity);
+                normalized = Arrays.copyOf(normalized, capacity);
+            }
+            int ordinal = count++;
+            ids[ordinal] = id;
+            names[ordinal] = name;
+            normalized[ordinal] = key;
+            ordinals.put(id, ordinal);
+            for (long gram : trigrams(key)) {
+                Postings list = postings.computeIfAbsent(gram, g -> new Postings());
+                if (ranked) {
+                    list.insert(ordinal, rank);
+                } else {
+                    list.append(ordinal);
+                }
+            }
+        }
+    }
+
+    private static final class Postings {
+        private int[] ordinals = new int[4];
+        private int size;
+
+        void append(int ordinal) {
+            grow();
+            ordinals[size++] = ordinal;
+        }
+
+        // Binary search for the rank position, then one arraycopy
+        void insert(int ordinal, Comparator<Integer> rank) {
+            int low = seek(0, ordinal, rank);
+            grow();
+            System.arraycopy(ordinals, low, ordinals, low + 1, size - low);
+            ordinals[low] = ordinal;
+            size++;
+        }
+
+        // First position at or after from whose ordinal does not rank before the given one
+        int seek(int from, int ordinal, Comparator<Integer> rank) {
+            int low = from;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (rank.compare(ordinals[mid], ordinal) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private void grow() {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+        }
+    }
+}
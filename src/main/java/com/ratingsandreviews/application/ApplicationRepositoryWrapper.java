@@ -1,21 +1,39 @@
 package com.ratingsandreviews.application;
 
+import com.ratingsandreviews.util.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 import static com.ratingsandreviews.util.Validations.validateOptionalExistence;
 
 @Component
 public class ApplicationRepositoryWrapper {
+    private static final String NAMES_SQL = "SELECT id, name, updated_at FROM applications WHERE updated_at >= ?";
+    private static final int NAMES_FETCH_SIZE = 10_000;
+
     private final ApplicationRepository applicationRepository;
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
 
     @Autowired
-    public ApplicationRepositoryWrapper(ApplicationRepository applicationRepository) {
+    public ApplicationRepositoryWrapper(ApplicationRepository applicationRepository, EntityManager entityManager,
+                                        JdbcTemplate jdbcTemplate) {
         this.applicationRepository = applicationRepository;
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
     }
 
     Application getApplication(String applicationId) {
@@ -27,4 +45,47 @@ public class ApplicationRepositoryWrapper {
         FilterStrategy strategy = FilterStrategyFactory.getStrategy(filterKey);
         return strategy.filter(this.applicationRepository, filterValue, pageable);
     }
-}
\ No newline at end of file
+
+    // Keyset page over the sort's (column, id) index; the filter strategy contributes its own SQL condition
+    @SuppressWarnings("unchecked")
+    List<Application> getApplicationsAfter(String filterKey, String filterValue, ApplicationSort sort, boolean ascending,
+                                           KeysetCursor after, int limit) {
+        FilterStrategy strategy = FilterStrategyFactory.getStrategy(filterKey);
+        String condition = strategy.sqlCondition();
+        String direction = ascending ? "ASC" : "DESC";
+        StringBuilder sql = new StringBuilder("SELECT a.* FROM applications a WHERE TRUE");
+        if (condition != null) {
+            sql.append(" AND ").append(condition);
+        }
+        if (after != null) {
+            sql.append(" AND (a.").append(sort.column()).append(", a.id) ").append(ascending ? ">" : "<").append(" (:key, :id)");
+        }
+        sql.append(" ORDER BY a.").append(sort.column()).append(' ').append(direction)
+            .append(", a.id ").append(direction).append(" LIMIT :limit");
+        Query query = entityManager.createNativeQuery(sql.toString(), Application.class).setParameter("limit", limit);
+        if (condition != null) {
+            query.setParameter("filterValue", strategy.sqlValue(filterValue));
+        }
+        if (after != null) {
+            query.setParameter("key", sort.keyOf(after)).setParameter("id", after.id());
+        }
+        return query.getResultList();
+    }
+
+    // Streams (id, name, updatedAt) of applications updated since the given time, in fetch-size chunks off a
+    // server-side cursor (which Postgres only uses inside a transaction), so the full catalogue is never held at once
+    @Transactional(readOnly = true)
+    public void forEachName(Instant updatedSince, NameConsumer consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(NAMES_SQL);
+            statement.setFetchSize(NAMES_FETCH_SIZE);
+            statement.setTimestamp(1, Timestamp.from(updatedSince));
+            return statement;
+        }, (RowCallbackHandler) rs -> consumer.accept(rs.getObject(1, UUID.class), rs.getString(2), rs.getTimestamp(3).toInstant()));
+    }
+
+    @FunctionalInterface
+    public interface NameConsumer {
+        void accept(UUID id, String name, Instant updatedAt);
+    }
+}
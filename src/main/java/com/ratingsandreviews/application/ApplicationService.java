@@ -1,5 +1,6 @@
 package com.ratingsandreviews.application;
 
+import com.ratingsandreviews.util.CursorPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -8,6 +9,9 @@ import java.util.List;
 public interface ApplicationService {
     Application getApplication(String applicationId);
     Page<Application> getApplications(String filterKey, String filterValue, Pageable pageable);
+    CursorPage<Application> getApplicationsAfter(String filterKey, String filterValue, ApplicationSort sort, boolean ascending, String after, int size);
+    // Autocomplete on application names, served from the in-process name index
+    List<ApplicationNameIndex.Suggestion> suggestApplications(String query, int limit);
     void installApplication(String applicationId);
     void installApplications(List<String> applicationIds);
     void uninstallApplication(String applicationId);
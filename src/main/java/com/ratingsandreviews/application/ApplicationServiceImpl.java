@@ -3,6 +3,8 @@ package com.ratingsandreviews.application;
 import com.ratingsandreviews.cache.CacheKeyBuilder;
 import com.ratingsandreviews.cache.CacheService;
 import com.ratingsandreviews.util.AppLogger;
+import com.ratingsandreviews.util.CursorPage;
+import com.ratingsandreviews.util.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -16,11 +18,14 @@ public class ApplicationServiceImpl implements ApplicationService {
 
     private final ApplicationRepositoryWrapper applicationRepository;
     private final CacheService redisCache;
+    private final ApplicationNameIndex nameIndex;
 
     @Autowired
-    public ApplicationServiceImpl(ApplicationRepositoryWrapper applicationRepository, CacheService redisCacheService) {
+    public ApplicationServiceImpl(ApplicationRepositoryWrapper applicationRepository, CacheService redisCacheService,
+                                  ApplicationNameIndex nameIndex) {
         this.applicationRepository = applicationRepository;
         this.redisCache = redisCacheService;
+        this.nameIndex = nameIndex;
     }
 
     @Override
@@ -42,7 +47,8 @@ public class ApplicationServiceImpl implements ApplicationService {
     @Override
     public Page<Application> getApplications(String filterKey, String filterValue, Pageable pageable) {
         // Cache paginated application lists
-        String cacheKey = CacheKeyBuilder.applicationsPageKey(filterKey, filterValue, pageable.getPageNumber(), pageable.getPageSize());
+        String cacheKey = CacheKeyBuilder.applicationsPageKey(filterKey, filterValue, pageable.getPageNumber(),
+            pageable.getPageSize(), pageable.getSort().toString());
         @SuppressWarnings("unchecked")
         Page<Application> cached = redisCache.get(cacheKey, Page.class);
         if (cached != null) {
@@ -54,6 +60,22 @@ public class ApplicationServiceImpl implements ApplicationService {
         return page;
     }
 
+    @Override
+    public CursorPage<Application> getApplicationsAfter(String filterKey, String filterValue, ApplicationSort sort,
+                                                        boolean ascending, String after, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be greater than zero");
+        }
+        KeysetCursor cursor = after == null || after.isEmpty() ? null : KeysetCursor.decode(after);
+        List<Application> rows = this.applicationRepository.getApplicationsAfter(filterKey, filterValue, sort, ascending, cursor, size + 1);
+        return CursorPage.of(rows, size, sort::cursorOf);
+    }
+
+    @Override
+    public List<ApplicationNameIndex.Suggestion> suggestApplications(String query, int limit) {
+        return nameIndex.suggest(query, limit);
+    }
+
     @Override
     public void installApplication(String applicationId) {
         // For now, just log the installation
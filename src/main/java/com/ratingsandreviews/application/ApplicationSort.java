@@ -0,0 +1,55 @@
+package com.ratingsandreviews.application;
+
+import com.ratingsandreviews.util.KeysetCursor;
+import org.springframework.data.domain.Sort;
+
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Sort keys supported for application listings, each backed by a (column, id) index.
+ */
+public enum ApplicationSort {
+    UPDATED_AT("updatedAt", "updated_at"),
+    CREATED_AT("createdAt", "created_at"),
+    NAME("name", "name");
+
+    private final String property;
+    private final String column;
+
+    ApplicationSort(String property, String column) {
+        this.property = property;
+        this.column = column;
+    }
+
+    public static ApplicationSort of(String value) {
+        return Arrays.stream(values())
+            .filter(sort -> sort.property.equalsIgnoreCase(value))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Unsupported sort: " + value + " (use updatedAt, createdAt or name)"));
+    }
+
+    public Sort toSort(boolean ascending) {
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return Sort.by(direction, property).and(Sort.by(direction, "id"));
+    }
+
+    String column() {
+        return column;
+    }
+
+    KeysetCursor cursorOf(Application application) {
+        return switch (this) {
+            case UPDATED_AT -> KeysetCursor.of(application.getUpdatedAt().toInstant(), application.getId());
+            case CREATED_AT -> KeysetCursor.of(application.getCreatedAt().toInstant(), application.getId());
+            case NAME -> new KeysetCursor(application.getName(), application.getId());
+        };
+    }
+
+    Object keyOf(KeysetCursor cursor) {
+        return switch (this) {
+            case UPDATED_AT, CREATED_AT -> cursor.keyAsInstant().atZone(ZoneOffset.UTC);
+            case NAME -> cursor.key();
+        };
+    }
+}
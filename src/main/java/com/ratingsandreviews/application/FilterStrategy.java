@@ -5,4 +5,13 @@ import org.springframework.data.domain.Pageable;
 
 public interface FilterStrategy {
     Page<Application> filter(ApplicationRepository repository, String filterValue, Pageable pageable);
+
+    // The same filter as a native SQL condition on applications a, with :filterValue bound to sqlValue; null for none
+    default String sqlCondition() {
+        return null;
+    }
+
+    default Object sqlValue(String filterValue) {
+        return filterValue;
+    }
 }
\ No newline at end of file
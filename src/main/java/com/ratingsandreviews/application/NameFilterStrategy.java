@@ -8,5 +8,17 @@ public class NameFilterStrategy implements FilterStrategy {
     public Page<Application> filter(ApplicationRepository repository, String filterValue, Pageable pageable) {
         return repository.findByNameContainingIgnoreCase(filterValue, pageable);
     }
+
+    @Override
+    public String sqlCondition() {
+        return "a.name ILIKE :filterValue";
+    }
+
+    // Contains match, with the LIKE wildcards in the value taken literally
+    @Override
+    public Object sqlValue(String filterValue) {
+        String escaped = (filterValue == null ? "" : filterValue).replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return "%" + escaped + "%";
+    }
 }
 
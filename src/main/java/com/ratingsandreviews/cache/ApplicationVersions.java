@@ -0,0 +1,114 @@
+package com.ratingsandreviews.cache;
+
+import com.ratingsandreviews.stream.FeedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Monotonic version per application, bumped after every committed comment or rating write and served as the
+ * strong ETag of that application's read endpoints, so unchanged reads can be answered with 304 before any query
+ * or serialization.
+ * Counters live in Redis so every instance agrees on them. A missing or evicted counter is re-seeded from the clock
+ * (microseconds), which is always ahead of any value it could previously have reached, so versions never repeat.
+ * Cached bodies behind those endpoints are keyed by the version read before they were built (see scoped), so an
+ * entry another instance or an earlier reader cached is never served under a newer tag. Within a request the
+ * version read for the ETag is kept and reused by scoped, so a conditional GET costs one counter read and its body is
+ * cached under exactly the tag it is served with.
+ * Rating aggregates also include ratings still pending in RatingHistogram, which are committed (and so versioned)
+ * before they are counted; RatingHistogram bumps the version again after every flush, so a body built without another
+ * instance's pending ratings is revalidated once they land.
+ */
+@Component
+public class ApplicationVersions {
+    private static final String REQUEST_ATTRIBUTE_PREFIX = ApplicationVersions.class.getName() + ".";
+    private final CacheService redisCache;
+
+    @Autowired
+    public ApplicationVersions(CacheService redisCacheService) {
+        this.redisCache = redisCacheService;
+    }
+
+    public long current(UUID applicationId) {
+        return redisCache.getCounter(CacheKeyBuilder.applicationVersionKey(applicationId.toString()), seed());
+    }
+
+    // One MGET for many applications; only counters missing from the cache are seeded, one by one, as current() does
+    public Map<UUID, Long> current(Collection<UUID> applicationIds) {
+        List<UUID> ids = List.copyOf(applicationIds);
+        List<Long> cached = redisCache.getAll(
+            ids.stream().map(id -> CacheKeyBuilder.applicationVersionKey(id.toString())).toList(), Long.class);
+        Map<UUID, Long> versions = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            versions.put(ids.get(i), cached.get(i) != null ? cached.get(i) : current(ids.get(i)));
+        }
+        return versions;
+    }
+
+    public long bump(UUID applicationId) {
+        forget(applicationId);
+        return redisCache.incrementCounter(CacheKeyBuilder.applicationVersionKey(applicationId.toString()), seed());
+    }
+
+    // The key of a cached body under the version this request was tagged with (or the current one if it was not);
+    // the body must be built after this call
+    public String scoped(UUID applicationId, String cacheKey) {
+        Long tagged = remembered(applicationId);
+        return cacheKey + ":v" + (tagged != null ? tagged : current(applicationId));
+    }
+
+    public String eTag(UUID applicationId) {
+        long version = current(applicationId);
+        remember(applicationId, version);
+        return "\"" + version + "\"";
+    }
+
+    // One tag for a response built from several applications, e.g. a page of summaries; it changes when any of
+    // their versions does
+    public String eTag(Collection<UUID> applicationIds) {
+        StringBuilder versions = new StringBuilder();
+        current(applicationIds).forEach((id, version) -> versions.append(id).append(':').append(version).append(','));
+        return "\"" + DigestUtils.md5DigestAsHex(versions.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    // Every write publishes a FeedEvent; bump once it has committed, so a new version never labels old data
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onWrite(FeedEvent event) {
+        bump(event.applicationId());
+    }
+
+    private static Long remembered(UUID applicationId) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        return request != null
+            ? (Long) request.getAttribute(REQUEST_ATTRIBUTE_PREFIX + applicationId, RequestAttributes.SCOPE_REQUEST)
+            : null;
+    }
+
+    private static void remember(UUID applicationId, long version) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            request.setAttribute(REQUEST_ATTRIBUTE_PREFIX + applicationId, version, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    private static void forget(UUID applicationId) {
+        RequestAttributes request = RequestContextHolder.getRequestAttributes();
+        if (request != null) {
+            request.removeAttribute(REQUEST_ATTRIBUTE_PREFIX + applicationId, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    private static long seed() {
+        return System.currentTimeMillis() * 1000L;
+    }
+}
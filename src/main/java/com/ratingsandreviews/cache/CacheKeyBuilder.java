@@ -1,5 +1,7 @@
 package com.ratingsandreviews.cache;
 
+import java.util.List;
+
 public class CacheKeyBuilder {
     private static final String DELIMITER = ":";
 
@@ -13,10 +15,10 @@ public class CacheKeyBuilder {
         return "comments:user" + DELIMITER + userId;
     }
 
-    public static String commentsKey(String applicationId, String parentId, Integer sentiment, String userId, int page, int size) {
+    public static String commentsKey(String applicationId, String parentId, Integer sentiment, String userId, int page, int size, String sort) {
         return "comments:app" + DELIMITER + applicationId + DELIMITER + "parent" + DELIMITER + parentId +
                 DELIMITER + "sentiment" + DELIMITER + sentiment + DELIMITER + "user" + DELIMITER + userId +
-                DELIMITER + "page" + DELIMITER + page + DELIMITER + size;
+                DELIMITER + "page" + DELIMITER + page + DELIMITER + size + DELIMITER + sort;
     }
 
     public static String commentsPatternForUser(String applicationId, String userId) {
@@ -32,6 +34,29 @@ public class CacheKeyBuilder {
         return "comments:tree" + DELIMITER + applicationId;
     }
 
+    public static String commentTreePageKey(String applicationId, String parentId, String after, int maxDepth, int maxChildren) {
+        return commentTreePagePattern(applicationId) + DELIMITER + "parent" + DELIMITER + parentId + DELIMITER + "after" + DELIMITER + after +
+                DELIMITER + "depth" + DELIMITER + maxDepth + DELIMITER + "children" + DELIMITER + maxChildren;
+    }
+
+    public static String commentTreePagePattern(String applicationId) {
+        return "comments:tree" + DELIMITER + applicationId + DELIMITER + "lazy";
+    }
+
+    public static String commentSentimentStatsKey(String applicationId) {
+        return "comments:sentiment" + DELIMITER + applicationId;
+    }
+
+    // Every comment key family of one application, for changes that touch many users at once
+    public static List<String> commentApplicationPatterns(String applicationId) {
+        return List.of(
+            "comments:app" + DELIMITER + applicationId,
+            "comments:user" + DELIMITER + "*" + DELIMITER + "app" + DELIMITER + applicationId + "*",
+            commentTreePattern(applicationId),
+            commentSentimentStatsKey(applicationId)
+        );
+    }
+
     // Rating cache keys
     public static String ratingAvgKey(String applicationId) {
         return "rating:avg" + DELIMITER + applicationId;
@@ -41,20 +66,31 @@ public class CacheKeyBuilder {
         return "rating:stats" + DELIMITER + applicationId;
     }
 
-    public static String ratingsPageKey(String applicationId, int page, int size) {
-        return "rating:page" + DELIMITER + applicationId + DELIMITER + page + DELIMITER + size;
+    public static String ratingsPageKey(String applicationId, int page, int size, String sort) {
+        return "rating:page" + DELIMITER + applicationId + DELIMITER + page + DELIMITER + size + DELIMITER + sort;
     }
 
     public static String ratingsPattern(String applicationId) {
         return "rating:*" + DELIMITER + applicationId;
     }
 
+    // Hash of rating histogram flush heartbeats, one field per running instance; outside the rating:* family so rating
+    // evictions keep it
+    public static String histogramHeartbeatsKey() {
+        return "histogram:heartbeats";
+    }
+
     // Application cache keys
+    public static String applicationVersionKey(String applicationId) {
+        return "version:app" + DELIMITER + applicationId;
+    }
+
     public static String applicationKey(String applicationId) {
         return "application" + DELIMITER + applicationId;
     }
 
-    public static String applicationsPageKey(String filterKey, String filterValue, int page, int size) {
-        return "applications" + DELIMITER + filterKey + DELIMITER + filterValue + DELIMITER + page + DELIMITER + size;
+    public static String applicationsPageKey(String filterKey, String filterValue, int page, int size, String sort) {
+        return "applications" + DELIMITER + filterKey + DELIMITER + filterValue + DELIMITER + page + DELIMITER + size +
+                DELIMITER + sort;
     }
 }
@@ -1,10 +1,24 @@
 package com.ratingsandreviews.cache;
 
+import java.util.List;
+import java.util.Map;
+
 public interface CacheService {
     <T> T get(String key, Class<T> type);
+    // One round trip for many keys; the result lines up with keys, with null for every miss
+    <T> List<T> getAll(List<String> keys, Class<T> type);
     void put(String key, Object value);
+    void putAll(Map<String, ?> values);
+    // Fields of one hash, for small families that are read together in one round trip. ttlSeconds applies to the
+    // whole hash and is renewed by every put, so it only lapses once every writer has stopped
+    void putField(String key, String field, Object value, long ttlSeconds);
+    <T> Map<String, T> getFields(String key, Class<T> type);
+    void evictField(String key, String field);
     void evict(String key);
     void evictPattern(String pattern);
+    // Atomic counters; a missing counter starts from seed, so callers can keep them monotonic across evictions
+    long getCounter(String key, long seed);
+    long incrementCounter(String key, long seed);
     void clear();
     String getCacheType();
 }
@@ -3,6 +3,11 @@ package com.ratingsandreviews.cache;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 public class CaffeineCacheService implements CacheService {
@@ -40,11 +45,57 @@ public class CaffeineCacheService implements CacheService {
         return null;
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> getAll(List<String> keys, Class<T> type) {
+        Map<String, Object> present = cache.getAllPresent(keys);
+        List<T> values = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Object value = present.get(key);
+            values.add(type.isInstance(value) ? (T) value : null);
+        }
+        return values;
+    }
+
     @Override
     public void put(String key, Object value) {
         cache.put(key, value);
     }
 
+    @Override
+    public void putAll(Map<String, ?> values) {
+        cache.putAll(values);
+    }
+
+    // A hash is a concurrent map stored under its key. Local to this instance, so nothing outlives it and the hash
+    // keeps the cache-wide expiry
+    @Override
+    @SuppressWarnings("unchecked")
+    public void putField(String key, String field, Object value, long ttlSeconds) {
+        ((Map<String, Object>) cache.get(key, k -> new ConcurrentHashMap<String, Object>())).put(field, value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, T> getFields(String key, Class<T> type) {
+        Map<String, T> values = new LinkedHashMap<>();
+        if (cache.getIfPresent(key) instanceof Map<?, ?> hash) {
+            hash.forEach((field, value) -> {
+                if (type.isInstance(value)) {
+                    values.put((String) field, (T) value);
+                }
+            });
+        }
+        return values;
+    }
+
+    @Override
+    public void evictField(String key, String field) {
+        if (cache.getIfPresent(key) instanceof Map<?, ?> hash) {
+            hash.remove(field);
+        }
+    }
+
     @Override
     public void evict(String key) {
         cache.invalidate(key);
@@ -69,6 +120,16 @@ public class CaffeineCacheService implements CacheService {
         }
     }
 
+    @Override
+    public long getCounter(String key, long seed) {
+        return (Long) cache.asMap().computeIfAbsent(key, k -> seed);
+    }
+
+    @Override
+    public long incrementCounter(String key, long seed) {
+        return (Long) cache.asMap().compute(key, (k, current) -> current instanceof Long value ? value + 1 : seed + 1);
+    }
+
     @Override
     public void clear() {
         cache.invalidateAll();
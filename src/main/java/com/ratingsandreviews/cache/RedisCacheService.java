@@ -1,8 +1,15 @@
 package com.ratingsandreviews.cache;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -29,17 +36,9 @@ public class RedisCacheService implements CacheService {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public <T> T get(String key, Class<T> type) {
         try {
-            Object value = redisTemplate.opsForValue().get(key);
-            if (value != null) {
-                if (type.isInstance(value)) {
-                    return (T) value;
-                }
-                // Try to convert if needed
-                return objectMapper.convertValue(value, type);
-            }
+            return convert(redisTemplate.opsForValue().get(key), type);
         } catch (Exception e) {
             // Log error and return null
             System.err.println("Error getting from Redis cache: " + e.getMessage());
@@ -47,12 +46,44 @@ public class RedisCacheService implements CacheService {
         return null;
     }
 
+    @Override
+    public <T> List<T> getAll(List<String> keys, Class<T> type) {
+        List<T> values = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        if (keys.isEmpty()) {
+            return values;
+        }
+        try {
+            // MGET: a single command whatever the number of keys
+            List<Object> raw = redisTemplate.opsForValue().multiGet(keys);
+            if (raw != null) {
+                for (int i = 0; i < raw.size(); i++) {
+                    values.set(i, convert(raw.get(i), type));
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error getting from Redis cache: " + e.getMessage());
+        }
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T convert(Object value, Class<T> type) {
+        if (value == null) {
+            return null;
+        }
+        if (type.isInstance(value)) {
+            return (T) value;
+        }
+        // Try to convert if needed
+        return objectMapper.convertValue(value, type);
+    }
+
     @Override
     public void put(String key, Object value) {
         put(key, value, DEFAULT_TTL);
     }
 
-    public void put(String key, Object value, long ttlSeconds) {
+    private void put(String key, Object value, long ttlSeconds) {
         try {
             redisTemplate.opsForValue().set(key, value, ttlSeconds, TimeUnit.SECONDS);
         } catch (Exception e) {
@@ -60,6 +91,72 @@ public class RedisCacheService implements CacheService {
         }
     }
 
+    @Override
+    public void putAll(Map<String, ?> values) {
+        if (values.isEmpty()) {
+            return;
+        }
+        try {
+            // MSET cannot set a TTL, so the SETs are pipelined instead: one round trip, every key still expires
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                    values.forEach((key, value) -> redis.opsForValue().set(key, value, DEFAULT_TTL, TimeUnit.SECONDS));
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            System.err.println("Error putting to Redis cache: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void putField(String key, String field, Object value, long ttlSeconds) {
+        try {
+            // HSET and EXPIRE pipelined: one round trip
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                    redis.opsForHash().put(key, field, value);
+                    redis.expire(key, ttlSeconds, TimeUnit.SECONDS);
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            System.err.println("Error putting to Redis cache: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public <T> Map<String, T> getFields(String key, Class<T> type) {
+        Map<String, T> values = new LinkedHashMap<>();
+        try {
+            // HGETALL: one command, reading only this hash
+            redisTemplate.opsForHash().entries(key).forEach((field, value) -> {
+                T converted = convert(value, type);
+                if (converted != null) {
+                    values.put((String) field, converted);
+                }
+            });
+        } catch (Exception e) {
+            System.err.println("Error getting from Redis cache: " + e.getMessage());
+        }
+        return values;
+    }
+
+    @Override
+    public void evictField(String key, String field) {
+        try {
+            redisTemplate.opsForHash().delete(key, field);
+        } catch (Exception e) {
+            System.err.println("Error evicting from Redis cache: " + e.getMessage());
+        }
+    }
+
     @Override
     public void evict(String key) {
         try {
@@ -81,6 +178,39 @@ public class RedisCacheService implements CacheService {
         }
     }
 
+    @Override
+    public long getCounter(String key, long seed) {
+        try {
+            // Plain GET first; only a missing counter pays for the SETNX and the second read
+            Object value = redisTemplate.opsForValue().get(key);
+            if (value == null) {
+                redisTemplate.opsForValue().setIfAbsent(key, seed);
+                value = redisTemplate.opsForValue().get(key);
+            }
+            if (value instanceof Number number) {
+                return number.longValue();
+            }
+        } catch (Exception e) {
+            System.err.println("Error reading counter from Redis cache: " + e.getMessage());
+        }
+        return seed;
+    }
+
+    @Override
+    public long incrementCounter(String key, long seed) {
+        try {
+            // SETNX then INCR: both are atomic on the server, so concurrent writers never lose an increment
+            redisTemplate.opsForValue().setIfAbsent(key, seed);
+            Long value = redisTemplate.opsForValue().increment(key);
+            if (value != null) {
+                return value;
+            }
+        } catch (Exception e) {
+            System.err.println("Error incrementing counter in Redis cache: " + e.getMessage());
+        }
+        return seed + 1;
+    }
+
     @Override
     public void clear() {
         try {
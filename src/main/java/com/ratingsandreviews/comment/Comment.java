@@ -5,7 +5,9 @@ package com.ratingsandreviews.comment;
 import java.time.ZonedDateTime;
 import java.util.UUID;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hibernate.annotations.SQLRestriction;
 import lombok.Data;
 
 import java.util.List;
@@ -15,6 +17,7 @@ import lombok.Setter;
 
 @Data
 @Entity(name = "comments")
+@SQLRestriction("deleted_at IS NULL")
 public class Comment {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -27,18 +30,78 @@ public class Comment {
     private UUID parentId; // null for root
     private ZonedDateTime createdAt;
     private ZonedDateTime updatedAt;
+    // Bumped on every save; returned as the ETag of write responses
+    @Version
+    private long version;
+    // Materialized path of ids from the root down to this comment, e.g. "{rootId}/{parentId}/{id}"; set by the set_comment_path trigger
+    @Column(insertable = false, updatable = false)
+    private String path;
+    // Thread counters kept on root comments only: replies anywhere in the thread and the time of the latest one.
+    // Written exclusively by CommentRepository.incrementReplyCount/decrementReplyCount so saves never overwrite them.
+    @Column(insertable = false, updatable = false)
+    private long replyCount;
+    @Column(insertable = false, updatable = false)
+    private ZonedDateTime lastActivityAt;
+    // Replies with positive and with negative sentiment, and the Wilson lower bound of the positive share among
+    // them (replies without sentiment count towards neither); the set_comment_best_score trigger keeps bestScore in
+    // step with the counters ("best" sort order for reviews)
+    @Column(insertable = false, updatable = false)
+    private long positiveReplies;
+    @Column(insertable = false, updatable = false)
+    private long negativeReplies;
+    @Column(insertable = false, updatable = false)
+    private double bestScore;
+
+    // Set when the comment's subtree is queued for asynchronous deletion; tombstoned rows are invisible to every read
+    @JsonIgnore
+    @Column(insertable = false, updatable = false)
+    private ZonedDateTime deletedAt;
 
     @Getter
     @Setter
     @Transient
     private List<Comment> children = new ArrayList<>();
 
+    // Only set on depth/fan-out limited trees: replies left out of children, and the cursor to page through them
+    @Transient
+    private Long remainingChildren;
+    @Transient
+    private String nextChildrenCursor;
+
     public static final int POSITIVE = 1;
     public static final int NEGATIVE = -1;
+    public static final String PATH_SEPARATOR = "/";
+    // Sorts right after PATH_SEPARATOR, so [path, path + PATH_UPPER_BOUND) covers a comment and all its descendants
+    public static final String PATH_UPPER_BOUND = "0";
 
     // Optionally, helper methods for type safety
     public void setSentimentPositive() { this.sentiment = POSITIVE; }
     public void setSentimentNegative() { this.sentiment = NEGATIVE; }
-    public boolean isPositive() { return Integer.valueOf(POSITIVE).equals(this.sentiment); }
-    public boolean isNegative() { return Integer.valueOf(NEGATIVE).equals(sentiment); }
+    public boolean isPositive() { return sentiment != null && sentiment == POSITIVE; }
+    public boolean isNegative() { return sentiment != null && sentiment == NEGATIVE; }
+
+    // Id of the review this comment belongs to (itself for a root), read from the materialized path
+    public UUID rootId() {
+        if (parentId == null) {
+            return id;
+        }
+        if (path == null) {
+            return null;
+        }
+        int end = path.indexOf(PATH_SEPARATOR);
+        return UUID.fromString(end < 0 ? path : path.substring(0, end));
+    }
+
+    // Ancestor ids, root first, read from the materialized path (falls back to the direct parent if no path is loaded)
+    public List<UUID> ancestorIds() {
+        if (path == null) {
+            return parentId != null ? List.of(parentId) : List.of();
+        }
+        String[] segments = path.split(PATH_SEPARATOR);
+        List<UUID> ids = new ArrayList<>(segments.length - 1);
+        for (int i = 0; i < segments.length - 1; i++) {
+            ids.add(UUID.fromString(segments[i]));
+        }
+        return ids;
+    }
 }
@@ -0,0 +1,88 @@
+package com.ratingsandreviews.comment;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Plain JDBC writer for bulk comment imports.
+ * Rows are sent as JDBC batches, which the driver folds into multi-row INSERTs (reWriteBatchedInserts in DBConnection).
+ * The set_comment_path trigger still fills in the materialized path of every row.
+ */
+@Component
+public class CommentBatchRepository {
+    static final int BATCH_SIZE = 500;
+    private static final String INSERT_SQL =
+        "INSERT INTO comments (id, application_id, user_id, text, sentiment, level, parent_id, created_at, updated_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INCREMENT_REPLY_COUNT_SQL =
+        "UPDATE comments SET reply_count = reply_count + ?, positive_replies = positive_replies + ?, negative_replies = negative_replies + ?, " +
+        "last_activity_at = GREATEST(last_activity_at, ?) WHERE id = ?";
+
+    // Hides a subtree from every read at once; returns the author of each tombstoned row
+    private static final String TOMBSTONE_SUBTREE_SQL =
+        "UPDATE comments SET deleted_at = ? WHERE application_id = ? AND path >= ? AND path < ? AND deleted_at IS NULL RETURNING user_id";
+
+    // Deepest rows first: descendants sort after their ancestors by path, so deleting the highest paths never
+    // cascades into rows outside the batch
+    private static final String DELETE_SUBTREE_BATCH_SQL =
+        "DELETE FROM comments WHERE id IN (SELECT id FROM comments WHERE application_id = ? AND path >= ? AND path < ? ORDER BY path DESC LIMIT ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public CommentBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Comments must already carry their id, level and timestamps
+    public void insertAll(List<Comment> comments) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, comments, BATCH_SIZE, (ps, c) -> {
+            ps.setObject(1, c.getId());
+            ps.setObject(2, c.getApplicationId());
+            ps.setObject(3, c.getUserId());
+            ps.setString(4, c.getText());
+            if (c.getSentiment() != null) {
+                ps.setShort(5, c.getSentiment());
+            } else {
+                ps.setNull(5, Types.SMALLINT);
+            }
+            ps.setLong(6, c.getLevel());
+            ps.setObject(7, c.getParentId(), Types.OTHER);
+            ps.setTimestamp(8, Timestamp.from(c.getCreatedAt().toInstant()));
+            ps.setTimestamp(9, Timestamp.from(c.getUpdatedAt().toInstant()));
+        });
+    }
+
+    // One counter update per touched thread, however many replies it received
+    public void incrementReplyCounts(Map<UUID, Long> repliesByRoot, Map<UUID, Long> positiveRepliesByRoot,
+                                     Map<UUID, Long> negativeRepliesByRoot, ZonedDateTime activityAt) {
+        Timestamp at = Timestamp.from(activityAt.toInstant());
+        jdbcTemplate.batchUpdate(INCREMENT_REPLY_COUNT_SQL, new ArrayList<>(repliesByRoot.entrySet()), BATCH_SIZE, (ps, entry) -> {
+            ps.setLong(1, entry.getValue());
+            ps.setLong(2, positiveRepliesByRoot.getOrDefault(entry.getKey(), 0L));
+            ps.setLong(3, negativeRepliesByRoot.getOrDefault(entry.getKey(), 0L));
+            ps.setTimestamp(4, at);
+            ps.setObject(5, entry.getKey());
+        });
+    }
+
+    public List<UUID> tombstoneSubtree(UUID applicationId, String path, String pathEnd, ZonedDateTime deletedAt) {
+        return jdbcTemplate.queryForList(TOMBSTONE_SUBTREE_SQL, UUID.class,
+            Timestamp.from(deletedAt.toInstant()), applicationId, path, pathEnd);
+    }
+
+    // Removes up to BATCH_SIZE rows of the subtree [path, pathEnd); returns how many were removed
+    public int deleteSubtreeBatch(UUID applicationId, String path, String pathEnd) {
+        return jdbcTemplate.update(DELETE_SUBTREE_BATCH_SQL, applicationId, path, pathEnd, BATCH_SIZE);
+    }
+}
@@ -1,12 +1,18 @@
 package com.ratingsandreviews.comment;
 
+import com.ratingsandreviews.cache.ApplicationVersions;
+import com.ratingsandreviews.util.CursorPage;
+import com.ratingsandreviews.util.WriteView;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.UUID;
@@ -15,10 +21,13 @@ import java.util.UUID;
 @RequestMapping("/v1/comments")
 public class CommentController {
     private final CommentService service;
+    // GETs answer 304 Not Modified while If-None-Match still equals the application's version
+    private final ApplicationVersions applicationVersions;
 
     @Autowired
-    public CommentController(CommentService service) {
+    public CommentController(CommentService service, ApplicationVersions applicationVersions) {
         this.service = service;
+        this.applicationVersions = applicationVersions;
     }
 
     // Get paginated, sorted comments for an application (parentId=null for root/review, else for nested)
@@ -31,13 +40,58 @@ public class CommentController {
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "updatedAt") String sortBy,
             @RequestParam(defaultValue = "desc") String order,
-            @RequestParam(required = false) UUID userId) {
-        Sort sort = order.equalsIgnoreCase("asc") ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
+            @RequestParam(required = false) UUID userId,
+            WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(applicationId))) {
+            return null;
+        }
+        // sortBy is updatedAt or one of the thread sorts replyCount ("most replies"), lastActivityAt ("latest activity") and
+        // best (stored Wilson score, "most helpful"), served for reviews by partial indexes; id breaks ties so pages stay stable.
+        // Anything else is rejected with 400 rather than handed to the query as a property name.
+        Sort sort = CommentSort.of(sortBy).toSort(order.equalsIgnoreCase("asc"));
         Pageable pageable = PageRequest.of(page, size, sort);
         Page<Comment> commentPage = service.getComments(applicationId, parentId, sentiment, pageable, userId);
         return ResponseEntity.ok(commentPage);
     }
 
+    // Keyset (cursor) variant of getComments, selected by passing `after` (empty for the first page).
+    // Ordered by updatedAt then id, so every page costs the same index range read regardless of depth.
+    @GetMapping(value = "/application/{applicationId}", params = "after")
+    public ResponseEntity<CursorPage<Comment>> getCommentsByCursor(
+            @PathVariable UUID applicationId,
+            @RequestParam(required = false) UUID parentId,
+            @RequestParam(required = false) Integer sentiment,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "desc") String order,
+            WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(applicationId))) {
+            return null;
+        }
+        CursorPage<Comment> commentPage = service.getCommentsByCursor(applicationId, parentId, sentiment, after, size, order.equalsIgnoreCase("asc"));
+        return ResponseEntity.ok(commentPage);
+    }
+
+    // Keyset variant of the user-pinned feed, selected by passing both userId and `after` (empty for the first page).
+    // Keeps the requested sort (updatedAt, replyCount, lastActivityAt or best) across the pinned and the other roots.
+    @GetMapping(value = "/application/{applicationId}", params = {"after", "userId"})
+    public ResponseEntity<CursorPage<Comment>> getPinnedCommentsByCursor(
+            @PathVariable UUID applicationId,
+            @RequestParam UUID userId,
+            @RequestParam(required = false) Integer sentiment,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "updatedAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String order,
+            WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(applicationId))) {
+            return null;
+        }
+        CursorPage<Comment> commentPage = service.getPinnedCommentsByCursor(applicationId, userId, sentiment,
+                CommentSort.of(sortBy), order.equalsIgnoreCase("asc"), after, size);
+        return ResponseEntity.ok(commentPage);
+    }
+
     // Get user's comments for a application, with context (ancestor chain)
     @GetMapping("/user/{userId}/application/{applicationId}")
     public ResponseEntity<UserCommentsResponse> getUserCommentsForApplication(
@@ -45,15 +99,23 @@ public class CommentController {
             @PathVariable UUID userId,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(required = false) Integer sentiment) {
+            @RequestParam(required = false) Integer sentiment,
+            WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(applicationId))) {
+            return null;
+        }
         Pageable pageable = PageRequest.of(page, size);
         UserCommentsResponse response = service.getUserCommentsForApplication(applicationId, userId, pageable, sentiment);
         return ResponseEntity.ok(response);
     }
 
-    // Add a comment or review (parentId null for review)
+    // Add a comment or review (parentId null for review). Returns just the saved comment with its id and version as
+    // ETag; view=full (or Prefer: return=representation) returns the first page of its siblings instead
     @PostMapping
-    public ResponseEntity<Page<Comment>> addComment(@RequestBody AddCommentRequest commentRequest) {
+    public ResponseEntity<?> addComment(
+            @RequestBody AddCommentRequest commentRequest,
+            @RequestParam(required = false) String view,
+            @RequestHeader(value = "Prefer", required = false) String prefer) {
         // use CommentBuilder to create Comment object from the request
         Comment comment = new CommentBuilder()
                 .applicationId(UUID.fromString(commentRequest.applicationId()))
@@ -63,41 +125,168 @@ public class CommentController {
                 .text(commentRequest.text())
                 .build();
         Comment saved = service.addComment(comment);
+        if (WriteView.resolve(view, prefer) == WriteView.MINIMAL) {
+            return ResponseEntity.ok().eTag(WriteView.eTag(saved.getId(), saved.getVersion())).body(saved);
+        }
         Pageable pageable = PageRequest.of(0, 10, Sort.by("updatedAt").descending());
         Page<Comment> page = service.getComments(saved.getApplicationId(), comment.getParentId(), null, pageable, null);
         return ResponseEntity.ok(page);
     }
 
-    // Update a comment or review
+    // Add many comments or reviews in one request; parents must already exist
+    @PostMapping("/batch")
+    public ResponseEntity<AddCommentsResponse> addComments(@RequestBody List<AddCommentRequest> commentRequests) {
+        List<Comment> comments = commentRequests.stream()
+                .map(commentRequest -> new CommentBuilder()
+                        .applicationId(UUID.fromString(commentRequest.applicationId()))
+                        .parentId(commentRequest.parentId() != null ? UUID.fromString(commentRequest.parentId()) : null)
+                        .sentiment(commentRequest.sentiment())
+                        .userId(UUID.fromString(commentRequest.userId()))
+                        .text(commentRequest.text())
+                        .build())
+                .toList();
+        List<Comment> saved = service.addComments(comments);
+        return ResponseEntity.ok(new AddCommentsResponse(saved.size(), saved.stream().map(Comment::getId).toList()));
+    }
+
+    // Update a comment or review; same response views as addComment
     @PutMapping("/{id}")
-    public ResponseEntity<Page<Comment>> updateComment(@PathVariable UUID id, @RequestBody UpdateCommentRequest updated) {
+    public ResponseEntity<?> updateComment(
+            @PathVariable UUID id,
+            @RequestBody UpdateCommentRequest updated,
+            @RequestParam(required = false) String view,
+            @RequestHeader(value = "Prefer", required = false) String prefer) {
         Comment saved = service.updateComment(id, updated.text, updated.sentiment);
+        if (WriteView.resolve(view, prefer) == WriteView.MINIMAL) {
+            return ResponseEntity.ok().eTag(WriteView.eTag(saved.getId(), saved.getVersion())).body(saved);
+        }
         Pageable pageable = PageRequest.of(0, 10, Sort.by("updatedAt").descending());
         Page<Comment> page = service.getComments(saved.getApplicationId(), saved.getParentId(), null, pageable, null);
         return ResponseEntity.ok(page);
     }
 
-    // Delete a comment or review
+    // Delete a comment or review; 204 unless view=full asks for the first page of what remains
     @DeleteMapping("/{id}")
-    public ResponseEntity<Page<Comment>> deleteComment(@PathVariable UUID id, @RequestParam UUID applicationId, @RequestParam(required = false) UUID parentId) {
+    public ResponseEntity<?> deleteComment(
+            @PathVariable UUID id,
+            @RequestParam UUID applicationId,
+            @RequestParam(required = false) UUID parentId,
+            @RequestParam(required = false) String view,
+            @RequestHeader(value = "Prefer", required = false) String prefer) {
         service.deleteComment(id);
+        if (WriteView.resolve(view, prefer) == WriteView.MINIMAL) {
+            return ResponseEntity.noContent().build();
+        }
         Pageable pageable = PageRequest.of(0, 10, Sort.by("updatedAt").descending());
         Page<Comment> page = service.getComments(applicationId, parentId, null, pageable, null);
         return ResponseEntity.ok(page);
     }
 
-    // Get the full comment tree for an application
-    @GetMapping("/tree/{applicationId}")
+    // Delete a comment or review with all of its replies in the background, selected by async=true. The subtree is
+    // hidden from reads immediately; the returned job reports how many rows have been removed so far.
+    @DeleteMapping(value = "/{id}", params = "async=true")
+    public ResponseEntity<CommentDeletionJob> deleteCommentAsync(@PathVariable UUID id) {
+        CommentDeletionJob job = service.deleteCommentAsync(id);
+        return ResponseEntity.accepted().body(job);
+    }
+
+    // Progress of an asynchronous delete
+    @GetMapping("/deletions/{jobId}")
+    public CommentDeletionJob getDeletionJob(@PathVariable UUID jobId) {
+        return service.getDeletionJob(jobId);
+    }
+
+    // Get the full comment tree for an application. The tree variants below are selected by maxDepth or stream=true,
+    // which exclude each other: a request with both matches no mapping and is rejected with 400.
+    @GetMapping(value = "/tree/{applicationId}", params = {"!maxDepth", "stream!=true"})
     public List<Comment> getCommentTree(
             @PathVariable String applicationId,
-            @RequestParam(required = false) String userId) {
+            @RequestParam(required = false) String userId,
+            WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(UUID.fromString(applicationId)))) {
+            return null;
+        }
         // assuming we receive userId from the authentication context in a real scenario
         return service.getCommentTree(UUID.fromString(applicationId), UUID.fromString(userId));
     }
 
+    // Get a depth and fan-out limited tree, selected by passing maxDepth. Cut nodes carry remainingChildren and
+    // nextChildrenCursor; expand one by calling again with parentId={node id}&after={nextChildrenCursor}.
+    @GetMapping(value = "/tree/{applicationId}", params = {"maxDepth", "stream!=true"})
+    public ResponseEntity<CursorPage<Comment>> getCommentTreePage(
+            @PathVariable UUID applicationId,
+            @RequestParam(required = false) UUID parentId,
+            @RequestParam(required = false) String after,
+            @RequestParam int maxDepth,
+            @RequestParam(defaultValue = "10") int maxChildrenPerNode,
+            WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(applicationId))) {
+            return null;
+        }
+        return ResponseEntity.ok(service.getCommentTreePage(applicationId, parentId, after, maxDepth, maxChildrenPerNode));
+    }
+
+    // Get positive/negative review totals for an application
+    @GetMapping("/sentiment-stats/{applicationId}")
+    public SentimentStatsResponse getSentimentStats(@PathVariable UUID applicationId, WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(applicationId))) {
+            return null;
+        }
+        return service.getSentimentStats(applicationId);
+    }
+
+    // Full-text search of an application's comments, paged with the returned cursor. Ranking is recency-bounded: only
+    // the most recently updated matches (application.comments.search.max-candidates) are ranked, best match first, so
+    // a better but older match is not returned at all; truncated says some matches were left out that way
+    @GetMapping("/search/{applicationId}")
+    public ResponseEntity<CommentSearchPage> searchComments(
+            @PathVariable UUID applicationId,
+            @RequestParam String q,
+            @RequestParam(required = false) Integer sentiment,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(applicationId))) {
+            return null;
+        }
+        return ResponseEntity.ok(service.searchComments(applicationId, q, sentiment, after, size));
+    }
+
+    // Get one comment and all of its replies as a tree
+    @GetMapping("/tree/{applicationId}/{commentId}")
+    public Comment getCommentSubtree(@PathVariable UUID applicationId, @PathVariable UUID commentId, WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(applicationId))) {
+            return null;
+        }
+        return service.getCommentSubtree(applicationId, commentId);
+    }
+
+    // Streaming variants of the two tree endpoints above (stream=true): JSON is written to the socket as rows are
+    // read from the database cursor, so memory per request stays bounded however large the tree is
+    @GetMapping(value = "/tree/{applicationId}", params = {"stream=true", "!maxDepth"})
+    public ResponseEntity<StreamingResponseBody> streamCommentTree(@PathVariable UUID applicationId, WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(applicationId))) {
+            return null;
+        }
+        StreamingResponseBody body = out -> service.streamCommentTree(applicationId, null, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @GetMapping(value = "/tree/{applicationId}/{commentId}", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamCommentSubtree(@PathVariable UUID applicationId, @PathVariable UUID commentId, WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(applicationId))) {
+            return null;
+        }
+        StreamingResponseBody body = out -> service.streamCommentTree(applicationId, commentId, out);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     public record AddCommentRequest(String applicationId, String parentId, Short sentiment, String userId, String text) {
     }
 
     public record UpdateCommentRequest(String text, Short sentiment) {
     }
+
+    public record AddCommentsResponse(int inserted, List<UUID> ids) {
+    }
 }
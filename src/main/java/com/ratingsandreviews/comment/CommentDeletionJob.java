@@ -0,0 +1,42 @@
+package com.ratingsandreviews.comment;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+// Progress of an asynchronous subtree deletion: the subtree is tombstoned up front, then CommentDeletionWorker
+// removes its rows in batches until none are left
+@Getter
+@Setter
+@NoArgsConstructor
+@Entity(name = "comment_deletion_jobs")
+public class CommentDeletionJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+    private UUID applicationId;
+    private UUID commentId;
+    private String path; // materialized path of the deleted comment; the job covers [path, path + Comment.PATH_UPPER_BOUND)
+    @Enumerated(EnumType.STRING)
+    private Status status;
+    private long total; // rows tombstoned when the job was created
+    private long deleted; // rows removed so far
+    private ZonedDateTime createdAt;
+    private ZonedDateTime updatedAt;
+    private ZonedDateTime completedAt;
+
+    public enum Status {
+        PENDING,
+        RUNNING,
+        COMPLETED
+    }
+}
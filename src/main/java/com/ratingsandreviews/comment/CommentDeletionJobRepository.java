@@ -0,0 +1,19 @@
+package com.ratingsandreviews.comment;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+import java.util.UUID;
+
+public interface CommentDeletionJobRepository extends JpaRepository<CommentDeletionJob, UUID> {
+    // Oldest unfinished job, row-locked for the calling transaction; jobs locked by another worker are skipped
+    @Query(value = """
+        SELECT j.* FROM comment_deletion_jobs j
+        WHERE j.status <> 'COMPLETED'
+        ORDER BY j.created_at
+        LIMIT 1
+        FOR UPDATE SKIP LOCKED
+    """, nativeQuery = true)
+    Optional<CommentDeletionJob> claimNext();
+}
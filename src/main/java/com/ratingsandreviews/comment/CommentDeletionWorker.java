@@ -0,0 +1,72 @@
+package com.ratingsandreviews.comment;
+
+import com.ratingsandreviews.cache.ApplicationVersions;
+import com.ratingsandreviews.cache.CacheKeyBuilder;
+import com.ratingsandreviews.cache.CacheService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Optional;
+
+/**
+ * Background half of CommentService.deleteCommentAsync.
+ * Removes the rows of tombstoned subtrees in batches of CommentBatchRepository.BATCH_SIZE, one transaction per batch,
+ * so no request thread waits on the delete and locks are held for one batch at a time. Jobs are claimed with
+ * FOR UPDATE SKIP LOCKED, so several instances can drain the queue side by side.
+ */
+@Component
+public class CommentDeletionWorker {
+    private final CommentDeletionJobRepository jobRepository;
+    private final CommentBatchRepository batchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheService caffeineCache;
+    private final ApplicationVersions applicationVersions;
+
+    @Autowired
+    public CommentDeletionWorker(CommentDeletionJobRepository jobRepository, CommentBatchRepository batchRepository,
+                                 TransactionTemplate transactionTemplate, CacheService caffeineCacheService,
+                                 ApplicationVersions applicationVersions) {
+        this.jobRepository = jobRepository;
+        this.batchRepository = batchRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.caffeineCache = caffeineCacheService;
+        this.applicationVersions = applicationVersions;
+    }
+
+    @Scheduled(fixedDelayString = "${application.comments.deletion.poll-interval-ms:1000}")
+    public void drain() {
+        CommentDeletionJob job;
+        while ((job = transactionTemplate.execute(status -> deleteNextBatch())) != null) {
+            if (job.getStatus() == CommentDeletionJob.Status.COMPLETED) {
+                // Sentiment totals only drop as rows are removed, so refresh every comment cache of the application once
+                CacheKeyBuilder.commentApplicationPatterns(job.getApplicationId().toString()).forEach(caffeineCache::evictPattern);
+                applicationVersions.bump(job.getApplicationId());
+            }
+        }
+    }
+
+    // Deletes one batch of the oldest unfinished job and records the progress; null when no job is waiting
+    CommentDeletionJob deleteNextBatch() {
+        Optional<CommentDeletionJob> next = jobRepository.claimNext();
+        if (next.isEmpty()) {
+            return null;
+        }
+        CommentDeletionJob job = next.get();
+        int deleted = batchRepository.deleteSubtreeBatch(job.getApplicationId(), job.getPath(), job.getPath() + Comment.PATH_UPPER_BOUND);
+        ZonedDateTime now = Instant.now().atZone(ZoneOffset.UTC);
+        job.setDeleted(job.getDeleted() + deleted);
+        job.setUpdatedAt(now);
+        if (deleted < CommentBatchRepository.BATCH_SIZE) {
+            job.setStatus(CommentDeletionJob.Status.COMPLETED);
+            job.setCompletedAt(now);
+        } else {
+            job.setStatus(CommentDeletionJob.Status.RUNNING);
+        }
+        return jobRepository.save(job);
+    }
+}
@@ -0,0 +1,19 @@
+package com.ratingsandreviews.comment;
+
+import com.ratingsandreviews.util.KeysetCursor;
+
+import java.util.List;
+import java.util.UUID;
+
+// Root pages of the user-pinned feed in a CommentSort order, mixed into CommentRepository (see CommentFeedQueriesImpl).
+// A page starts strictly after the keyset cursor, or after skipping offset rows when there is none; sentiment = 0
+// means no sentiment filter.
+public interface CommentFeedQueries {
+    // Roots of every thread the user wrote in, their own reviews included
+    List<Comment> findPinnedRoots(UUID applicationId, UUID userId, int sentiment, CommentSort sort, boolean ascending,
+                                  KeysetCursor after, long offset, int limit);
+
+    // Every other root
+    List<Comment> findUnpinnedRoots(UUID applicationId, UUID userId, int sentiment, CommentSort sort, boolean ascending,
+                                    KeysetCursor after, long offset, int limit);
+}
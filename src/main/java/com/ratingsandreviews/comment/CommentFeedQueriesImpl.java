@@ -0,0 +1,73 @@
+package com.ratingsandreviews.comment;
+
+import com.ratingsandreviews.util.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Both parts of the pinned feed are read in the sort's order straight off its index over roots, stopping after
+ * limit rows. Membership in the user's threads comes from the user's own comments (idx_comments_application_id_user_id,
+ * root id taken off the path): a semi-join for the pinned part, an anti-join for the rest, so no id list is sent back.
+ * The column comes from the CommentSort whitelist, never from the request.
+ */
+class CommentFeedQueriesImpl implements CommentFeedQueries {
+    private static final String PINNED = """
+        r.id IN (
+            SELECT CAST(split_part(u.path, '/', 1) AS uuid) FROM comments u
+            WHERE u.application_id = :applicationId AND u.user_id = :userId AND u.deleted_at IS NULL
+        )""";
+
+    private static final String UNPINNED = """
+        NOT EXISTS (
+            SELECT 1 FROM comments u
+            WHERE u.application_id = :applicationId AND u.user_id = :userId AND u.deleted_at IS NULL
+              AND split_part(u.path, '/', 1) = CAST(r.id AS text)
+        )""";
+
+    private final EntityManager entityManager;
+
+    @Autowired
+    CommentFeedQueriesImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public List<Comment> findPinnedRoots(UUID applicationId, UUID userId, int sentiment, CommentSort sort, boolean ascending,
+                                         KeysetCursor after, long offset, int limit) {
+        return findRoots(PINNED, applicationId, userId, sentiment, sort, ascending, after, offset, limit);
+    }
+
+    @Override
+    public List<Comment> findUnpinnedRoots(UUID applicationId, UUID userId, int sentiment, CommentSort sort, boolean ascending,
+                                           KeysetCursor after, long offset, int limit) {
+        return findRoots(UNPINNED, applicationId, userId, sentiment, sort, ascending, after, offset, limit);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Comment> findRoots(String membership, UUID applicationId, UUID userId, int sentiment, CommentSort sort,
+                                    boolean ascending, KeysetCursor after, long offset, int limit) {
+        String direction = ascending ? "ASC" : "DESC";
+        StringBuilder sql = new StringBuilder("SELECT r.* FROM comments r")
+            .append(" WHERE r.application_id = :applicationId AND r.parent_id IS NULL AND r.deleted_at IS NULL")
+            .append(" AND (:sentiment = 0 OR r.sentiment = :sentiment) AND ").append(membership);
+        if (after != null) {
+            sql.append(" AND (r.").append(sort.column()).append(", r.id) ").append(ascending ? ">" : "<").append(" (:key, :id)");
+        }
+        sql.append(" ORDER BY r.").append(sort.column()).append(' ').append(direction)
+            .append(", r.id ").append(direction).append(" LIMIT :limit OFFSET :offset");
+        Query query = entityManager.createNativeQuery(sql.toString(), Comment.class)
+            .setParameter("applicationId", applicationId)
+            .setParameter("userId", userId)
+            .setParameter("sentiment", sentiment)
+            .setParameter("limit", limit)
+            .setParameter("offset", offset);
+        if (after != null) {
+            query.setParameter("key", sort.keyOf(after)).setParameter("id", after.id());
+        }
+        return query.getResultList();
+    }
+}
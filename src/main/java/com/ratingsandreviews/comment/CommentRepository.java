@@ -1,15 +1,22 @@
 package com.ratingsandreviews.comment;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
-public interface CommentRepository extends JpaRepository<Comment, UUID> {
+public interface CommentRepository extends JpaRepository<Comment, UUID>, CommentFeedQueries {
     // Fetch comments for a post, optionally filtered by sentiment, parentId, or userId
     Page<Comment> findByApplicationIdAndParentIdAndSentiment(UUID applicationId, UUID parentId, Integer sentiment, Pageable pageable);
     Page<Comment> findByApplicationIdAndParentId(UUID applicationId, UUID parentId, Pageable pageable);
@@ -17,18 +24,186 @@ public interface CommentRepository extends JpaRepository<Comment, UUID> {
     Page<Comment> findByApplicationIdAndUserId(UUID applicationId, UUID userId, Pageable pageable);
     Page<Comment> findByApplicationId(UUID applicationId, Pageable pageable);
 
-    // Recursive query to fetch ancestors for a list of comment IDs
+    // Streams all comments of one application in depth-first order (parent before child, subtrees contiguous).
+    // Ordering by the materialized path is a single range scan of idx_comments_application_id_path; consume inside a transaction.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
     @Query(value = """
-        WITH RECURSIVE ancestors AS (
-            SELECT c.id, c.parent_id, c.application_id, c.user_id, c.text, c.sentiment, c.level, c.created_at, c.updated_at, 0 as lineage_level
-            FROM comments c
-            WHERE c.id IN :commentIds
-            UNION ALL
-            SELECT p.id, p.parent_id, p.application_id, p.user_id, p.text, p.sentiment, p.level, p.created_at, p.updated_at, a.lineage_level - 1
-            FROM comments p
-            INNER JOIN ancestors a ON p.id = a.parent_id
-        )
-        SELECT * FROM ancestors ORDER BY id ASC
+        SELECT c.* FROM comments c
+        WHERE c.application_id = :applicationId AND c.deleted_at IS NULL
+        ORDER BY c.path
     """, nativeQuery = true)
-    List<Comment> findAncestorsForComments(@Param("commentIds") List<UUID> commentIds);
+    Stream<Comment> streamCommentTree(@Param("applicationId") UUID applicationId);
+
+    // Streams one comment and all of its descendants in depth-first order: path range [path, pathEnd)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(value = """
+        SELECT c.* FROM comments c
+        WHERE c.application_id = :applicationId AND c.deleted_at IS NULL AND c.path >= :path AND c.path < :pathEnd
+        ORDER BY c.path
+    """, nativeQuery = true)
+    Stream<Comment> streamSubtree(@Param("applicationId") UUID applicationId, @Param("path") String path, @Param("pathEnd") String pathEnd);
+
+    // Keyset pages over idx_comments_app_parent_updated_at_id: rows strictly after (updatedAt, id) in the given direction.
+    // sentiment = 0 means no sentiment filter.
+    @Query(value = """
+        SELECT c.* FROM comments c
+        WHERE c.application_id = :applicationId AND c.deleted_at IS NULL AND c.parent_id IS NULL
+          AND (:sentiment = 0 OR c.sentiment = :sentiment)
+          AND (c.updated_at, c.id) < (:updatedAt, :id)
+        ORDER BY c.updated_at DESC, c.id DESC
+        LIMIT :limit
+    """, nativeQuery = true)
+    List<Comment> findRootsKeysetDesc(@Param("applicationId") UUID applicationId, @Param("sentiment") int sentiment,
+                                      @Param("updatedAt") ZonedDateTime updatedAt, @Param("id") UUID id, @Param("limit") int limit);
+
+    @Query(value = """
+        SELECT c.* FROM comments c
+        WHERE c.application_id = :applicationId AND c.deleted_at IS NULL AND c.parent_id IS NULL
+          AND (:sentiment = 0 OR c.sentiment = :sentiment)
+          AND (c.updated_at, c.id) > (:updatedAt, :id)
+        ORDER BY c.updated_at ASC, c.id ASC
+        LIMIT :limit
+    """, nativeQuery = true)
+    List<Comment> findRootsKeysetAsc(@Param("applicationId") UUID applicationId, @Param("sentiment") int sentiment,
+                                     @Param("updatedAt") ZonedDateTime updatedAt, @Param("id") UUID id, @Param("limit") int limit);
+
+    @Query(value = """
+        SELECT c.* FROM comments c
+        WHERE c.application_id = :applicationId AND c.deleted_at IS NULL AND c.parent_id = :parentId
+          AND (:sentiment = 0 OR c.sentiment = :sentiment)
+          AND (c.updated_at, c.id) < (:updatedAt, :id)
+        ORDER BY c.updated_at DESC, c.id DESC
+        LIMIT :limit
+    """, nativeQuery = true)
+    List<Comment> findRepliesKeysetDesc(@Param("applicationId") UUID applicationId, @Param("parentId") UUID parentId, @Param("sentiment") int sentiment,
+                                        @Param("updatedAt") ZonedDateTime updatedAt, @Param("id") UUID id, @Param("limit") int limit);
+
+    @Query(value = """
+        SELECT c.* FROM comments c
+        WHERE c.application_id = :applicationId AND c.deleted_at IS NULL AND c.parent_id = :parentId
+          AND (:sentiment = 0 OR c.sentiment = :sentiment)
+          AND (c.updated_at, c.id) > (:updatedAt, :id)
+        ORDER BY c.updated_at ASC, c.id ASC
+        LIMIT :limit
+    """, nativeQuery = true)
+    List<Comment> findRepliesKeysetAsc(@Param("applicationId") UUID applicationId, @Param("parentId") UUID parentId, @Param("sentiment") int sentiment,
+                                       @Param("updatedAt") ZonedDateTime updatedAt, @Param("id") UUID id, @Param("limit") int limit);
+
+    // Newest `limit` replies of each given parent; every parent is one bounded read of idx_comments_app_parent_updated_at_id
+    @Query(value = """
+        SELECT ch.* FROM comments p
+        CROSS JOIN LATERAL (
+            SELECT c.* FROM comments c
+            WHERE c.application_id = p.application_id AND c.parent_id = p.id AND c.deleted_at IS NULL
+            ORDER BY c.updated_at DESC, c.id DESC
+            LIMIT :limit
+        ) ch
+        WHERE p.id IN (:parentIds)
+        ORDER BY ch.parent_id, ch.updated_at DESC, ch.id DESC
+    """, nativeQuery = true)
+    List<Comment> findNewestChildren(@Param("parentIds") Collection<UUID> parentIds, @Param("limit") int limit);
+
+    // Direct reply counts per parent as [parentId, count] pairs
+    @Query("SELECT c.parentId, COUNT(c) FROM comments c WHERE c.applicationId = :applicationId AND c.parentId IN :parentIds GROUP BY c.parentId")
+    List<Object[]> countChildren(@Param("applicationId") UUID applicationId, @Param("parentIds") Collection<UUID> parentIds);
+
+    // Number of rows in a subtree (the comment itself included): path range [path, pathEnd)
+    @Query(value = """
+        SELECT count(*) FROM comments c
+        WHERE c.application_id = :applicationId AND c.deleted_at IS NULL AND c.path >= :path AND c.path < :pathEnd
+    """, nativeQuery = true)
+    long countSubtree(@Param("applicationId") UUID applicationId, @Param("path") String path, @Param("pathEnd") String pathEnd);
+
+    // Rows of the subtree [path, pathEnd) with positive sentiment, to take off the thread's positive_replies
+    @Query(value = """
+        SELECT count(*) FROM comments c
+        WHERE c.application_id = :applicationId AND c.deleted_at IS NULL AND c.path >= :path AND c.path < :pathEnd
+          AND c.sentiment = 1
+    """, nativeQuery = true)
+    long countPositiveInSubtree(@Param("applicationId") UUID applicationId, @Param("path") String path, @Param("pathEnd") String pathEnd);
+
+    // Rows of the subtree [path, pathEnd) with negative sentiment, to take off the thread's negative_replies
+    @Query(value = """
+        SELECT count(*) FROM comments c
+        WHERE c.application_id = :applicationId AND c.deleted_at IS NULL AND c.path >= :path AND c.path < :pathEnd
+          AND c.sentiment = -1
+    """, nativeQuery = true)
+    long countNegativeInSubtree(@Param("applicationId") UUID applicationId, @Param("path") String path, @Param("pathEnd") String pathEnd);
+
+    // Thread counters on root comments; GREATEST keeps last_activity_at monotonic when replies race.
+    // positiveDelta and negativeDelta are the numbers of those replies with positive and negative sentiment; the
+    // set_comment_best_score trigger recomputes best_score from the new totals.
+    @Modifying
+    @Query(value = """
+        UPDATE comments SET reply_count = reply_count + :delta, positive_replies = positive_replies + :positiveDelta,
+            negative_replies = negative_replies + :negativeDelta, last_activity_at = GREATEST(last_activity_at, :activityAt)
+        WHERE id = :rootId
+    """, nativeQuery = true)
+    int incrementReplyCount(@Param("rootId") UUID rootId, @Param("delta") long delta, @Param("positiveDelta") long positiveDelta,
+                            @Param("negativeDelta") long negativeDelta, @Param("activityAt") ZonedDateTime activityAt);
+
+    @Modifying
+    @Query(value = """
+        UPDATE comments SET reply_count = GREATEST(reply_count - :delta, 0),
+            positive_replies = GREATEST(positive_replies - :positiveDelta, 0), negative_replies = GREATEST(negative_replies - :negativeDelta, 0)
+        WHERE id = :rootId
+    """, nativeQuery = true)
+    int decrementReplyCount(@Param("rootId") UUID rootId, @Param("delta") long delta, @Param("positiveDelta") long positiveDelta,
+                            @Param("negativeDelta") long negativeDelta);
+
+    // Full-text search over idx_comments_application_id_text_search; returns [id, rank, candidates] rows strictly after
+    // (rank, id), best match first. sentiment = 0 means no sentiment filter. ts_rank reads every candidate's tsvector
+    // on every page, so only the :candidates most recently updated matches are ranked; older matches of a very common
+    // query are not returned. The candidate scan reads one match more than that, so candidates on any returned row is
+    // above :candidates exactly when some were left out. The candidate set only changes when matching comments are
+    // written, so pages stay consistent.
+    @Query(value = """
+        SELECT m.id, m.rank, m.candidates FROM (
+            SELECT c.id, c.n, ts_rank(c.text_search, websearch_to_tsquery('english', :query)) AS rank,
+                   count(*) OVER () AS candidates
+            FROM (
+                SELECT c.id, c.text_search, row_number() OVER (ORDER BY c.updated_at DESC, c.id DESC) AS n
+                FROM comments c
+                WHERE c.application_id = :applicationId AND c.deleted_at IS NULL
+                  AND c.text_search @@ websearch_to_tsquery('english', :query)
+                  AND (:sentiment = 0 OR c.sentiment = :sentiment)
+                ORDER BY c.updated_at DESC, c.id DESC
+                LIMIT :candidates + 1
+            ) c
+        ) m
+        WHERE m.n <= :candidates AND (m.rank, m.id) < (CAST(:rank AS real), :id)
+        ORDER BY m.rank DESC, m.id DESC
+        LIMIT :limit
+    """, nativeQuery = true)
+    List<Object[]> searchRanked(@Param("applicationId") UUID applicationId, @Param("query") String query, @Param("sentiment") int sentiment,
+                                @Param("rank") float rank, @Param("id") UUID id, @Param("limit") int limit,
+                                @Param("candidates") int candidates);
+
+    // Number of roots in the pinned part of the feed (see CommentFeedQueries), bounded by the user's own comments
+    @Query(value = """
+        SELECT count(*) FROM comments r
+        WHERE r.application_id = :applicationId AND r.parent_id IS NULL AND r.deleted_at IS NULL
+          AND (:sentiment = 0 OR r.sentiment = :sentiment)
+          AND r.id IN (
+              SELECT CAST(split_part(u.path, '/', 1) AS uuid) FROM comments u
+              WHERE u.application_id = :applicationId AND u.user_id = :userId AND u.deleted_at IS NULL
+          )
+    """, nativeQuery = true)
+    long countPinnedRoots(@Param("applicationId") UUID applicationId, @Param("userId") UUID userId, @Param("sentiment") int sentiment);
+
+    @Query(value = """
+        SELECT count(*) FROM comments c
+        WHERE c.application_id = :applicationId AND c.deleted_at IS NULL AND c.parent_id IS NULL
+          AND (:sentiment = 0 OR c.sentiment = :sentiment)
+    """, nativeQuery = true)
+    long countRoots(@Param("applicationId") UUID applicationId, @Param("sentiment") int sentiment);
+
+    // The user's replies inside the given threads (root ids as text, matched against the first path segment)
+    @Query(value = """
+        SELECT c.* FROM comments c
+        WHERE c.application_id = :applicationId AND c.deleted_at IS NULL AND c.user_id = :userId AND c.parent_id IS NOT NULL
+          AND split_part(c.path, '/', 1) IN (:rootIds)
+    """, nativeQuery = true)
+    List<Comment> findUserRepliesInThreads(@Param("applicationId") UUID applicationId, @Param("userId") UUID userId,
+                                           @Param("rootIds") Collection<String> rootIds);
 }
@@ -0,0 +1,11 @@
+package com.ratingsandreviews.comment;
+
+import java.util.List;
+
+/**
+ * One page of search results, best match first. Only the most recently updated matches are ranked (see
+ * CommentRepository.searchRanked); truncated is set when the query matched more comments than that, so older matches
+ * are missing from every page.
+ */
+public record CommentSearchPage(List<Comment> content, int size, String nextCursor, boolean hasNext, boolean truncated) {
+}
@@ -0,0 +1,13 @@
+package com.ratingsandreviews.comment;
+
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import lombok.Data;
+
+@Entity(name = "comment_sentiment_stats")
+@Data
+public class CommentSentimentStats {
+    @EmbeddedId
+    private CommentSentimentStatsId id;
+    private Long count;
+}
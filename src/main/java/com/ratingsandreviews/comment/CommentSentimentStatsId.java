@@ -0,0 +1,33 @@
+package com.ratingsandreviews.comment;
+
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.util.Objects;
+import java.util.UUID;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Embeddable
+public class CommentSentimentStatsId implements Serializable {
+    private UUID applicationId;
+    private short sentiment;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CommentSentimentStatsId that = (CommentSentimentStatsId) o;
+        return sentiment == that.sentiment && Objects.equals(applicationId, that.applicationId);
+    }
+    @Override
+    public int hashCode() {
+        return Objects.hash(applicationId, sentiment);
+    }
+}
@@ -0,0 +1,10 @@
+package com.ratingsandreviews.comment;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface CommentSentimentStatsRepository extends JpaRepository<CommentSentimentStats, CommentSentimentStatsId> {
+    List<CommentSentimentStats> findByIdApplicationId(UUID applicationId);
+}
@@ -1,18 +1,34 @@
 package com.ratingsandreviews.comment;
 
+import com.ratingsandreviews.util.CursorPage;
 import lombok.Getter;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.UUID;
 
 public interface CommentService {
     Page<Comment> getComments(UUID postId, UUID parentId, Integer sentiment, Pageable pageable, UUID userId);
+    CursorPage<Comment> getCommentsByCursor(UUID applicationId, UUID parentId, Integer sentiment, String after, int size, boolean ascending);
+    // Keyset variant of the user-pinned feed (getComments with a userId): the user's threads, then the other roots
+    CursorPage<Comment> getPinnedCommentsByCursor(UUID applicationId, UUID userId, Integer sentiment, CommentSort sort, boolean ascending, String after, int size);
     Comment addComment(Comment comment);
+    List<Comment> addComments(List<Comment> comments);
     Comment updateComment(UUID id, String updatedText, Short sentiment);
     void deleteComment(UUID id);
+    // Hides the comment and its replies right away and queues the rows for removal by CommentDeletionWorker
+    CommentDeletionJob deleteCommentAsync(UUID id);
+    CommentDeletionJob getDeletionJob(UUID jobId);
     List<Comment> getCommentTree(UUID postId, UUID userId);
+    Comment getCommentSubtree(UUID applicationId, UUID commentId);
+    void streamCommentTree(UUID applicationId, UUID commentId, OutputStream out) throws IOException;
+    CursorPage<Comment> getCommentTreePage(UUID applicationId, UUID parentId, String after, int maxDepth, int maxChildrenPerNode);
     UserCommentsResponse getUserCommentsForApplication(UUID postId, UUID userId, Pageable pageable, Integer sentiment);
+    SentimentStatsResponse getSentimentStats(UUID applicationId);
+    CommentSearchPage searchComments(UUID applicationId, String query, Integer sentiment, String after, int size);
 }
 
 @Getter
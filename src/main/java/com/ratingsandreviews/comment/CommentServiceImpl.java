@@ -1,41 +1,85 @@
 package com.ratingsandreviews.comment;
 
+import com.ratingsandreviews.cache.ApplicationVersions;
 import com.ratingsandreviews.cache.CacheKeyBuilder;
 import com.ratingsandreviews.cache.CacheService;
+import com.ratingsandreviews.util.CursorPage;
+import com.ratingsandreviews.util.KeysetCursor;
+import com.ratingsandreviews.stream.FeedEvent;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.ratingsandreviews.util.Validations.validateOptionalExistence;
 
 @Service
 public class CommentServiceImpl implements CommentService {
+    // Exclusive bounds used for the first keyset page, before any cursor exists
+    private static final ZonedDateTime KEYSET_MIN_TIME = ZonedDateTime.of(1900, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final ZonedDateTime KEYSET_MAX_TIME = ZonedDateTime.of(3000, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final UUID KEYSET_MIN_ID = new UUID(0L, 0L);
+    private static final UUID KEYSET_MAX_ID = new UUID(-1L, -1L);
+    // Prefix of pinned-feed cursor keys that stopped inside the user's threads; other cursors continue the other roots
+    private static final String PINNED_PART = "pinned:";
+
     private final CommentRepository repository;
+    private final CommentBatchRepository batchRepository;
+    private final CommentSentimentStatsRepository sentimentStatsRepository;
+    private final CommentTreeJsonStreamer treeStreamer;
+    private final CommentDeletionJobRepository deletionJobRepository;
+    private final ApplicationEventPublisher eventPublisher;
     private final CacheService caffeineCache;
+    // Local entries are keyed by the application's version, as no other instance evicts them
+    private final ApplicationVersions applicationVersions;
+    // Matches ranked per search (see CommentRepository.searchRanked); bounds the cost of every page of a common query
+    private final int searchMaxCandidates;
 
     @Autowired
-    public CommentServiceImpl(CommentRepository repository, CacheService caffeineCacheService) {
+    public CommentServiceImpl(CommentRepository repository, CommentBatchRepository batchRepository,
+                              CommentSentimentStatsRepository sentimentStatsRepository, CommentTreeJsonStreamer treeStreamer,
+                              CommentDeletionJobRepository deletionJobRepository, ApplicationEventPublisher eventPublisher,
+                              CacheService caffeineCacheService, ApplicationVersions applicationVersions,
+                              @Value("${application.comments.search.max-candidates:1000}") int searchMaxCandidates) {
         this.repository = repository;
+        this.batchRepository = batchRepository;
+        this.sentimentStatsRepository = sentimentStatsRepository;
+        this.treeStreamer = treeStreamer;
+        this.deletionJobRepository = deletionJobRepository;
+        this.eventPublisher = eventPublisher;
         this.caffeineCache = caffeineCacheService;
+        this.applicationVersions = applicationVersions;
+        this.searchMaxCandidates = searchMaxCandidates;
     }
 
     @Override
     public Page<Comment> getComments(UUID applicationId, UUID parentId, Integer sentiment, Pageable pageable, UUID userId) {
         // Cache only when userId is present (user-specific view)
         if (userId != null) {
-            String cacheKey = CacheKeyBuilder.commentsKey(
+            CommentSort sort = CommentSort.of(pageable.getSort());
+            boolean ascending = CommentSort.isAscending(pageable.getSort());
+            String cacheKey = applicationVersions.scoped(applicationId, CacheKeyBuilder.commentsKey(
                 applicationId.toString(),
                 parentId != null ? parentId.toString() : "null",
                 sentiment,
                 userId.toString(),
                 pageable.getPageNumber(),
-                pageable.getPageSize()
-            );
+                pageable.getPageSize(),
+                sort.toSort(ascending).toString()
+            ));
 
             @SuppressWarnings("unchecked")
             Page<Comment> cached = caffeineCache.get(cacheKey, Page.class);
@@ -43,38 +87,25 @@ public class CommentServiceImpl implements CommentService {
                 return cached;
             }
 
-            // 1. Get user's comments and their context (full chain from root to user comment)
-            UserCommentsResponse userResp = getUserCommentsForApplication(applicationId, userId, pageable, sentiment);
-            Set<UUID> userAndContextIds = new HashSet<>();
-            Map<UUID, Comment> rootMap = new LinkedHashMap<>();
-            for (CommentThreadView thread : userResp.getThreads()) {
-                List<Comment> chain = new ArrayList<>(thread.getContext());
-                chain.add(thread.getTarget());
-                if (chain.isEmpty()) continue;
-                Comment root = chain.get(0);
-                Comment current = rootMap.computeIfAbsent(root.getId(), id -> cloneCommentWithoutChildren(root));
-                for (int i = 1; i < chain.size(); i++) {
-                    Comment next = chain.get(i);
-                    Optional<Comment> existingChild = current.getChildren().stream().filter(c -> c.getId().equals(next.getId())).findFirst();
-                    if (existingChild.isPresent()) {
-                        current = existingChild.get();
-                    } else {
-                        Comment newChild = cloneCommentWithoutChildren(next);
-                        current.getChildren().add(newChild);
-                        current = newChild;
-                    }
-                }
-                userAndContextIds.addAll(chain.stream().map(Comment::getId).toList());
+            // Pinned feed: roots of the user's threads first, then every other root, both in the requested order.
+            // Each part is read for this page only (LIMIT/OFFSET on the sort's index); the pinned count tells where
+            // the other roots start. getPinnedCommentsByCursor is the keyset variant for deep pages.
+            int sentimentFilter = sentiment != null ? sentiment : 0;
+            long pinnedTotal = repository.countPinnedRoots(applicationId, userId, sentimentFilter);
+            List<Comment> pageContent = new ArrayList<>();
+            if (pageable.getOffset() < pinnedTotal) {
+                repository.findPinnedRoots(applicationId, userId, sentimentFilter, sort, ascending, null, pageable.getOffset(), pageable.getPageSize())
+                    .forEach(root -> pageContent.add(cloneCommentWithoutChildren(root)));
             }
-            List<Comment> others = repository.findByApplicationId(applicationId, pageable).stream()
-                .filter(c -> c.getLevel() == 0 && !userAndContextIds.contains(c.getId()))
-                .toList();
-            List<Comment> result = new ArrayList<>(rootMap.values());
-            result.addAll(others);
-            int from = (int) pageable.getOffset();
-            int to = Math.min(from + pageable.getPageSize(), result.size());
-            List<Comment> pageContent = from < to ? result.subList(from, to) : Collections.emptyList();
-            Page<Comment> page = new org.springframework.data.domain.PageImpl<>(pageContent, pageable, result.size());
+            int pinnedOnPage = pageContent.size();
+            int remaining = pageable.getPageSize() - pinnedOnPage;
+            if (remaining > 0) {
+                long othersOffset = Math.max(0L, pageable.getOffset() - pinnedTotal);
+                pageContent.addAll(repository.findUnpinnedRoots(applicationId, userId, sentimentFilter, sort, ascending, null, othersOffset, remaining));
+            }
+            attachUserThreads(applicationId, userId, pageContent.subList(0, pinnedOnPage));
+            long total = repository.countRoots(applicationId, sentimentFilter);
+            Page<Comment> page = new PageImpl<>(pageContent, pageable, total);
 
             caffeineCache.put(cacheKey, page);
             return page;
@@ -91,52 +122,263 @@ public class CommentServiceImpl implements CommentService {
     }
 
     @Override
+    public CursorPage<Comment> getCommentsByCursor(UUID applicationId, UUID parentId, Integer sentiment, String after, int size, boolean ascending) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be greater than zero");
+        }
+        ZonedDateTime updatedAt = ascending ? KEYSET_MIN_TIME : KEYSET_MAX_TIME;
+        UUID id = ascending ? KEYSET_MIN_ID : KEYSET_MAX_ID;
+        if (after != null && !after.isEmpty()) {
+            KeysetCursor cursor = KeysetCursor.decode(after);
+            updatedAt = cursor.keyAsInstant().atZone(ZoneOffset.UTC);
+            id = cursor.id();
+        }
+        // 0 disables the sentiment filter; fetch one extra row to know whether another page exists
+        int sentimentFilter = sentiment != null ? sentiment : 0;
+        int limit = size + 1;
+        List<Comment> rows;
+        if (parentId == null) {
+            rows = ascending
+                ? repository.findRootsKeysetAsc(applicationId, sentimentFilter, updatedAt, id, limit)
+                : repository.findRootsKeysetDesc(applicationId, sentimentFilter, updatedAt, id, limit);
+        } else {
+            rows = ascending
+                ? repository.findRepliesKeysetAsc(applicationId, parentId, sentimentFilter, updatedAt, id, limit)
+                : repository.findRepliesKeysetDesc(applicationId, parentId, sentimentFilter, updatedAt, id, limit);
+        }
+        return CursorPage.of(rows, size, c -> KeysetCursor.of(c.getUpdatedAt().toInstant(), c.getId()));
+    }
+
+    @Override
+    public CursorPage<Comment> getPinnedCommentsByCursor(UUID applicationId, UUID userId, Integer sentiment, CommentSort sort,
+                                                         boolean ascending, String after, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be greater than zero");
+        }
+        int sentimentFilter = sentiment != null ? sentiment : 0;
+        KeysetCursor cursor = after == null || after.isEmpty() ? null : KeysetCursor.decode(after);
+        boolean inPinned = cursor == null || cursor.key().startsWith(PINNED_PART);
+        if (cursor != null && inPinned) {
+            cursor = new KeysetCursor(cursor.key().substring(PINNED_PART.length()), cursor.id());
+        }
+        // One extra row tells whether another page exists
+        List<Comment> content = new ArrayList<>(size + 1);
+        if (inPinned) {
+            repository.findPinnedRoots(applicationId, userId, sentimentFilter, sort, ascending, cursor, 0L, size + 1)
+                .forEach(root -> content.add(cloneCommentWithoutChildren(root)));
+            cursor = null;
+        }
+        int pinnedOnPage = Math.min(content.size(), size);
+        if (content.size() <= size) {
+            content.addAll(repository.findUnpinnedRoots(applicationId, userId, sentimentFilter, sort, ascending, cursor, 0L, size + 1 - content.size()));
+        }
+        boolean hasNext = content.size() > size;
+        List<Comment> pageContent = hasNext ? content.subList(0, size) : content;
+        attachUserThreads(applicationId, userId, pageContent.subList(0, pinnedOnPage));
+        String nextCursor = null;
+        if (hasNext) {
+            KeysetCursor last = sort.cursorOf(pageContent.get(size - 1));
+            nextCursor = (pinnedOnPage == size ? new KeysetCursor(PINNED_PART + last.key(), last.id()) : last).encode();
+        }
+        return new CursorPage<>(List.copyOf(pageContent), size, nextCursor, hasNext);
+    }
+
+    @Override
+    @Transactional
     public Comment addComment(Comment comment) {
         comment.setCreatedAt(Instant.now().atZone(java.time.ZoneOffset.UTC));
         comment.setUpdatedAt(Instant.now().atZone(java.time.ZoneOffset.UTC));
+        Comment parent = null;
         if (comment.getParentId() == null) {
             comment.setLevel(0);
         } else {
-            Comment parent = validateOptionalExistence(repository.findById(comment.getParentId()), Comment.class, "Parent commment");
+            parent = validateOptionalExistence(repository.findById(comment.getParentId()), Comment.class, "Parent commment");
             long parentLevel = parent.getLevel();
             comment.setLevel(parentLevel + 1);
         }
         Comment saved = repository.save(comment);
+        // The stored path is written by the set_comment_path trigger; mirror it on the returned entity
+        if (saved.getId() != null && parent == null) {
+            saved.setPath(saved.getId().toString());
+        } else if (saved.getId() != null && parent.getPath() != null) {
+            saved.setPath(parent.getPath() + Comment.PATH_SEPARATOR + saved.getId());
+        }
+        if (parent == null) {
+            saved.setLastActivityAt(saved.getCreatedAt());
+        } else if (parent.rootId() != null) {
+            // Bump the thread counters on the review this reply belongs to
+            repository.incrementReplyCount(parent.rootId(), 1, saved.isPositive() ? 1 : 0, saved.isNegative() ? 1 : 0,
+                saved.getCreatedAt());
+        }
 
         // Evict ALL cache entries for this user on this application
         evictUserSpecificCache(saved.getApplicationId(), saved.getUserId());
+        if (isReviewWithSentiment(saved)) {
+            evictSentimentStats(saved.getApplicationId());
+        }
+        eventPublisher.publishEvent(new FeedEvent(saved.getApplicationId(), FeedEvent.COMMENT_CREATED, saved));
 
         return saved;
     }
 
+    @Override
+    @Transactional
+    public List<Comment> addComments(List<Comment> comments) {
+        if (comments.isEmpty()) {
+            return comments;
+        }
+        // Validate every referenced parent with a single lookup
+        Set<UUID> parentIds = comments.stream()
+            .map(Comment::getParentId)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+        Map<UUID, Comment> parents = parentIds.isEmpty() ? Collections.emptyMap()
+            : repository.findAllById(parentIds).stream().collect(Collectors.toMap(Comment::getId, c -> c));
+
+        ZonedDateTime now = Instant.now().atZone(ZoneOffset.UTC);
+        Map<UUID, Set<UUID>> usersByApplication = new LinkedHashMap<>();
+        Map<UUID, Long> repliesByRoot = new HashMap<>();
+        Map<UUID, Long> positiveRepliesByRoot = new HashMap<>();
+        Map<UUID, Long> negativeRepliesByRoot = new HashMap<>();
+        for (Comment comment : comments) {
+            if (comment.getParentId() == null) {
+                comment.setLevel(0);
+            } else {
+                Comment parent = parents.get(comment.getParentId());
+                if (parent == null) {
+                    throw new RuntimeException(String.format("Parent commment with identifier %s not found", comment.getParentId()));
+                }
+                if (!parent.getApplicationId().equals(comment.getApplicationId())) {
+                    throw new IllegalArgumentException(String.format("Parent commment %s belongs to a different application", parent.getId()));
+                }
+                comment.setLevel(parent.getLevel() + 1);
+            }
+            comment.setId(UUID.randomUUID());
+            comment.setCreatedAt(now);
+            comment.setUpdatedAt(now);
+            if (comment.getParentId() == null) {
+                comment.setLastActivityAt(now);
+            } else {
+                UUID rootId = parents.get(comment.getParentId()).rootId();
+                if (rootId != null) {
+                    repliesByRoot.merge(rootId, 1L, Long::sum);
+                    if (comment.isPositive()) positiveRepliesByRoot.merge(rootId, 1L, Long::sum);
+                    if (comment.isNegative()) negativeRepliesByRoot.merge(rootId, 1L, Long::sum);
+                }
+            }
+            usersByApplication.computeIfAbsent(comment.getApplicationId(), id -> new HashSet<>()).add(comment.getUserId());
+        }
+        batchRepository.insertAll(comments);
+        if (!repliesByRoot.isEmpty()) {
+            batchRepository.incrementReplyCounts(repliesByRoot, positiveRepliesByRoot, negativeRepliesByRoot, now);
+        }
+
+        // Evict user caches once per (application, user) pair instead of once per row, shared trees once per application
+        usersByApplication.forEach((applicationId, userIds) -> {
+            userIds.forEach(userId -> evictUserCaches(applicationId, userId));
+            evictSharedTreePages(applicationId);
+        });
+        comments.stream()
+            .filter(this::isReviewWithSentiment)
+            .map(Comment::getApplicationId)
+            .distinct()
+            .forEach(this::evictSentimentStats);
+        // One event per application, not per row: subscribers reload, and the version is bumped once
+        comments.stream()
+            .collect(Collectors.groupingBy(Comment::getApplicationId, LinkedHashMap::new, Collectors.counting()))
+            .forEach((applicationId, count) -> eventPublisher.publishEvent(new FeedEvent(applicationId, FeedEvent.COMMENTS_IMPORTED, count)));
+        return comments;
+    }
+
     @Override
     public Comment updateComment(UUID id, String updatedText, Short sentiment) {
         Comment existing = validateOptionalExistence(repository.findById(id), Comment.class, "Comment");
+        boolean sentimentChanged = sentiment != null && existing.getLevel() == 0 && !sentiment.equals(existing.getSentiment());
         if(updatedText != null) existing.setText(updatedText);
         if(sentiment != null && existing.getLevel() == 0) existing.setSentiment(sentiment);
         Comment updated = repository.save(existing);
 
         // Evict ALL cache entries for this user on this application
         evictUserSpecificCache(updated.getApplicationId(), updated.getUserId());
+        if (sentimentChanged) {
+            evictSentimentStats(updated.getApplicationId());
+        }
+        eventPublisher.publishEvent(new FeedEvent(updated.getApplicationId(), FeedEvent.COMMENT_UPDATED, updated));
 
         return updated;
     }
 
     @Override
+    @Transactional
     public void deleteComment(UUID id) {
         Comment comment = validateOptionalExistence(repository.findById(id), Comment.class, "Comment");
 
+        // The cascade removes the whole subtree, so take all of it off the thread's reply count
+        UUID rootId = comment.rootId();
+        if (comment.getParentId() != null && rootId != null) {
+            String pathEnd = comment.getPath() + Comment.PATH_UPPER_BOUND;
+            long removed = repository.countSubtree(comment.getApplicationId(), comment.getPath(), pathEnd);
+            long positive = repository.countPositiveInSubtree(comment.getApplicationId(), comment.getPath(), pathEnd);
+            long negative = repository.countNegativeInSubtree(comment.getApplicationId(), comment.getPath(), pathEnd);
+            repository.decrementReplyCount(rootId, Math.max(removed, 1L), positive, negative);
+        }
+
         // Evict ALL cache entries for this user on this application
         evictUserSpecificCache(comment.getApplicationId(), comment.getUserId());
+        if (isReviewWithSentiment(comment)) {
+            evictSentimentStats(comment.getApplicationId());
+        }
 
         repository.deleteById(id);
+        eventPublisher.publishEvent(new FeedEvent(comment.getApplicationId(), FeedEvent.COMMENT_DELETED, id));
     }
 
     @Override
+    @Transactional
+    public CommentDeletionJob deleteCommentAsync(UUID id) {
+        Comment comment = validateOptionalExistence(repository.findById(id), Comment.class, "Comment");
+        ZonedDateTime now = Instant.now().atZone(ZoneOffset.UTC);
+        String pathEnd = comment.getPath() + Comment.PATH_UPPER_BOUND;
+        long positive = comment.getParentId() != null ? repository.countPositiveInSubtree(comment.getApplicationId(), comment.getPath(), pathEnd) : 0L;
+        long negative = comment.getParentId() != null ? repository.countNegativeInSubtree(comment.getApplicationId(), comment.getPath(), pathEnd) : 0L;
+        List<UUID> authors = batchRepository.tombstoneSubtree(comment.getApplicationId(), comment.getPath(), pathEnd, now);
+
+        // Tombstoned replies no longer count towards the thread
+        UUID rootId = comment.rootId();
+        if (comment.getParentId() != null && rootId != null && !authors.isEmpty()) {
+            repository.decrementReplyCount(rootId, authors.size(), positive, negative);
+        }
+
+        CommentDeletionJob job = new CommentDeletionJob();
+        job.setApplicationId(comment.getApplicationId());
+        job.setCommentId(id);
+        job.setPath(comment.getPath());
+        job.setStatus(CommentDeletionJob.Status.PENDING);
+        job.setTotal(authors.size());
+        job.setCreatedAt(now);
+        job.setUpdatedAt(now);
+        CommentDeletionJob saved = deletionJobRepository.save(job);
+
+        // Cached pages of every author in the subtree may show it; drop all comment caches of the application in
+        // one pass per key family instead of evicting user by user
+        CacheKeyBuilder.commentApplicationPatterns(comment.getApplicationId().toString()).forEach(caffeineCache::evictPattern);
+        eventPublisher.publishEvent(new FeedEvent(comment.getApplicationId(), FeedEvent.COMMENT_DELETED, id));
+        return saved;
+    }
+
+    @Override
+    public CommentDeletionJob getDeletionJob(UUID jobId) {
+        return validateOptionalExistence(deletionJobRepository.findById(jobId), CommentDeletionJob.class, "CommentDeletionJob");
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<Comment> getCommentTree(UUID applicationId, UUID userId) {
         // Cache the tree for user-specific requests
-        if (userId != null) {
-            String cacheKey = CacheKeyBuilder.commentTreeKey(applicationId.toString(), userId.toString());
+        String cacheKey = userId != null
+            ? applicationVersions.scoped(applicationId, CacheKeyBuilder.commentTreeKey(applicationId.toString(), userId.toString()))
+            : null;
+        if (cacheKey != null) {
             @SuppressWarnings("unchecked")
             List<Comment> cached = caffeineCache.get(cacheKey, List.class);
             if (cached != null) {
@@ -144,12 +386,15 @@ public class CommentServiceImpl implements CommentService {
             }
         }
 
-        List<Comment> all = repository.findAll().stream().filter(c -> applicationId.equals(c.getApplicationId())).collect(Collectors.toList());
-        Map<UUID, Comment> byId = all.stream().collect(Collectors.toMap(Comment::getId, c -> c));
-        Set<UUID> included = new HashSet<>();
-        List<Comment> roots = new ArrayList<>();
+        // Stream only this application's rows, parents first, and assemble the tree in one pass
+        CommentTreeAssembler assembler = new CommentTreeAssembler();
+        try (Stream<Comment> rows = repository.streamCommentTree(applicationId)) {
+            rows.forEach(assembler::accept);
+        }
+        List<Comment> roots = assembler.getRoots();
+
         if (userId != null) {
-            // 1. Get user's comments and their context
+            // Put the user's comments and their context ahead of the rest of the tree
             UserCommentsResponse userResp = getUserCommentsForApplication(applicationId, userId, Pageable.unpaged(), null);
             Set<UUID> userAndContextIds = userResp.getThreads().stream()
                 .flatMap(thread -> {
@@ -159,41 +404,112 @@ public class CommentServiceImpl implements CommentService {
                 })
                 .map(Comment::getId)
                 .collect(Collectors.toSet());
-            // 2. Build tree for user/context comments
-            for (Comment c : all) {
-                if (userAndContextIds.contains(c.getId())) {
-                    included.add(c.getId());
-                    if (c.getParentId() == null) roots.add(c);
-                    else {
-                        Comment parent = byId.get(c.getParentId());
-                        if (parent != null) parent.getChildren().add(c);
-                    }
+            assembler.promote(userAndContextIds);
+
+            caffeineCache.put(cacheKey, roots);
+        }
+        return roots;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Comment getCommentSubtree(UUID applicationId, UUID commentId) {
+        Comment top = findSubtreeTop(applicationId, commentId);
+        // One range scan over the materialized path returns the comment followed by its descendants, depth-first
+        CommentTreeAssembler assembler = new CommentTreeAssembler(commentId);
+        try (Stream<Comment> rows = repository.streamSubtree(applicationId, top.getPath(), top.getPath() + Comment.PATH_UPPER_BOUND)) {
+            rows.forEach(assembler::accept);
+        }
+        List<Comment> roots = assembler.getRoots();
+        return roots.isEmpty() ? top : roots.get(0);
+    }
+
+    @Override
+    public void streamCommentTree(UUID applicationId, UUID commentId, OutputStream out) throws IOException {
+        // Not cached and not user-ordered: the tree is never held in memory
+        if (commentId == null) {
+            treeStreamer.writeApplicationTree(applicationId, out);
+        } else {
+            treeStreamer.writeSubtree(findSubtreeTop(applicationId, commentId), out);
+        }
+    }
+
+    private Comment findSubtreeTop(UUID applicationId, UUID commentId) {
+        Comment top = validateOptionalExistence(repository.findById(commentId), Comment.class, "Comment");
+        if (!applicationId.equals(top.getApplicationId()) || top.getPath() == null) {
+            throw new RuntimeException(String.format("Comment with identifier %s not found", commentId));
+        }
+        return top;
+    }
+
+    @Override
+    public CursorPage<Comment> getCommentTreePage(UUID applicationId, UUID parentId, String after, int maxDepth, int maxChildrenPerNode) {
+        if (maxDepth < 1 || maxChildrenPerNode < 1) {
+            throw new IllegalArgumentException("maxDepth and maxChildrenPerNode must be greater than zero");
+        }
+        String cacheKey = applicationVersions.scoped(applicationId, CacheKeyBuilder.commentTreePageKey(
+            applicationId.toString(),
+            parentId != null ? parentId.toString() : "null",
+            after != null ? after : "",
+            maxDepth,
+            maxChildrenPerNode
+        ));
+        @SuppressWarnings("unchecked")
+        CursorPage<Comment> cached = caffeineCache.get(cacheKey, CursorPage.class);
+        if (cached != null) {
+            return cached;
+        }
+
+        // Top level is a keyset page of roots (or of one node's replies when expanding it)
+        CursorPage<Comment> top = getCommentsByCursor(applicationId, parentId, null, after, maxChildrenPerNode, false);
+
+        // Then one bounded query per level: at most maxChildrenPerNode + 1 replies for every node on the frontier
+        List<Comment> cut = new ArrayList<>();
+        List<Comment> frontier = top.content();
+        for (int depth = 1; depth < maxDepth && !frontier.isEmpty(); depth++) {
+            Map<UUID, Comment> parents = frontier.stream().collect(Collectors.toMap(Comment::getId, c -> c));
+            List<Comment> next = new ArrayList<>();
+            for (Comment child : repository.findNewestChildren(parents.keySet(), maxChildrenPerNode + 1)) {
+                Comment parent = parents.get(child.getParentId());
+                if (parent.getChildren().size() < maxChildrenPerNode) {
+                    parent.getChildren().add(child);
+                    next.add(child);
+                } else if (parent.getRemainingChildren() == null) {
+                    parent.setRemainingChildren(-1L); // more exist, exact number filled in below
+                    cut.add(parent);
                 }
             }
-            // 3. Fill rest of tree with other comments
-            for (Comment c : all) {
-                if (!included.contains(c.getId())) {
-                    if (c.getParentId() == null) roots.add(c);
-                    else {
-                        Comment parent = byId.get(c.getParentId());
-                        if (parent != null) parent.getChildren().add(c);
-                    }
-                }
+            for (Comment parent : frontier) {
+                if (parent.getRemainingChildren() == null) parent.setRemainingChildren(0L);
             }
+            frontier = next;
+        }
+        // Nodes on the last level were not expanded at all
+        for (Comment leaf : frontier) {
+            leaf.setRemainingChildren(null);
+            cut.add(leaf);
+        }
 
-            String cacheKey = CacheKeyBuilder.commentTreeKey(applicationId.toString(), userId.toString());
-            caffeineCache.put(cacheKey, roots);
-        } else {
-            // Default logic
-            for (Comment c : all) {
-                if (c.getParentId() == null) roots.add(c);
-                else {
-                    Comment parent = byId.get(c.getParentId());
-                    if (parent != null) parent.getChildren().add(c);
+        if (!cut.isEmpty()) {
+            Map<UUID, Long> counts = new HashMap<>();
+            for (Object[] row : repository.countChildren(applicationId, cut.stream().map(Comment::getId).toList())) {
+                counts.put((UUID) row[0], ((Number) row[1]).longValue());
+            }
+            for (Comment node : cut) {
+                long remaining = counts.getOrDefault(node.getId(), 0L) - node.getChildren().size();
+                node.setRemainingChildren(Math.max(remaining, 0L));
+                if (remaining > 0) {
+                    List<Comment> loaded = node.getChildren();
+                    // Empty cursor means "from the first reply", matching getCommentsByCursor
+                    node.setNextChildrenCursor(loaded.isEmpty() ? "" : KeysetCursor.of(
+                        loaded.get(loaded.size() - 1).getUpdatedAt().toInstant(),
+                        loaded.get(loaded.size() - 1).getId()).encode());
                 }
             }
         }
-        return roots;
+
+        caffeineCache.put(cacheKey, top);
+        return top;
     }
 
     @Override
@@ -203,13 +519,13 @@ public class CommentServiceImpl implements CommentService {
         int pageNumber = pageable.isPaged() ? pageable.getPageNumber() : -1;
         int pageSize = pageable.isPaged() ? pageable.getPageSize() : -1;
 
-        String cacheKey = CacheKeyBuilder.userCommentsKey(
+        String cacheKey = applicationVersions.scoped(applicationId, CacheKeyBuilder.userCommentsKey(
             applicationId.toString(),
             userId.toString(),
             sentiment,
             pageNumber,
             pageSize
-        );
+        ));
 
         UserCommentsResponse cached = caffeineCache.get(cacheKey, UserCommentsResponse.class);
         if (cached != null) {
@@ -223,8 +539,12 @@ public class CommentServiceImpl implements CommentService {
         if (userComments.isEmpty()) {
             return new UserCommentsResponse(Collections.emptyList(), userCommentsPage.getTotalElements());
         }
-        List<UUID> nestedCommentIds = userComments.stream().filter(c -> c.getParentId() != null).map(Comment::getId).collect(Collectors.toList());
-        List<Comment> ancestors = repository.findAncestorsForComments(nestedCommentIds);
+        // Every ancestor id is already in the materialized path, so the whole context is one primary key lookup
+        List<UUID> ancestorIds = userComments.stream()
+            .flatMap(c -> c.ancestorIds().stream())
+            .distinct()
+            .collect(Collectors.toList());
+        List<Comment> ancestors = ancestorIds.isEmpty() ? Collections.emptyList() : repository.findAllById(ancestorIds);
         Map<UUID, List<Comment>> lineageMap = buildLineageMap(userComments, ancestors);
         List<CommentThreadView> threads = userComments.stream().map(target -> {
             List<Comment> chain = lineageMap.getOrDefault(target.getId(), new ArrayList<>());
@@ -236,6 +556,98 @@ public class CommentServiceImpl implements CommentService {
         return response;
     }
 
+    @Override
+    public SentimentStatsResponse getSentimentStats(UUID applicationId) {
+        String cacheKey = applicationVersions.scoped(applicationId, CacheKeyBuilder.commentSentimentStatsKey(applicationId.toString()));
+        SentimentStatsResponse cached = caffeineCache.get(cacheKey, SentimentStatsResponse.class);
+        if (cached != null) {
+            return cached;
+        }
+
+        // At most two rows, kept current by the comments_sentiment_stats triggers
+        long positive = 0L;
+        long negative = 0L;
+        for (CommentSentimentStats stats : sentimentStatsRepository.findByIdApplicationId(applicationId)) {
+            if (stats.getId().getSentiment() == Comment.POSITIVE) positive = stats.getCount();
+            else if (stats.getId().getSentiment() == Comment.NEGATIVE) negative = stats.getCount();
+        }
+        SentimentStatsResponse response = new SentimentStatsResponse(applicationId, positive, negative);
+
+        caffeineCache.put(cacheKey, response);
+        return response;
+    }
+
+    @Override
+    public CommentSearchPage searchComments(UUID applicationId, String query, Integer sentiment, String after, int size) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query cannot be null or empty");
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be greater than zero");
+        }
+        float rank = Float.MAX_VALUE;
+        UUID id = KEYSET_MAX_ID;
+        if (after != null && !after.isEmpty()) {
+            KeysetCursor cursor = KeysetCursor.decode(after);
+            rank = cursor.keyAsFloat();
+            id = cursor.id();
+        }
+        // Rank and page on ids first, then load just that page of rows by primary key
+        int sentimentFilter = sentiment != null ? sentiment : 0;
+        List<Object[]> ranked = repository.searchRanked(applicationId, query, sentimentFilter, rank, id, size + 1,
+            searchMaxCandidates);
+        boolean hasNext = ranked.size() > size;
+        List<Object[]> pageRows = hasNext ? ranked.subList(0, size) : ranked;
+        List<UUID> ids = pageRows.stream().map(row -> (UUID) row[0]).toList();
+        Map<UUID, Comment> byId = ids.isEmpty() ? Collections.emptyMap()
+            : repository.findAllById(ids).stream().collect(Collectors.toMap(Comment::getId, c -> c));
+        List<Comment> content = ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+        String nextCursor = null;
+        if (hasNext) {
+            Object[] last = pageRows.get(pageRows.size() - 1);
+            nextCursor = KeysetCursor.of(((Number) last[1]).floatValue(), (UUID) last[0]).encode();
+        }
+        // The candidate count comes with every row from the same scan; an empty page has nothing left to flag
+        boolean truncated = !ranked.isEmpty() && ((Number) ranked.get(0)[2]).longValue() > searchMaxCandidates;
+        return new CommentSearchPage(content, size, nextCursor, hasNext, truncated);
+    }
+
+    // Hangs the user's comments, with the chain of replies leading to them, under the given (cloned) pinned roots
+    private void attachUserThreads(UUID applicationId, UUID userId, List<Comment> roots) {
+        if (roots.isEmpty()) return;
+        Map<UUID, Comment> rootMap = roots.stream().collect(Collectors.toMap(Comment::getId, c -> c));
+        List<String> rootIds = roots.stream().map(c -> c.getId().toString()).toList();
+        List<Comment> userComments = repository.findUserRepliesInThreads(applicationId, userId, rootIds);
+        if (userComments.isEmpty()) return;
+        List<UUID> ancestorIds = userComments.stream()
+            .flatMap(c -> c.ancestorIds().stream())
+            .filter(id -> !rootMap.containsKey(id))
+            .distinct()
+            .collect(Collectors.toList());
+        List<Comment> pool = new ArrayList<>(roots);
+        if (!ancestorIds.isEmpty()) {
+            pool.addAll(repository.findAllById(ancestorIds));
+        }
+        Map<UUID, List<Comment>> lineageMap = buildLineageMap(userComments, pool);
+        for (Comment target : userComments) {
+            List<Comment> chain = new ArrayList<>(lineageMap.getOrDefault(target.getId(), Collections.emptyList()));
+            chain.add(target);
+            Comment current = rootMap.get(chain.get(0).getId());
+            if (current == null) continue;
+            for (int i = 1; i < chain.size(); i++) {
+                Comment next = chain.get(i);
+                Optional<Comment> existingChild = current.getChildren().stream().filter(c -> c.getId().equals(next.getId())).findFirst();
+                if (existingChild.isPresent()) {
+                    current = existingChild.get();
+                } else {
+                    Comment newChild = cloneCommentWithoutChildren(next);
+                    current.getChildren().add(newChild);
+                    current = newChild;
+                }
+            }
+        }
+    }
+
     private Map<UUID, List<Comment>> buildLineageMap(List<Comment> targets, List<Comment> pool) {
         Map<UUID, Comment> lookup = pool.stream().collect(Collectors.toMap(Comment::getId, c -> c, (a, b) -> a));
         Map<UUID, List<Comment>> result = new HashMap<>();
@@ -264,14 +676,29 @@ public class CommentServiceImpl implements CommentService {
         copy.setParentId(c.getParentId());
         copy.setCreatedAt(c.getCreatedAt());
         copy.setUpdatedAt(c.getUpdatedAt());
+        copy.setVersion(c.getVersion());
+        copy.setPath(c.getPath());
+        copy.setReplyCount(c.getReplyCount());
+        copy.setPositiveReplies(c.getPositiveReplies());
+        copy.setNegativeReplies(c.getNegativeReplies());
+        copy.setBestScore(c.getBestScore());
+        copy.setLastActivityAt(c.getLastActivityAt());
         copy.setChildren(new ArrayList<>());
         return copy;
     }
 
+    private boolean isReviewWithSentiment(Comment comment) {
+        return comment.getParentId() == null && comment.getSentiment() != null;
+    }
+
+    // Sentiment totals are shared by all users of the application; one entry per version
+    private void evictSentimentStats(UUID applicationId) {
+        caffeineCache.evictPattern(CacheKeyBuilder.commentSentimentStatsKey(applicationId.toString()));
+    }
+
     /**
      * Evicts ALL cache entries for a specific user on a specific application.
-     * This ensures strong consistency for the active user while allowing
-     * eventual consistency (up to TTL) for other users.
+     * Correctness does not depend on it (see below); it keeps the local cache from filling with unreachable entries.
      *
      * Evicts:
      * 1. getUserCommentsForApplication - ALL variants (all pages, all sentiment filters)
@@ -283,12 +710,21 @@ public class CommentServiceImpl implements CommentService {
      * 3. getCommentTree - ONLY this user's tree view (not other users)
      *    Pattern: comments:tree:{appId}:user:{userId}
      *
-     * This targeted eviction ensures:
-     * - User A sees their changes immediately (strong consistency)
-     * - User B's cache on same instance is NOT evicted (eventual consistency)
-     * - User C on another instance keeps their cache (eventual consistency)
+     * 4. getCommentTreePage - the shared depth/fan-out limited trees of this application
+     *    Pattern: comments:tree:{appId}:lazy:*
+     *    (not user-specific: batches evict it once per application through evictSharedTreePages)
+     *
+     * Entries are keyed by the application version read before they were built (ApplicationVersions.scoped), and
+     * every committed write bumps that version, so no instance serves them once anyone has written to the
+     * application: other users and other instances simply miss and rebuild under the new version.
      */
     private void evictUserSpecificCache(UUID applicationId, UUID userId) {
+        evictUserCaches(applicationId, userId);
+        evictSharedTreePages(applicationId);
+    }
+
+    // Entries 1-3 above
+    private void evictUserCaches(UUID applicationId, UUID userId) {
         String appIdStr = applicationId.toString();
         String userIdStr = userId.toString();
 
@@ -310,4 +746,9 @@ public class CommentServiceImpl implements CommentService {
         String treeKey = "comments:tree:" + appIdStr + ":user:" + userIdStr;
         caffeineCache.evictPattern(treeKey);
     }
+
+    // Depth/fan-out limited trees are shared by all users, so drop every page of them for this app
+    private void evictSharedTreePages(UUID applicationId) {
+        caffeineCache.evictPattern(CacheKeyBuilder.commentTreePagePattern(applicationId.toString()));
+    }
 }
@@ -0,0 +1,72 @@
+package com.ratingsandreviews.comment;
+
+import com.ratingsandreviews.util.KeysetCursor;
+import org.springframework.data.domain.Sort;
+
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Sort keys supported for root comments (reviews) in the user-pinned feed. Each is read in order from an
+ * (application_id, ..., column, id) index covering roots, so pinned and other roots are both keyset reads.
+ */
+public enum CommentSort {
+    UPDATED_AT("updatedAt", "updated_at"),
+    REPLY_COUNT("replyCount", "reply_count"),
+    LAST_ACTIVITY_AT("lastActivityAt", "last_activity_at"),
+    BEST("bestScore", "best_score");
+
+    private final String property;
+    private final String column;
+
+    CommentSort(String property, String column) {
+        this.property = property;
+        this.column = column;
+    }
+
+    public static CommentSort of(String value) {
+        return Arrays.stream(values())
+            .filter(sort -> sort.property.equalsIgnoreCase(value) || (sort == BEST && "best".equalsIgnoreCase(value)))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Unsupported sort: " + value + " (use updatedAt, replyCount, lastActivityAt or best)"));
+    }
+
+    // The leading order of a page request; unsorted requests get the default, updatedAt
+    static CommentSort of(Sort sort) {
+        return sort.stream().findFirst().map(order -> of(order.getProperty())).orElse(UPDATED_AT);
+    }
+
+    static boolean isAscending(Sort sort) {
+        return sort.stream().findFirst().map(Sort.Order::isAscending).orElse(false);
+    }
+
+    // id breaks ties, matching the index and the keyset order
+    public Sort toSort(boolean ascending) {
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return Sort.by(direction, property).and(Sort.by(direction, "id"));
+    }
+
+    String column() {
+        return column;
+    }
+
+    // Every sort column is NOT NULL (updated_at and last_activity_at since changeset 19), so every row has a key; a
+    // NULL key would also drop out of the keyset comparison and the row off every page
+    KeysetCursor cursorOf(Comment comment) {
+        return switch (this) {
+            case UPDATED_AT -> KeysetCursor.of(comment.getUpdatedAt().toInstant(), comment.getId());
+            case REPLY_COUNT -> KeysetCursor.of(comment.getReplyCount(), comment.getId());
+            case LAST_ACTIVITY_AT -> KeysetCursor.of(comment.getLastActivityAt().toInstant(), comment.getId());
+            case BEST -> KeysetCursor.of(comment.getBestScore(), comment.getId());
+        };
+    }
+
+    // The cursor's sort key as a query parameter for column
+    Object keyOf(KeysetCursor cursor) {
+        return switch (this) {
+            case UPDATED_AT, LAST_ACTIVITY_AT -> cursor.keyAsInstant().atZone(ZoneOffset.UTC);
+            case REPLY_COUNT -> cursor.keyAsLong();
+            case BEST -> cursor.keyAsDouble();
+        };
+    }
+}
@@ -0,0 +1,71 @@
+package com.ratingsandreviews.comment;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Assembles a comment forest in a single pass from rows streamed in depth-first order,
+ * i.e. every parent arrives before its descendants and each subtree is contiguous.
+ * Only the chain of open ancestors is kept on a stack, so no id lookup map is needed.
+ */
+class CommentTreeAssembler {
+    private final Deque<Comment> ancestors = new ArrayDeque<>();
+    private final List<Comment> roots = new ArrayList<>();
+    private final UUID topId;
+
+    CommentTreeAssembler() {
+        this(null);
+    }
+
+    // Assembles a single subtree whose top comment (a reply itself) should be treated as the root
+    CommentTreeAssembler(UUID topId) {
+        this.topId = topId;
+    }
+
+    void accept(Comment comment) {
+        // Close every subtree that this row is not part of
+        while (!ancestors.isEmpty() && !ancestors.peek().getId().equals(comment.getParentId())) {
+            ancestors.pop();
+        }
+        if (comment.getParentId() == null || comment.getId().equals(topId)) {
+            roots.add(comment);
+        } else if (!ancestors.isEmpty()) {
+            ancestors.peek().getChildren().add(comment);
+        } else {
+            // Parent was not streamed (orphan row), skip it like the map based builder did
+            return;
+        }
+        ancestors.push(comment);
+    }
+
+    List<Comment> getRoots() {
+        return roots;
+    }
+
+    // Moves the given comments (and, recursively, their matching children) ahead of their siblings
+    void promote(Set<UUID> ids) {
+        promote(roots, ids);
+    }
+
+    private static void promote(List<Comment> nodes, Set<UUID> ids) {
+        if (ids.isEmpty() || nodes.isEmpty()) return;
+        List<Comment> promoted = new ArrayList<>();
+        List<Comment> rest = new ArrayList<>();
+        for (Comment node : nodes) {
+            if (ids.contains(node.getId())) {
+                promoted.add(node);
+                promote(node.getChildren(), ids);
+            } else {
+                rest.add(node);
+            }
+        }
+        if (promoted.isEmpty()) return;
+        nodes.clear();
+        nodes.addAll(promoted);
+        nodes.addAll(rest);
+    }
+}
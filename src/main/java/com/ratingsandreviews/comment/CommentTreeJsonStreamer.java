@@ -0,0 +1,117 @@
+package com.ratingsandreviews.comment;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Writes comment trees as nested JSON straight from the database cursor.
+ * Rows arrive in depth-first order, so a node is opened when it is read and closed once the next row is outside
+ * its subtree; each row is detached right after it is written. Memory per request is bounded by the tree depth
+ * and the JDBC fetch size, not by the size of the tree. Each node's own fields go through the application's
+ * ObjectMapper, so they match the non-streaming endpoints; only its children are written here.
+ */
+@Component
+public class CommentTreeJsonStreamer {
+    private final CommentRepository repository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    // The application's mapper, minus Comment.children, which write() fills in from the following rows
+    private final ObjectMapper nodeMapper;
+
+    @Autowired
+    public CommentTreeJsonStreamer(CommentRepository repository, EntityManager entityManager, ObjectMapper objectMapper) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.nodeMapper = objectMapper.copy().addMixIn(Comment.class, WithoutChildren.class);
+    }
+
+    // Writes a JSON array with every root comment of the application and its replies
+    @Transactional(readOnly = true)
+    public void writeApplicationTree(UUID applicationId, OutputStream out) throws IOException {
+        try (Stream<Comment> rows = repository.streamCommentTree(applicationId)) {
+            write(rows, null, out);
+        }
+    }
+
+    // Writes a single JSON object for the given comment and all of its replies
+    @Transactional(readOnly = true)
+    public void writeSubtree(Comment top, OutputStream out) throws IOException {
+        String path = top.getPath();
+        try (Stream<Comment> rows = repository.streamSubtree(top.getApplicationId(), path, path + Comment.PATH_UPPER_BOUND)) {
+            write(rows, top.getId(), out);
+        }
+    }
+
+    private void write(Stream<Comment> rows, UUID topId, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            if (topId == null) generator.writeStartArray();
+            Deque<UUID> open = new ArrayDeque<>();
+            boolean written = false;
+            Iterator<Comment> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Comment comment = iterator.next();
+                // Close every node whose subtree ended
+                while (!open.isEmpty() && !open.peek().equals(comment.getParentId())) {
+                    endNode(generator);
+                    open.pop();
+                }
+                boolean isTop = topId == null ? comment.getParentId() == null : comment.getId().equals(topId);
+                if (open.isEmpty() && !isTop) {
+                    // Orphan row (parent not part of this tree), skip it and, implicitly, its replies
+                    entityManager.detach(comment);
+                    continue;
+                }
+                startNode(generator, comment);
+                open.push(comment.getId());
+                written = true;
+                entityManager.detach(comment);
+            }
+            while (!open.isEmpty()) {
+                endNode(generator);
+                open.pop();
+            }
+            if (topId == null) {
+                generator.writeEndArray();
+            } else if (!written) {
+                generator.writeNull();
+            }
+        }
+    }
+
+    private void startNode(JsonGenerator generator, Comment comment) throws IOException {
+        generator.writeStartObject();
+        Iterator<Map.Entry<String, JsonNode>> fields = nodeMapper.valueToTree(comment).fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            generator.writeFieldName(field.getKey());
+            generator.writeTree(field.getValue());
+        }
+        generator.writeArrayFieldStart("children");
+    }
+
+    private void endNode(JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    @JsonIgnoreProperties("children")
+    private abstract static class WithoutChildren {
+    }
+}
@@ -0,0 +1,17 @@
+package com.ratingsandreviews.comment;
+
+import lombok.Getter;
+
+import java.util.UUID;
+
+@Getter
+public class SentimentStatsResponse {
+    private final UUID applicationId;
+    private final long positive;
+    private final long negative;
+    public SentimentStatsResponse(UUID applicationId, long positive, long negative) {
+        this.applicationId = applicationId;
+        this.positive = positive;
+        this.negative = negative;
+    }
+}
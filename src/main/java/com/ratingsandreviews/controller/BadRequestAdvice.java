@@ -0,0 +1,21 @@
+package com.ratingsandreviews.controller;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.io.IOException;
+
+/**
+ * Maps IllegalArgumentException, which validation throws for unsupported request values such as an unknown sort,
+ * to 400 Bad Request with the exception's message in the standard error body.
+ */
+@RestControllerAdvice
+public class BadRequestAdvice {
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public void badRequest(IllegalArgumentException e, HttpServletResponse response) throws IOException {
+        response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+    }
+}
@@ -1,11 +1,19 @@
 package com.ratingsandreviews.rating;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.util.Pair;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
 public interface ApplicationRatingStatsRepository extends JpaRepository<ApplicationRatingStats, Pair<UUID, Integer>> {
     List<ApplicationRatingStats> findByIdApplicationId(UUID applicationId);
+
+    List<ApplicationRatingStats> findByIdApplicationIdIn(Collection<UUID> applicationIds);
+
+    // Rating sum and count per application as [applicationId, sum, count]
+    @Query("SELECT s.id.applicationId, SUM(s.id.scale * s.count), SUM(s.count) FROM application_rating_stats s GROUP BY s.id.applicationId")
+    List<Object[]> sumAndCountByApplication();
 }
\ No newline at end of file
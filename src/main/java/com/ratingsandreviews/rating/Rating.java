@@ -4,6 +4,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Version;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -24,6 +25,8 @@ public class Rating {
     private String userName;
     private ZonedDateTime createdAt;
     private ZonedDateTime updatedAt;
+    @Version
+    private long version;
 
     // validation - rating is between 1 and 5
     public void setRating(int rating) {
@@ -0,0 +1,349 @@
+package com.ratingsandreviews.rating;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Plain JDBC writer for bulk rating imports, per-user rating upserts and rating aggregates.
+ * Imported rows are sent as one set-based upsert per chunk, so a rating by a user who already rated the application
+ * replaces that rating instead of failing the (application_id, user_name) unique key.
+ * Stats deltas are applied as one batch of upserts, in a single transaction so a failed flush can be retried as a whole.
+ */
+@Component
+public class RatingBatchRepository {
+    static final int BATCH_SIZE = 500;
+
+    // UPSERT_CTE below for a whole chunk, passed as arrays: lock the users' current ratings, update those whose value
+    // differs and insert the rest. One row per input row, in input order: previous rating and creation time, whether
+    // the row was written, and whether a concurrent first submission won the unique key (the caller retries those).
+    // The (application_id, user_name) pairs of one chunk must be distinct.
+    private static final String IMPORT_SQL =
+        "WITH input AS (" +
+        "  SELECT * FROM unnest(?::uuid[], ?::uuid[], ?::int[], ?::varchar[], ?::timestamp[], ?::timestamp[])" +
+        "    WITH ORDINALITY AS t(id, application_id, rating, user_name, created_at, updated_at, ord)" +
+        "), previous AS (" +
+        "  SELECT r.id, r.application_id, r.user_name, r.rating, r.created_at FROM ratings r" +
+        "  JOIN input i ON r.application_id = i.application_id AND r.user_name = i.user_name FOR UPDATE OF r" +
+        "), updated AS (" +
+        "  UPDATE ratings r SET rating = i.rating, updated_at = i.updated_at, version = r.version + 1" +
+        "  FROM previous p JOIN input i ON i.application_id = p.application_id AND i.user_name = p.user_name" +
+        "  WHERE r.id = p.id AND r.rating IS DISTINCT FROM i.rating RETURNING r.id" +
+        "), inserted AS (" +
+        "  INSERT INTO ratings (id, application_id, rating, user_name, created_at, updated_at)" +
+        "  SELECT i.id, i.application_id, i.rating, i.user_name, i.created_at, i.updated_at FROM input i" +
+        "  WHERE NOT EXISTS (SELECT 1 FROM previous p WHERE p.application_id = i.application_id AND p.user_name = i.user_name)" +
+        "  ORDER BY i.ord" +
+        "  ON CONFLICT (application_id, user_name) DO NOTHING RETURNING id" +
+        ") " +
+        "SELECT i.ord, p.rating, COALESCE(p.created_at, i.created_at), u.id IS NOT NULL OR x.id IS NOT NULL," +
+        "  p.id IS NULL AND x.id IS NULL " +
+        "FROM input i LEFT JOIN previous p ON p.application_id = i.application_id AND p.user_name = i.user_name " +
+        "LEFT JOIN updated u ON u.id = p.id LEFT JOIN inserted x ON x.id = i.id ORDER BY i.ord";
+
+    private static final String ADD_TO_STATS_SQL =
+        "INSERT INTO application_rating_stats (application_id, scale, count) VALUES (?, ?, ?) " +
+        "ON CONFLICT (application_id, scale) DO UPDATE SET count = application_rating_stats.count + EXCLUDED.count";
+
+    // One round trip: lock the user's current rating if any, change it only when the value differs, otherwise insert.
+    // An empty result means a concurrent insert won the unique key between the lock and the insert. Without a
+    // user name nothing matches previous and nothing conflicts, so the statement is a plain insert.
+    private static final String UPSERT_CTE =
+        "WITH previous AS (" +
+        "  SELECT id, rating, created_at, version FROM ratings WHERE application_id = ? AND user_name = ? FOR UPDATE" +
+        "), updated AS (" +
+        "  UPDATE ratings r SET rating = ?, updated_at = ?, version = r.version + 1 FROM previous p" +
+        "  WHERE r.id = p.id AND r.rating IS DISTINCT FROM ? RETURNING r.id, r.version" +
+        "), inserted AS (" +
+        "  INSERT INTO ratings (id, application_id, rating, user_name, created_at, updated_at)" +
+        "  SELECT ?, ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM previous)" +
+        "  ON CONFLICT (application_id, user_name) DO NOTHING RETURNING id, version, created_at" +
+        "), written AS (" +
+        "  SELECT p.id, p.rating AS previous_rating, p.created_at, COALESCE(u.version, p.version) AS version, u.id IS NOT NULL AS changed" +
+        "  FROM previous p LEFT JOIN updated u ON u.id = p.id" +
+        "  UNION ALL SELECT i.id, NULL, i.created_at, i.version, TRUE FROM inserted i" +
+        ")";
+
+    private static final String UPSERT_SQL = UPSERT_CTE + " SELECT id, previous_rating, created_at, version, changed FROM written";
+
+    // The upsert plus the application's stats rows and newest ratings, as tagged rows of one result set.
+    // stats and recent read the snapshot taken before the write, so the caller adds the written rating itself.
+    private static final String UPSERT_WITH_AGGREGATES_SQL = UPSERT_CTE +
+        ", stats AS (SELECT scale, count FROM application_rating_stats WHERE application_id = ?)" +
+        ", recent AS (SELECT id, rating, user_name, created_at, updated_at, version FROM ratings WHERE application_id = ?" +
+        "  ORDER BY updated_at DESC NULLS LAST LIMIT ?) " +
+        "SELECT 'w', id, previous_rating, NULL::varchar, created_at, NULL::timestamp, version, changed, NULL::smallint, NULL::bigint FROM written " +
+        "UNION ALL SELECT 's', NULL, NULL, NULL, NULL, NULL, NULL, NULL, scale, count FROM stats " +
+        "UNION ALL SELECT 'r', id, rating, user_name, created_at, updated_at, version, NULL, NULL, NULL FROM recent";
+
+    // Returns the deleted row, or nothing when a concurrent delete removed it first
+    private static final String DELETE_SQL =
+        "DELETE FROM ratings WHERE id = ? RETURNING application_id, rating, created_at";
+
+    private static final String ADD_TO_BUCKETS_SQL =
+        "INSERT INTO application_rating_buckets (application_id, bucket_start, scale, count) VALUES (?, ?, ?, ?) " +
+        "ON CONFLICT (application_id, bucket_start, scale) DO UPDATE SET count = application_rating_buckets.count + EXCLUDED.count";
+
+    private static final String BUCKETS_SQL =
+        "SELECT bucket_start, scale, count FROM application_rating_buckets WHERE application_id = ? AND bucket_start >= ?";
+
+    private static final String DELETE_BUCKETS_SQL = "DELETE FROM application_rating_buckets WHERE bucket_start < ?";
+
+    private static final String APPLICATION_IDS_SQL = "SELECT id FROM applications ORDER BY id";
+
+    private static final String COUNT_BY_SCALE_SQL =
+        "SELECT application_id, rating, count(*) FROM ratings WHERE application_id IN (:applicationIds) GROUP BY application_id, rating";
+
+    private static final String STATS_SQL =
+        "SELECT application_id, scale, count FROM application_rating_stats WHERE application_id IN (:applicationIds)";
+
+    // Released when the transaction ends, so lock and release can never land on different server sessions
+    private static final String TRY_ADVISORY_LOCK_SQL = "SELECT pg_try_advisory_lock(?)";
+    private static final String ADVISORY_UNLOCK_SQL = "SELECT pg_advisory_unlock(?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    public RatingBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    // Ratings must already carry their id and timestamps, and at most one rating per (application, user name).
+    // Returns one entry per rating, in order; rows beaten to the unique key by a concurrent insert are upserted again
+    // one by one, as upsert() callers do.
+    public List<ImportedRating> importAll(List<Rating> ratings) {
+        if (ratings.isEmpty()) {
+            return List.of();
+        }
+        List<ImportedRating> imported = jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(IMPORT_SQL);
+            ps.setArray(1, connection.createArrayOf("uuid", ratings.stream().map(Rating::getId).toArray()));
+            ps.setArray(2, connection.createArrayOf("uuid", ratings.stream().map(Rating::getApplicationId).toArray()));
+            ps.setArray(3, connection.createArrayOf("int4", ratings.stream().map(Rating::getRating).toArray()));
+            ps.setArray(4, connection.createArrayOf("varchar", ratings.stream().map(Rating::getUserName).toArray()));
+            ps.setArray(5, connection.createArrayOf("timestamp",
+                ratings.stream().map(r -> Timestamp.from(r.getCreatedAt().toInstant())).toArray()));
+            ps.setArray(6, connection.createArrayOf("timestamp",
+                ratings.stream().map(r -> Timestamp.from(r.getUpdatedAt().toInstant())).toArray()));
+            return ps;
+        }, (rs, row) -> {
+            Rating rating = ratings.get(rs.getInt(1) - 1);
+            if (rs.getBoolean(5)) {
+                return null;
+            }
+            return new ImportedRating(rating.getApplicationId(), rating.getRating(), rs.getObject(2, Integer.class),
+                toInstant(rs.getTimestamp(3)), rs.getBoolean(4));
+        });
+        List<ImportedRating> result = new ArrayList<>(imported.size());
+        for (int i = 0; i < imported.size(); i++) {
+            ImportedRating row = imported.get(i);
+            if (row == null) {
+                Rating rating = ratings.get(i);
+                RatingUpsert upsert = upsert(rating).orElseThrow(() ->
+                    new IllegalStateException("Rating upsert for user " + rating.getUserName() + " did not settle"));
+                row = new ImportedRating(rating.getApplicationId(), rating.getRating(), upsert.previousRating(),
+                    upsert.createdAt(), upsert.changed());
+            }
+            result.add(row);
+        }
+        return result;
+    }
+
+    // previousRating is null when the row was inserted; createdAt is the stored row's, also for updates
+    public record ImportedRating(UUID applicationId, int rating, Integer previousRating, Instant createdAt, boolean changed) {
+    }
+
+    // The rating must carry a new id and its timestamps, used only when the user has no rating for the application yet
+    public Optional<RatingUpsert> upsert(Rating rating) {
+        List<RatingUpsert> rows = jdbcTemplate.query(UPSERT_SQL, (rs, row) -> new RatingUpsert(
+                rs.getObject(1, UUID.class),
+                rs.getObject(2, Integer.class),
+                toInstant(rs.getTimestamp(3)),
+                rs.getLong(4),
+                rs.getBoolean(5)),
+            upsertArgs(rating));
+        return rows.stream().findFirst();
+    }
+
+    // Same upsert, also returning the persisted stats and the recentLimit newest ratings; empty as for upsert()
+    public Optional<RatingWrite> upsertWithAggregates(Rating rating, int recentLimit) {
+        Object[] args = Arrays.copyOf(upsertArgs(rating), 14);
+        args[11] = rating.getApplicationId();
+        args[12] = rating.getApplicationId();
+        args[13] = recentLimit;
+        return jdbcTemplate.query(UPSERT_WITH_AGGREGATES_SQL, rs -> {
+            RatingUpsert written = null;
+            List<StatsDelta> stats = new ArrayList<>();
+            List<Rating> recent = new ArrayList<>();
+            while (rs.next()) {
+                switch (rs.getString(1)) {
+                    case "w" -> written = new RatingUpsert(rs.getObject(2, UUID.class), rs.getObject(3, Integer.class),
+                        toInstant(rs.getTimestamp(5)), rs.getLong(7), rs.getBoolean(8));
+                    case "s" -> stats.add(new StatsDelta(rating.getApplicationId(), rs.getShort(9), rs.getLong(10)));
+                    default -> {
+                        Rating r = new Rating();
+                        r.setId(rs.getObject(2, UUID.class));
+                        r.setApplicationId(rating.getApplicationId());
+                        Integer value = rs.getObject(3, Integer.class);
+                        if (value != null) {
+                            r.setRating(value);
+                        }
+                        r.setUserName(rs.getString(4));
+                        r.setCreatedAt(toUtc(rs.getTimestamp(5)));
+                        r.setUpdatedAt(toUtc(rs.getTimestamp(6)));
+                        r.setVersion(rs.getLong(7));
+                        recent.add(r);
+                    }
+                }
+            }
+            return written == null ? Optional.<RatingWrite>empty() : Optional.of(new RatingWrite(written, stats, recent));
+        }, args);
+    }
+
+    // previousRating is null when the row was inserted; changed is false when the stored rating already had the value
+    public record RatingUpsert(UUID id, Integer previousRating, Instant createdAt, long version, boolean changed) {
+    }
+
+    // stats and recent are as of just before the write
+    public record RatingWrite(RatingUpsert upsert, List<StatsDelta> stats, List<Rating> recent) {
+    }
+
+    // Only the caller whose statement removed the row gets it back, so the row's counts are taken out exactly once
+    public Optional<Rating> delete(UUID id) {
+        List<Rating> rows = jdbcTemplate.query(DELETE_SQL, (rs, row) -> {
+            Rating r = new Rating();
+            r.setId(id);
+            r.setApplicationId(rs.getObject(1, UUID.class));
+            Integer value = rs.getObject(2, Integer.class);
+            if (value != null) {
+                r.setRating(value);
+            }
+            r.setCreatedAt(toUtc(rs.getTimestamp(3)));
+            return r;
+        }, id);
+        return rows.stream().findFirst();
+    }
+
+    private static Object[] upsertArgs(Rating rating) {
+        Timestamp updatedAt = Timestamp.from(rating.getUpdatedAt().toInstant());
+        return new Object[]{
+            rating.getApplicationId(), rating.getUserName(),
+            rating.getRating(), updatedAt, rating.getRating(),
+            rating.getId(), rating.getApplicationId(), rating.getRating(), rating.getUserName(),
+            Timestamp.from(rating.getCreatedAt().toInstant()), updatedAt};
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant();
+    }
+
+    private static ZonedDateTime toUtc(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toInstant().atZone(ZoneOffset.UTC);
+    }
+
+    // Deltas should be sorted by (applicationId, scale) so concurrent flushes lock rows in the same order
+    @Transactional
+    public void addToStats(List<StatsDelta> deltas) {
+        jdbcTemplate.batchUpdate(ADD_TO_STATS_SQL, deltas, BATCH_SIZE, (ps, delta) -> {
+            ps.setObject(1, delta.applicationId());
+            ps.setShort(2, delta.scale());
+            ps.setLong(3, delta.count());
+        });
+    }
+
+    public record StatsDelta(UUID applicationId, short scale, long count) {
+    }
+
+    // Same ordering rule as addToStats: sort by (applicationId, bucketStart, scale)
+    @Transactional
+    public void addToBuckets(List<BucketDelta> deltas) {
+        jdbcTemplate.batchUpdate(ADD_TO_BUCKETS_SQL, deltas, BATCH_SIZE, (ps, delta) -> {
+            ps.setObject(1, delta.applicationId());
+            ps.setTimestamp(2, Timestamp.from(delta.bucketStart()));
+            ps.setShort(3, delta.scale());
+            ps.setLong(4, delta.count());
+        });
+    }
+
+    // Hourly buckets of one application from the given start on, read through the primary key
+    public List<BucketDelta> findBuckets(UUID applicationId, Instant since) {
+        return jdbcTemplate.query(BUCKETS_SQL, (rs, row) ->
+            new BucketDelta(applicationId, rs.getTimestamp(1).toInstant(), rs.getShort(2), rs.getLong(3)),
+            applicationId, Timestamp.from(since));
+    }
+
+    public int deleteBucketsBefore(Instant before) {
+        return jdbcTemplate.update(DELETE_BUCKETS_SQL, Timestamp.from(before));
+    }
+
+    public record BucketDelta(UUID applicationId, Instant bucketStart, short scale, long count) {
+    }
+
+    // Runs work while holding a session-level advisory lock; empty, without running it, when another session holds
+    // the lock. The lock is taken on a connection of its own, outside any transaction, so a long run neither keeps a
+    // transaction open nor holds back vacuum; work done meanwhile uses connections of its own. That connection must
+    // keep one server session (a direct connection, or session pooling behind PgBouncer). A connection that could not
+    // be unlocked is aborted rather than handed back to the pool with the lock still held.
+    public <T> Optional<T> withAdvisoryLock(long key, Supplier<T> work) {
+        DataSource dataSource = Objects.requireNonNull(jdbcTemplate.getDataSource(), "dataSource");
+        try (Connection connection = dataSource.getConnection()) {
+            JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+            if (!Boolean.TRUE.equals(session.queryForObject(TRY_ADVISORY_LOCK_SQL, Boolean.class, key))) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(work.get());
+            } finally {
+                try {
+                    session.queryForObject(ADVISORY_UNLOCK_SQL, Boolean.class, key);
+                } catch (DataAccessException e) {
+                    connection.abort(Runnable::run);
+                    throw e;
+                }
+            }
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Could not use a connection for advisory lock " + key, e);
+        }
+    }
+
+    public List<UUID> findApplicationIds() {
+        return jdbcTemplate.queryForList(APPLICATION_IDS_SQL, UUID.class);
+    }
+
+    // Rating counts per (application, scale) counted from the ratings rows: a plain MVCC read, no row locks
+    public List<StatsDelta> countRatingsByScale(Collection<UUID> applicationIds) {
+        return namedJdbcTemplate.query(COUNT_BY_SCALE_SQL, Map.of("applicationIds", applicationIds), (rs, row) ->
+            new StatsDelta(rs.getObject(1, UUID.class), rs.getShort(2), rs.getLong(3)));
+    }
+
+    // Persisted application_rating_stats rows of the given applications
+    public List<StatsDelta> findStats(Collection<UUID> applicationIds) {
+        return namedJdbcTemplate.query(STATS_SQL, Map.of("applicationIds", applicationIds), (rs, row) ->
+            new StatsDelta(rs.getObject(1, UUID.class), rs.getShort(2), rs.getLong(3)));
+    }
+}
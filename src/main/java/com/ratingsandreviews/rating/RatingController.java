@@ -1,24 +1,44 @@
 package com.ratingsandreviews.rating;
 
+import com.ratingsandreviews.cache.ApplicationVersions;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratingsandreviews.util.CursorPage;
+import com.ratingsandreviews.util.WriteView;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/v1/ratings")
 public class RatingController {
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final int FIRST_PAGE_SIZE = 10;
     private final RatingService ratingService;
+    private final RatingStatsReconciler statsReconciler;
+    private final ObjectMapper objectMapper;
+    // Source of the ETag on rating pages and aggregates; RatingHistogram bumps it after every flush, so aggregates
+    // that lacked another instance's pending ratings are revalidated once those are counted
+    private final ApplicationVersions applicationVersions;
 
     @Autowired
-    public RatingController(RatingService ratingService) {
+    public RatingController(RatingService ratingService, RatingStatsReconciler statsReconciler,
+                            ApplicationVersions applicationVersions, ObjectMapper objectMapper) {
         this.ratingService = ratingService;
+        this.statsReconciler = statsReconciler;
+        this.applicationVersions = applicationVersions;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/{applicationId}")
@@ -27,32 +47,133 @@ public class RatingController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "updatedAt") String sortBy,
-            @RequestParam(defaultValue = "desc") String order) {
-        Sort sort = order.equalsIgnoreCase("asc") ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
+            @RequestParam(defaultValue = "desc") String order,
+            WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(applicationId))) {
+            return null;
+        }
+        // Only index-backed sorts are accepted; anything else is rejected rather than sorted in memory
+        Sort sort = RatingSort.of(sortBy).toSort(order.equalsIgnoreCase("asc"));
         Pageable pageable = PageRequest.of(page, size, sort);
         return ratingService.getRatingsByApplicationId(applicationId, pageable);
     }
 
+    // Keyset variant, selected by passing `after` (empty for the first page); every page is one index range read
+    @GetMapping(value = "/{applicationId}", params = "after")
+    public CursorPage<Rating> getRatingsByApplicationIdAfter(
+            @PathVariable UUID applicationId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "updatedAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String order,
+            WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(applicationId))) {
+            return null;
+        }
+        return ratingService.getRatingsByApplicationIdAfter(applicationId, RatingSort.of(sortBy), order.equalsIgnoreCase("asc"), after, size);
+    }
+
     @GetMapping("/average/{applicationId}")
-    public Double getAverageRatingForApplication(@PathVariable String applicationId) {
+    public Double getAverageRatingForApplication(@PathVariable String applicationId, WebRequest request) {
+        if (request.checkNotModified(applicationVersions.eTag(UUID.fromString(applicationId)))) {
+            return null;
+        }
         return ratingService.getRatingForApplication(applicationId);
     }
 
+    // Average and category stats of up to 100 applications in one call, e.g. for a page of store front tiles;
+    // tagged with the versions of all of them
+    @GetMapping("/summary")
+    public List<RatingSummary> getSummaries(@RequestParam List<UUID> ids, WebRequest request) {
+        // Oversized lists are left to the service to reject rather than read a counter for every id first
+        if (ids.size() <= RatingServiceImpl.MAX_SUMMARY_IDS && request.checkNotModified(applicationVersions.eTag(ids))) {
+            return null;
+        }
+        return ratingService.getSummaries(ids);
+    }
+
+    // Applications ranked by=average (exact mean) or by=bayesian (mean pulled towards the configured prior)
+    @GetMapping("/leaderboard")
+    public List<RatingLeaderboard.Entry> getLeaderboard(
+            @RequestParam(defaultValue = "bayesian") String by,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ratingService.getLeaderboard(by, limit);
+    }
+
+    // All-time counts per scale, or with window=24h|7d|30d only ratings created in that window
     @GetMapping("/category-stats/{applicationId}")
-    public List<ApplicationRatingStats> getCategoryStatsForApplication(@PathVariable String applicationId) {
+    public List<ApplicationRatingStats> getCategoryStatsForApplication(
+            @PathVariable String applicationId,
+            @RequestParam(required = false) String window,
+            WebRequest request) {
+        if (window != null) {
+            // Windows slide with the clock, so the application version alone cannot validate them
+            return ratingService.getCategoryStatsForApplication(applicationId, window);
+        }
+        if (request.checkNotModified(applicationVersions.eTag(UUID.fromString(applicationId)))) {
+            return null;
+        }
         return ratingService.getCategoryStatsForApplication(applicationId);
     }
 
+    // Returns just the saved rating with its id and version as ETag; view=full (or Prefer: return=representation)
+    // also returns the new average, category stats and first page of ratings, all read by the statement that writes the rating
     @PostMapping
-    public ResponseEntity<RatingSubmissionResponse> submitRating(@RequestBody Rating rating) {
-        Rating saved = ratingService.submitRating(rating);
-        Double avg = ratingService.getRatingForApplication(saved.getApplicationId().toString());
-        List<ApplicationRatingStats> stats = ratingService.getCategoryStatsForApplication(saved.getApplicationId().toString());
-        // Return the first page of ratings (page 0, size 10, sorted by updatedAt desc)
-        Pageable pageable = PageRequest.of(0, 10, Sort.by("updatedAt").descending());
-        Page<Rating> page = ratingService.getRatingsByApplicationId(saved.getApplicationId(), pageable);
-        RatingSubmissionResponse response = new RatingSubmissionResponse(saved, avg, stats, page);
-        return ResponseEntity.ok(response);
+    public ResponseEntity<?> submitRating(
+            @RequestBody Rating rating,
+            @RequestParam(required = false) String view,
+            @RequestHeader(value = "Prefer", required = false) String prefer) {
+        if (WriteView.resolve(view, prefer) == WriteView.MINIMAL) {
+            Rating saved = ratingService.submitRating(rating);
+            return ResponseEntity.ok().eTag(WriteView.eTag(saved.getId(), saved.getVersion())).body(saved);
+        }
+        RatingSubmission submission = ratingService.submitRatingWithAggregates(rating, FIRST_PAGE_SIZE);
+        return ResponseEntity.ok(new RatingSubmissionResponse(submission.savedRating(), submission.newAverage(),
+            submission.newCategoryStats(), submission.page()));
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<Rating> updateRating(@PathVariable UUID id, @RequestBody UpdateRatingRequest request) {
+        Rating saved = ratingService.updateRating(id, request.rating());
+        return ResponseEntity.ok().eTag(WriteView.eTag(saved.getId(), saved.getVersion())).body(saved);
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteRating(@PathVariable UUID id) {
+        ratingService.deleteRating(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Runs the stats reconciliation now instead of waiting for the nightly schedule
+    @PostMapping("/stats/reconcile")
+    public RatingStatsReconciler.ReconciliationReport reconcileStats() {
+        return statsReconciler.reconcile();
+    }
+
+    // Bulk import from a JSON array; rows go in as one upsert per chunk with one stats update per (application, scale).
+    // A user who already rated an application has that rating replaced, as with a single submit. Chunks commit one by
+    // one, so a rejected row ends the import after the rows before its chunk
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<RatingBatchResponse> submitRatings(@RequestBody List<Rating> ratings) {
+        return ResponseEntity.ok(RatingBatchResponse.of(ratingService.submitRatings(ratings.iterator())));
+    }
+
+    // Same import from newline-delimited JSON, read row by row off the request body so large files are never
+    // held in memory
+    @PostMapping(value = "/batch", consumes = NDJSON_VALUE)
+    public ResponseEntity<RatingBatchResponse> submitRatingsNdjson(InputStream body) throws IOException {
+        try (MappingIterator<Rating> ratings = objectMapper.readerFor(Rating.class).readValues(body)) {
+            return ResponseEntity.ok(RatingBatchResponse.of(ratingService.submitRatings(ratings)));
+        }
+    }
+
+    public record RatingBatchResponse(int inserted, int updated, int unchanged) {
+        static RatingBatchResponse of(RatingImport result) {
+            return new RatingBatchResponse(result.inserted(), result.updated(), result.unchanged());
+        }
+    }
+
+    public record UpdateRatingRequest(Integer rating) {
     }
 
     public static class RatingSubmissionResponse {
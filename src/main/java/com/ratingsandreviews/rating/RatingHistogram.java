@@ -0,0 +1,297 @@
+package com.ratingsandreviews.rating;
+
+import com.ratingsandreviews.cache.ApplicationVersions;
+import com.ratingsandreviews.cache.CacheKeyBuilder;
+import com.ratingsandreviews.cache.CacheService;
+import com.ratingsandreviews.util.AppLogger;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind buffer for application_rating_stats.
+ * New ratings are counted in LongAdders (one per application and scale) instead of each insert upserting the same
+ * stats row, so writers to a hot application no longer queue on one row lock. Pending counts are merged into
+ * application_rating_stats on a timer, or as soon as flush-threshold ratings are waiting, and added on top of the
+ * persisted counts by readers in the meantime. Counts still pending when the process dies are lost; the persisted
+ * table can be rebuilt from the ratings table. Each flush bumps the version of every application it touched, since
+ * the stats served under that version's ETag just changed, and forgets applications left with nothing pending.
+ * Every flush refreshes this instance's field in one Redis hash of heartbeats, holding its number of successful flushes
+ * and when it was published, so the stats reconciler can wait until every running instance has persisted what it had
+ * pending. Liveness compares those timestamps across hosts, so clocks must agree to well within heartbeat-ttl-ms.
+ */
+@Component
+public class RatingHistogram {
+    private static final AppLogger logger = AppLogger.getInstance(RatingHistogram.class);
+    static final int SCALES = 5;
+
+    private final Map<UUID, Counts> pending = new ConcurrentHashMap<>();
+    private final AtomicLong pendingTotal = new AtomicLong();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    // Odd while a flush is moving pending counts into the table, bumped when it starts and when it ends
+    private final AtomicLong flushSequence = new AtomicLong();
+    // Flushes that left nothing pending behind them; a failed flush puts its counts back and does not count
+    private final AtomicLong successfulFlushes = new AtomicLong();
+    private final String instanceId = UUID.randomUUID().toString();
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "rating-histogram-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final RatingBatchRepository batchRepository;
+    private final CacheService redisCache;
+    private final ApplicationVersions applicationVersions;
+    private final long flushThreshold;
+    private final long flushIntervalMs;
+    private final long heartbeatTtlMs;
+
+    @Autowired
+    public RatingHistogram(RatingBatchRepository batchRepository, CacheService redisCacheService,
+                           ApplicationVersions applicationVersions,
+                           @Value("${application.ratings.histogram.flush-threshold:10000}") long flushThreshold,
+                           @Value("${application.ratings.histogram.flush-interval-ms:1000}") long flushIntervalMs,
+                           @Value("${application.ratings.histogram.heartbeat-ttl-ms:30000}") long heartbeatTtlMs) {
+        this.batchRepository = batchRepository;
+        this.redisCache = redisCacheService;
+        this.applicationVersions = applicationVersions;
+        this.flushThreshold = flushThreshold;
+        this.flushIntervalMs = flushIntervalMs;
+        this.heartbeatTtlMs = heartbeatTtlMs;
+    }
+
+    // Visible to the reconciler before the first flush, so ratings recorded before it are waited for too
+    @PostConstruct
+    void register() {
+        publishHeartbeat();
+    }
+
+    public void record(UUID applicationId, int scale) {
+        record(applicationId, scale, 1);
+    }
+
+    // Negative deltas take ratings back out (updates and deletes)
+    public void record(UUID applicationId, int scale, long delta) {
+        add(applicationId, scale, delta);
+        if (pendingTotal.incrementAndGet() >= flushThreshold && flushQueued.compareAndSet(false, true)) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    private void add(UUID applicationId, int scale, long delta) {
+        while (true) {
+            Counts counts = pending.computeIfAbsent(applicationId, id -> new Counts());
+            counts.cells[scale - 1].add(delta);
+            if (!counts.retired) {
+                break;
+            }
+            // A flush is dropping this entry, or has dropped it: take the delta back and record it on the live one
+            counts.cells[scale - 1].add(-delta);
+        }
+    }
+
+    // Counts not yet flushed, indexed by scale - 1; null when nothing is pending for the application
+    public long[] pending(UUID applicationId) {
+        Counts counts = pending.get(applicationId);
+        if (counts == null) {
+            return null;
+        }
+        long[] snapshot = new long[SCALES];
+        boolean any = false;
+        for (int i = 0; i < SCALES; i++) {
+            snapshot[i] = counts.cells[i].sum();
+            any |= snapshot[i] != 0;
+        }
+        return any ? snapshot : null;
+    }
+
+    // A reader that saw the same even value before reading persisted counts and after reading pending() knows no
+    // flush drained or persisted counts in between, so the two add up; odd or changed means read both again
+    public long flushSequence() {
+        return flushSequence.get();
+    }
+
+    // Runs read while no flush can be in progress, for readers whose lock-free attempts kept overlapping flushes
+    public synchronized <T> T whileNotFlushing(Supplier<T> read) {
+        return read.get();
+    }
+
+    // For writers that change persisted counts themselves (bulk imports): runs write between the same two sequence bumps
+    // as a flush, so readers overlapping it retry and a reader that cached the old counts drops them. write must commit
+    // and evict what it changed before returning
+    public synchronized <T> T asFlush(Supplier<T> write) {
+        flushSequence.incrementAndGet();
+        try {
+            return write.get();
+        } finally {
+            flushSequence.incrementAndGet();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${application.ratings.histogram.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        flushSequence.incrementAndGet();
+        boolean flushed = false;
+        try {
+            flushed = flushPending();
+        } finally {
+            flushSequence.incrementAndGet();
+            if (flushed) {
+                successfulFlushes.incrementAndGet();
+            }
+            // Refreshed after failures too: an instance that cannot flush is alive and still holds its counts
+            publishHeartbeat();
+        }
+    }
+
+    /**
+     * Waits until every instance with a live heartbeat has completed two successful flushes since the call, so at least
+     * one of them started after it: every count recorded anywhere before the call is then persisted. An instance whose
+     * heartbeat expires meanwhile has died and its pending counts with it. Returns false on timeout, and when this
+     * instance's own heartbeat cannot be read, since the other instances cannot be seen then either. Each poll is one
+     * HGETALL of the heartbeat hash.
+     */
+    public boolean awaitFlushedEverywhere(long timeoutMs) throws InterruptedException {
+        Map<String, Long> started = heartbeats();
+        if (!started.containsKey(instanceId)) {
+            return false;
+        }
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (true) {
+            Map<String, Long> now = heartbeats();
+            boolean flushed = started.entrySet().stream().allMatch(entry ->
+                !now.containsKey(entry.getKey()) || now.get(entry.getKey()) >= entry.getValue() + 2);
+            if (flushed) {
+                return true;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(Math.max(10, flushIntervalMs / 4));
+        }
+    }
+
+    // Successful flushes by instance, for instances that published within the heartbeat TTL; older fields belong to
+    // instances that died without removing theirs and are dropped
+    private Map<String, Long> heartbeats() {
+        String key = CacheKeyBuilder.histogramHeartbeatsKey();
+        long cutoff = System.currentTimeMillis() - heartbeatTtlMs;
+        Map<String, Long> live = new HashMap<>();
+        redisCache.getFields(key, Heartbeat.class).forEach((instance, heartbeat) -> {
+            if (heartbeat.publishedAt() >= cutoff) {
+                live.put(instance, heartbeat.flushes());
+            } else {
+                redisCache.evictField(key, instance);
+            }
+        });
+        return live;
+    }
+
+    private void publishHeartbeat() {
+        redisCache.putField(CacheKeyBuilder.histogramHeartbeatsKey(), instanceId,
+            new Heartbeat(successfulFlushes.get(), System.currentTimeMillis()), Math.max(1, heartbeatTtlMs / 1000));
+    }
+
+    // True when nothing is left pending: nothing was waiting or the batch was persisted
+    private boolean flushPending() {
+        flushQueued.set(false);
+        long operations = pendingTotal.getAndSet(0);
+        List<RatingBatchRepository.StatsDelta> deltas = new ArrayList<>();
+        Set<UUID> applications = new HashSet<>();
+        pending.forEach((applicationId, counts) -> {
+            for (int i = 0; i < SCALES; i++) {
+                // getAndSet per cell: increments racing with the reset land in this delta or the next, never nowhere
+                long count = counts.cells[i].sumThenReset();
+                if (count != 0) {
+                    deltas.add(new RatingBatchRepository.StatsDelta(applicationId, (short) (i + 1), count));
+                    applications.add(applicationId);
+                }
+            }
+        });
+        if (deltas.isEmpty()) {
+            forgetDrained();
+            return true;
+        }
+        deltas.sort(Comparator.comparing(RatingBatchRepository.StatsDelta::applicationId).thenComparing(RatingBatchRepository.StatsDelta::scale));
+        try {
+            batchRepository.addToStats(deltas);
+        } catch (RuntimeException e) {
+            // Put the counts back; the whole batch rolled back, so the next flush retries all of it
+            logger.error("Rating histogram flush failed, retrying later: " + e.getMessage());
+            deltas.forEach(delta -> add(delta.applicationId(), delta.scale(), delta.count()));
+            pendingTotal.addAndGet(operations);
+            return false;
+        }
+        // Cached stats and averages only hold persisted counts, which just changed; evicted before the sequence turns
+        // even, and the version is bumped after eviction so a reader of the new ETag cannot find the old counts
+        applications.forEach(applicationId -> {
+            redisCache.evict(CacheKeyBuilder.ratingStatsKey(applicationId.toString()));
+            redisCache.evict(CacheKeyBuilder.ratingAvgKey(applicationId.toString()));
+            applicationVersions.bump(applicationId);
+        });
+        forgetDrained();
+        return true;
+    }
+
+    // Drops applications with nothing pending, so the map only holds applications rated since the last flush
+    private void forgetDrained() {
+        pending.keySet().forEach(applicationId -> pending.computeIfPresent(applicationId, (id, counts) -> {
+            counts.retired = true;
+            for (LongAdder cell : counts.cells) {
+                if (cell.sum() != 0) {
+                    counts.retired = false;
+                    return counts;
+                }
+            }
+            return null;
+        }));
+    }
+
+    // Applications currently holding an entry, drained or not
+    int trackedApplications() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdown();
+        flush();
+        // Whatever is still pending dies with the process; the reconciler must not wait for it
+        redisCache.evictField(CacheKeyBuilder.histogramHeartbeatsKey(), instanceId);
+    }
+
+    // One instance's field in the heartbeat hash: its successful flushes so far, and when it published them (epoch ms)
+    public record Heartbeat(long flushes, long publishedAt) {
+    }
+
+    // One application's pending counts, indexed by scale - 1. retired is set while a flush checks whether they drained
+    // to zero and stays set once the entry is dropped, so a record racing with the drop can tell it missed the map.
+    private static final class Counts {
+        private final LongAdder[] cells = new LongAdder[SCALES];
+        private volatile boolean retired;
+
+        private Counts() {
+            for (int i = 0; i < SCALES; i++) {
+                cells[i] = new LongAdder();
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.ratingsandreviews.rating;
+
+// Outcome of a bulk import: new ratings, ratings that replaced a user's earlier value, and resubmitted values
+public record RatingImport(int inserted, int updated, int unchanged) {
+}
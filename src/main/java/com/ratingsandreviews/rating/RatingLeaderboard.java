@@ -0,0 +1,165 @@
+package com.ratingsandreviews.rating;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Applications ranked by rating, kept in two skip lists (exact average and Bayesian average) over a running
+ * sum/count per application. Top-N is a walk over the first N entries, whatever the catalogue size.
+ * Rating writes on this instance are applied as they happen; a periodic refresh rebuilds the totals from
+ * application_rating_stats plus the pending histogram, which folds in writes made on other instances.
+ * The Bayesian average is (priorWeight * priorMean + sum) / (priorWeight + count): a handful of ratings cannot lift
+ * an application far above priorMean.
+ */
+@Component
+public class RatingLeaderboard {
+    static final int MAX_LIMIT = 100;
+    private static final int MAX_REFRESH_ATTEMPTS = 3;
+
+    private final RatingRepositoryWrapper ratingRepositoryWrapper;
+    private final RatingHistogram ratingHistogram;
+    private final double priorWeight;
+    private final double priorMean;
+    private final Map<UUID, Totals> totals = new ConcurrentHashMap<>();
+    private final NavigableSet<Totals> byAverage;
+    private final NavigableSet<Totals> byBayesian;
+
+    @Autowired
+    public RatingLeaderboard(RatingRepositoryWrapper ratingRepositoryWrapper, RatingHistogram ratingHistogram,
+                             @Value("${application.ratings.leaderboard.prior-weight:10}") double priorWeight,
+                             @Value("${application.ratings.leaderboard.prior-mean:3.0}") double priorMean) {
+        this.ratingRepositoryWrapper = ratingRepositoryWrapper;
+        this.ratingHistogram = ratingHistogram;
+        this.priorWeight = priorWeight;
+        this.priorMean = priorMean;
+        // Best first; more ratings, then the id, break ties so distinct applications never compare equal
+        Comparator<Totals> tieBreak = Comparator.comparingLong(Totals::count).reversed().thenComparing(Totals::applicationId);
+        this.byAverage = new ConcurrentSkipListSet<>(Comparator.comparingDouble(Totals::average).reversed().thenComparing(tieBreak));
+        this.byBayesian = new ConcurrentSkipListSet<>(Comparator.comparingDouble(this::bayesianAverage).reversed().thenComparing(tieBreak));
+    }
+
+    public void record(UUID applicationId, long sumDelta, long countDelta) {
+        totals.compute(applicationId, (id, current) -> {
+            long sum = (current == null ? 0 : current.sum()) + sumDelta;
+            long count = (current == null ? 0 : current.count()) + countDelta;
+            return replace(current, new Totals(id, sum, count));
+        });
+    }
+
+    public List<Entry> top(Ranking ranking, int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        Iterator<Totals> ranked = (ranking == Ranking.BAYESIAN ? byBayesian : byAverage).iterator();
+        List<Entry> entries = new ArrayList<>(limit);
+        while (entries.size() < limit && ranked.hasNext()) {
+            Totals t = ranked.next();
+            entries.add(new Entry(t.applicationId(), t.average(), bayesianAverage(t), t.count()));
+        }
+        return entries;
+    }
+
+    @Scheduled(fixedDelayString = "${application.ratings.leaderboard.refresh-interval-ms:60000}")
+    public void refresh() {
+        // Persisted totals and pending counts only add up when no histogram flush drained or persisted counts between
+        // the two reads: read again while a flush is running or one completed meanwhile, then under the flush lock
+        for (int attempt = 0; attempt < MAX_REFRESH_ATTEMPTS; attempt++) {
+            long sequence = ratingHistogram.flushSequence();
+            if (sequence % 2 == 0) {
+                Snapshot snapshot = readTotals();
+                if (ratingHistogram.flushSequence() == sequence) {
+                    apply(snapshot);
+                    return;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        apply(ratingHistogram.whileNotFlushing(this::readTotals));
+    }
+
+    private Snapshot readTotals() {
+        List<Totals> refreshed = new ArrayList<>();
+        Set<UUID> seen = new HashSet<>();
+        for (Object[] row : ratingRepositoryWrapper.getRatingTotals()) {
+            UUID applicationId = (UUID) row[0];
+            long sum = ((Number) row[1]).longValue();
+            long count = ((Number) row[2]).longValue();
+            long[] pending = ratingHistogram.pending(applicationId);
+            if (pending != null) {
+                for (int i = 0; i < pending.length; i++) {
+                    sum += (i + 1) * pending[i];
+                    count += pending[i];
+                }
+            }
+            refreshed.add(new Totals(applicationId, sum, count));
+            seen.add(applicationId);
+        }
+        // Applications whose stats are gone (deleted) drop out; ones only rated since the query are kept
+        List<UUID> gone = totals.keySet().stream()
+            .filter(id -> !seen.contains(id) && ratingHistogram.pending(id) == null)
+            .toList();
+        return new Snapshot(refreshed, gone);
+    }
+
+    private void apply(Snapshot snapshot) {
+        snapshot.refreshed().forEach(next -> totals.compute(next.applicationId(), (id, current) -> replace(current, next)));
+        snapshot.gone().forEach(id -> totals.computeIfPresent(id, (key, current) -> replace(current, null)));
+    }
+
+    double bayesianAverage(Totals t) {
+        return (priorWeight * priorMean + t.sum()) / (priorWeight + t.count());
+    }
+
+    // Called inside totals.compute, so updates of one application never interleave
+    private Totals replace(Totals current, Totals next) {
+        if (current != null) {
+            byAverage.remove(current);
+            byBayesian.remove(current);
+        }
+        if (next == null || next.count() <= 0) {
+            return null;
+        }
+        byAverage.add(next);
+        byBayesian.add(next);
+        return next;
+    }
+
+    public enum Ranking {
+        AVERAGE,
+        BAYESIAN;
+
+        public static Ranking of(String value) {
+            try {
+                return valueOf(value.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported ranking: " + value + " (use average or bayesian)");
+            }
+        }
+    }
+
+    private record Snapshot(List<Totals> refreshed, List<UUID> gone) {
+    }
+
+    record Totals(UUID applicationId, long sum, long count) {
+        double average() {
+            return (double) sum / count;
+        }
+    }
+
+    public record Entry(UUID applicationId, double average, double bayesianAverage, long ratings) {
+    }
+}
@@ -1,22 +1,32 @@
 package com.ratingsandreviews.rating;
 
+import com.ratingsandreviews.util.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Component
 public class RatingRepositoryWrapper {
     private final RatingRepository ratingRepository;
     private final ApplicationRatingStatsRepository statsRepository;
+    private final RatingBatchRepository batchRepository;
+    private final EntityManager entityManager;
 
     @Autowired
-    public RatingRepositoryWrapper(RatingRepository ratingRepository, ApplicationRatingStatsRepository statsRepository) {
+    public RatingRepositoryWrapper(RatingRepository ratingRepository, ApplicationRatingStatsRepository statsRepository,
+                                   RatingBatchRepository batchRepository, EntityManager entityManager) {
         this.ratingRepository = ratingRepository;
         this.statsRepository = statsRepository;
+        this.batchRepository = batchRepository;
+        this.entityManager = entityManager;
     }
 
     public Double getAvgByApplicationId(String applicationId) {
@@ -33,7 +43,7 @@ public class RatingRepositoryWrapper {
                 totalSum += stats.getId().getScale() * stats.getCount();
                 totalRatings += stats.getCount();
             }
-            avgRating = (double) (totalSum / totalRatings);
+            avgRating = totalRatings == 0 ? null : (double) totalSum / totalRatings;
         }
         return avgRating;
     }
@@ -42,11 +52,66 @@ public class RatingRepositoryWrapper {
         return statsRepository.findByIdApplicationId(applicationId);
     }
 
+    // One IN query for all applications; applications without stats are simply absent
+    public List<ApplicationRatingStats> getCategoryStatsForApplications(Collection<UUID> applicationIds) {
+        return statsRepository.findByIdApplicationIdIn(applicationIds);
+    }
+
+    public List<Object[]> getRatingTotals() {
+        return statsRepository.sumAndCountByApplication();
+    }
+
     public Rating saveRating(Rating rating) {
         return this.ratingRepository.save(rating);
     }
 
+    public Optional<RatingBatchRepository.RatingUpsert> upsertRating(Rating rating) {
+        return batchRepository.upsert(rating);
+    }
+
+    public Optional<RatingBatchRepository.RatingWrite> upsertRatingWithAggregates(Rating rating, int recentLimit) {
+        return batchRepository.upsertWithAggregates(rating, recentLimit);
+    }
+
+    public Optional<Rating> findRating(UUID id) {
+        return ratingRepository.findById(id);
+    }
+
+    // Empty when there was no row to delete, including when a concurrent delete got there first
+    public Optional<Rating> deleteRating(UUID id) {
+        return batchRepository.delete(id);
+    }
+
     public Page<Rating> getRatingsByApplicationId(UUID applicationId, Pageable pageable) {
         return ratingRepository.findByApplicationId(applicationId, pageable);
     }
-}
\ No newline at end of file
+
+    // Keyset page: ratings strictly after the cursor in (sort column, id) order, read straight off the sort's index.
+    // The column comes from the RatingSort whitelist, never from the request.
+    @SuppressWarnings("unchecked")
+    public List<Rating> getRatingsByApplicationIdAfter(UUID applicationId, RatingSort sort, boolean ascending,
+                                                       KeysetCursor after, int limit) {
+        String direction = ascending ? "ASC" : "DESC";
+        StringBuilder sql = new StringBuilder("SELECT r.* FROM ratings r WHERE r.application_id = :applicationId");
+        if (after != null) {
+            sql.append(" AND (r.").append(sort.column()).append(", r.id) ").append(ascending ? ">" : "<").append(" (:key, :id)");
+        }
+        sql.append(" ORDER BY r.").append(sort.column()).append(' ').append(direction)
+            .append(", r.id ").append(direction).append(" LIMIT :limit");
+        Query query = entityManager.createNativeQuery(sql.toString(), Rating.class)
+            .setParameter("applicationId", applicationId)
+            .setParameter("limit", limit);
+        if (after != null) {
+            query.setParameter("key", sort.keyOf(after)).setParameter("id", after.id());
+        }
+        return query.getResultList();
+    }
+
+    public List<RatingBatchRepository.ImportedRating> importRatings(List<Rating> ratings) {
+        return batchRepository.importAll(ratings);
+    }
+
+    public void addToCategoryStats(List<RatingBatchRepository.StatsDelta> deltas) {
+        batchRepository.addToStats(deltas);
+    }
+}
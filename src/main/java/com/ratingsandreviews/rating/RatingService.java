@@ -1,14 +1,30 @@
 package com.ratingsandreviews.rating;
 
+import com.ratingsandreviews.util.CursorPage;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.UUID;
 
 public interface RatingService {
     Double getRatingForApplication(String applicationId);
     List<ApplicationRatingStats> getCategoryStatsForApplication(String applicationId);
+    // Counts per scale for ratings created in the window (24h, 7d or 30d)
+    List<ApplicationRatingStats> getCategoryStatsForApplication(String applicationId, String window);
+    // Average and stats of many applications, in the order given
+    List<RatingSummary> getSummaries(List<UUID> applicationIds);
     Page<Rating> getRatingsByApplicationId(UUID applicationId, Pageable pageable);
+    CursorPage<Rating> getRatingsByApplicationIdAfter(UUID applicationId, RatingSort sort, boolean ascending, String after, int size);
     Rating submitRating(Rating rating);
+    // Submits the rating and returns it with the application's fresh average, stats and first page of ratings
+    RatingSubmission submitRatingWithAggregates(Rating rating, int pageSize);
+    // Moves the rating between scales in the stats without recounting the application
+    Rating updateRating(UUID id, Integer rating);
+    void deleteRating(UUID id);
+    // Streams ratings into the database in chunks committed one by one, replacing a user's earlier rating of the same
+    // application; returns how many rows were inserted, updated or already had the value
+    RatingImport submitRatings(Iterator<Rating> ratings);
+    List<RatingLeaderboard.Entry> getLeaderboard(String ranking, int limit);
 }
\ No newline at end of file
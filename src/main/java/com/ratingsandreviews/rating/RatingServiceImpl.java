@@ -1,25 +1,62 @@
 package com.ratingsandreviews.rating;
 
+import com.ratingsandreviews.cache.ApplicationVersions;
 import com.ratingsandreviews.cache.CacheKeyBuilder;
 import com.ratingsandreviews.cache.CacheService;
+import com.ratingsandreviews.stream.FeedEvent;
+import com.ratingsandreviews.util.CursorPage;
+import com.ratingsandreviews.util.KeysetCursor;
+import com.ratingsandreviews.util.Validations;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 public class RatingServiceImpl implements RatingService {
     private final RatingRepositoryWrapper ratingRepositoryWrapper;
     private final CacheService redisCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final RatingHistogram ratingHistogram;
+    private final RatingLeaderboard ratingLeaderboard;
+    private final RatingWindows ratingWindows;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationVersions applicationVersions;
     private final static Double DEFAULT_RATING = 0.0;
+    static final int MAX_SUMMARY_IDS = 100;
+    private static final int MAX_STATS_READ_ATTEMPTS = 3;
 
     @Autowired
-    public RatingServiceImpl(RatingRepositoryWrapper ratingRepositoryWrapper, CacheService redisCacheService) {
+    public RatingServiceImpl(RatingRepositoryWrapper ratingRepositoryWrapper, CacheService redisCacheService,
+                             ApplicationEventPublisher eventPublisher, RatingHistogram ratingHistogram,
+                             RatingLeaderboard ratingLeaderboard, RatingWindows ratingWindows,
+                             TransactionTemplate transactionTemplate, ApplicationVersions applicationVersions) {
         this.ratingRepositoryWrapper = ratingRepositoryWrapper;
         this.redisCache = redisCacheService;
+        this.eventPublisher = eventPublisher;
+        this.ratingHistogram = ratingHistogram;
+        this.ratingLeaderboard = ratingLeaderboard;
+        this.ratingWindows = ratingWindows;
+        this.transactionTemplate = transactionTemplate;
+        this.applicationVersions = applicationVersions;
     }
 
     @Override
@@ -28,6 +65,11 @@ public class RatingServiceImpl implements RatingService {
             throw new IllegalArgumentException("Application ID cannot be null or empty");
         }
 
+        // The cached average only covers flushed counts; with ratings still pending, average the merged histogram
+        if (ratingHistogram.pending(UUID.fromString(applicationId)) != null) {
+            return average(getCategoryStatsForApplication(applicationId));
+        }
+
         // Check cache first
         String cacheKey = CacheKeyBuilder.ratingAvgKey(applicationId);
         Double cached = redisCache.get(cacheKey, Double.class);
@@ -51,25 +93,123 @@ public class RatingServiceImpl implements RatingService {
             throw new IllegalArgumentException("Application ID cannot be null or empty");
         }
 
-        // Check cache first
         String cacheKey = CacheKeyBuilder.ratingStatsKey(applicationId);
-        @SuppressWarnings("unchecked")
-        List<ApplicationRatingStats> cached = redisCache.get(cacheKey, List.class);
-        if (cached != null) {
-            return cached;
+        UUID uuid = UUID.fromString(applicationId);
+        // Persisted and pending counts only add up when no flush drained or persisted counts between the two reads
+        for (int attempt = 0; attempt < MAX_STATS_READ_ATTEMPTS; attempt++) {
+            long sequence = ratingHistogram.flushSequence();
+            if (sequence % 2 == 0) {
+                // Check cache first
+                @SuppressWarnings("unchecked")
+                List<ApplicationRatingStats> cached = redisCache.get(cacheKey, List.class);
+                List<ApplicationRatingStats> persisted = cached != null ? cached
+                    : this.ratingRepositoryWrapper.getCategoryStatsForApplication(uuid);
+                List<ApplicationRatingStats> stats = withPending(uuid, persisted);
+                if (ratingHistogram.flushSequence() == sequence) {
+                    if (cached == null) {
+                        cacheUnlessFlushed(cacheKey, persisted, sequence);
+                    }
+                    return stats;
+                }
+            }
+            Thread.onSpinWait();
         }
+        return ratingHistogram.whileNotFlushing(
+            () -> withPending(uuid, this.ratingRepositoryWrapper.getCategoryStatsForApplication(uuid)));
+    }
 
+    @Override
+    public List<ApplicationRatingStats> getCategoryStatsForApplication(String applicationId, String window) {
+        if (applicationId == null || applicationId.isEmpty()) {
+            throw new IllegalArgumentException("Application ID cannot be null or empty");
+        }
         UUID uuid = UUID.fromString(applicationId);
-        List<ApplicationRatingStats> stats = this.ratingRepositoryWrapper.getCategoryStatsForApplication(uuid);
-
-        redisCache.put(cacheKey, stats);
+        long[] counts = ratingWindows.counts(uuid, RatingWindows.Window.of(window));
+        List<ApplicationRatingStats> stats = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                stats.add(statsRow(uuid, i + 1, counts[i]));
+            }
+        }
         return stats;
     }
 
+    @Override
+    public List<RatingSummary> getSummaries(List<UUID> applicationIds) {
+        List<UUID> ids = applicationIds.stream().distinct().toList();
+        if (ids.isEmpty() || ids.size() > MAX_SUMMARY_IDS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_SUMMARY_IDS + " application ids are required");
+        }
+
+        // As in getCategoryStatsForApplication, the batch is read again when a flush overlapped it
+        for (int attempt = 0; attempt < MAX_STATS_READ_ATTEMPTS; attempt++) {
+            long sequence = ratingHistogram.flushSequence();
+            if (sequence % 2 == 0) {
+                Map<String, Object> writeBack = new LinkedHashMap<>();
+                List<RatingSummary> summaries = readSummaries(ids, writeBack);
+                if (ratingHistogram.flushSequence() == sequence) {
+                    if (!writeBack.isEmpty()) {
+                        redisCache.putAll(writeBack);
+                        if (ratingHistogram.flushSequence() != sequence) {
+                            writeBack.keySet().forEach(redisCache::evict);
+                        }
+                    }
+                    return summaries;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        return ratingHistogram.whileNotFlushing(() -> summarize(ids, loadStats(ids)));
+    }
+
+    // Cached stats plus the persisted stats of the misses, which are added to writeBack
+    private List<RatingSummary> readSummaries(List<UUID> ids, Map<String, Object> writeBack) {
+        // One MGET for every application's cached stats
+        List<String> keys = ids.stream().map(id -> CacheKeyBuilder.ratingStatsKey(id.toString())).toList();
+        @SuppressWarnings("rawtypes")
+        List<List> cached = redisCache.getAll(keys, List.class);
+        Map<UUID, List<ApplicationRatingStats>> statsById = new LinkedHashMap<>();
+        List<UUID> misses = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (cached.get(i) != null) {
+                @SuppressWarnings("unchecked")
+                List<ApplicationRatingStats> stats = cached.get(i);
+                statsById.put(ids.get(i), stats);
+            } else {
+                misses.add(ids.get(i));
+            }
+        }
+
+        // Then one IN query for the misses, written back in one pipelined round trip
+        if (!misses.isEmpty()) {
+            Map<UUID, List<ApplicationRatingStats>> loaded = loadStats(misses);
+            loaded.forEach((id, stats) -> writeBack.put(CacheKeyBuilder.ratingStatsKey(id.toString()), stats));
+            statsById.putAll(loaded);
+        }
+        return summarize(ids, statsById);
+    }
+
+    private Map<UUID, List<ApplicationRatingStats>> loadStats(List<UUID> ids) {
+        Map<UUID, List<ApplicationRatingStats>> loaded = new LinkedHashMap<>();
+        ids.forEach(id -> loaded.put(id, new ArrayList<>()));
+        ratingRepositoryWrapper.getCategoryStatsForApplications(ids)
+            .forEach(stats -> loaded.get(stats.getId().getApplicationId()).add(stats));
+        return loaded;
+    }
+
+    private List<RatingSummary> summarize(List<UUID> ids, Map<UUID, List<ApplicationRatingStats>> statsById) {
+        return ids.stream().map(id -> {
+            List<ApplicationRatingStats> stats = withPending(id, statsById.get(id));
+            return new RatingSummary(id, average(stats), stats);
+        }).toList();
+    }
+
     @Override
     public Page<Rating> getRatingsByApplicationId(UUID applicationId, Pageable pageable) {
-        // Cache paginated ratings
-        String cacheKey = CacheKeyBuilder.ratingsPageKey(applicationId.toString(), pageable.getPageNumber(), pageable.getPageSize());
+        // Cache paginated ratings under the application version, so a page read before a write (and put after its
+        // eviction) is never served with a newer ETag
+        String cacheKey = applicationVersions.scoped(applicationId, CacheKeyBuilder.ratingsPageKey(applicationId.toString(),
+            pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort().toString()));
         @SuppressWarnings("unchecked")
         Page<Rating> cached = redisCache.get(cacheKey, Page.class);
         if (cached != null) {
@@ -81,13 +221,369 @@ public class RatingServiceImpl implements RatingService {
         return page;
     }
 
+    @Override
+    public CursorPage<Rating> getRatingsByApplicationIdAfter(UUID applicationId, RatingSort sort, boolean ascending, String after, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be greater than zero");
+        }
+        KeysetCursor cursor = after == null || after.isEmpty() ? null : KeysetCursor.decode(after);
+        // One extra row tells whether another page exists
+        List<Rating> rows = ratingRepositoryWrapper.getRatingsByApplicationIdAfter(applicationId, sort, ascending, cursor, size + 1);
+        return CursorPage.of(rows, size, sort::cursorOf);
+    }
+
     @Override
     public Rating submitRating(Rating rating) {
+        if (rating.getUserName() != null) {
+            return upsertRating(rating);
+        }
+        if (rating.getApplicationId() == null || rating.getRating() == null) {
+            throw new IllegalArgumentException("A rating needs an applicationId and a rating");
+        }
+        requireScale(rating.getRating());
+        // The windowed histograms bucket by creation time, so every rating needs one
+        if (rating.getCreatedAt() == null) {
+            ZonedDateTime now = Instant.now().atZone(ZoneOffset.UTC);
+            rating.setCreatedAt(now);
+            rating.setUpdatedAt(now);
+        }
         Rating saved = ratingRepositoryWrapper.saveRating(rating);
+        if (saved.getRating() != null) {
+            ratingHistogram.record(saved.getApplicationId(), saved.getRating());
+            ratingLeaderboard.record(saved.getApplicationId(), saved.getRating(), 1);
+            ratingWindows.record(saved.getApplicationId(), saved.getCreatedAt(), saved.getRating(), 1);
+        }
 
         // Evict all rating-related caches for this application
         redisCache.evictPattern(CacheKeyBuilder.ratingsPattern(saved.getApplicationId().toString()));
+        eventPublisher.publishEvent(new FeedEvent(saved.getApplicationId(), FeedEvent.RATING_CREATED, saved));
+
+        return saved;
+    }
+
+    @Override
+    public RatingSubmission submitRatingWithAggregates(Rating rating, int pageSize) {
+        prepareUpsert(rating);
+        long sequence = ratingHistogram.flushSequence();
+        RatingBatchRepository.RatingWrite write = ratingRepositoryWrapper.upsertRatingWithAggregates(rating, pageSize)
+            .or(() -> ratingRepositoryWrapper.upsertRatingWithAggregates(rating, pageSize))
+            .orElseThrow(() -> new IllegalStateException("Rating upsert for user " + rating.getUserName() + " did not settle"));
+        Rating saved = applyUpsert(rating, write.upsert());
+        String applicationId = saved.getApplicationId().toString();
+
+        List<ApplicationRatingStats> persisted = new ArrayList<>();
+        write.stats().forEach(row -> persisted.add(statsRow(row.applicationId(), row.scale(), row.count())));
+        // Other submits only add pending counts, so persisted stats change under the snapshot only through a flush
+        boolean settled = sequence % 2 == 0 && ratingHistogram.flushSequence() == sequence;
+        List<ApplicationRatingStats> stats;
+        if (settled) {
+            // The snapshot plus pending counts (this write included) is current
+            stats = withPending(saved.getApplicationId(), persisted);
+        } else {
+            // A flush moved pending counts into the table after the snapshot was read; read the stats again
+            stats = getCategoryStatsForApplication(applicationId);
+        }
+
+        // recent predates the write: put the saved rating first and drop its old version
+        List<Rating> content = new ArrayList<>(pageSize);
+        content.add(saved);
+        write.recent().stream()
+            .filter(r -> !r.getId().equals(saved.getId()))
+            .limit(pageSize - 1L)
+            .forEach(content::add);
+        long total = stats.stream().mapToLong(ApplicationRatingStats::getCount).sum();
+        Sort newestFirst = RatingSort.UPDATED_AT.toSort(false);
+        Page<Rating> page = new PageImpl<>(content, PageRequest.of(0, pageSize, newestFirst), total);
+
+        // Write-back, guarded like a reader's (getCategoryStatsForApplication): cached stats and averages hold persisted
+        // counts only, which between two equal even flush sequences nothing but a flush changes. So they are written
+        // back only when no flush overlapped the statement, and evicted again when one started before the put landed.
+        // The page is never written back: it is built from the snapshot before this write, and a submit committing
+        // after that snapshot may already have evicted, so the put would hide its rating until the entry expires.
+        if (settled) {
+            cacheUnlessFlushed(CacheKeyBuilder.ratingStatsKey(applicationId), persisted, sequence);
+            cacheUnlessFlushed(CacheKeyBuilder.ratingAvgKey(applicationId), average(persisted), sequence);
+        }
+
+        return new RatingSubmission(saved, average(stats), stats, page);
+    }
+
+    // One rating per user and application: a resubmission replaces the user's rating in a single statement, and
+    // stats move by the old-to-new delta that statement reports. Retries of the same rating change nothing.
+    private Rating upsertRating(Rating rating) {
+        prepareUpsert(rating);
+        // Empty only when a concurrent first submission by the same user won the insert; the retry updates that row
+        RatingBatchRepository.RatingUpsert result = ratingRepositoryWrapper.upsertRating(rating)
+            .or(() -> ratingRepositoryWrapper.upsertRating(rating))
+            .orElseThrow(() -> new IllegalStateException("Rating upsert for user " + rating.getUserName() + " did not settle"));
+        return applyUpsert(rating, result);
+    }
+
+    // The histograms index counts by rating - 1, so a value outside 1..5 must not get past the service
+    private static void requireScale(int rating) {
+        if (rating < 1 || rating > RatingHistogram.SCALES) {
+            throw new IllegalArgumentException("Rating must be between 1 and " + RatingHistogram.SCALES + ", was " + rating);
+        }
+    }
 
+    private static void prepareUpsert(Rating rating) {
+        if (rating.getApplicationId() == null || rating.getRating() == null) {
+            throw new IllegalArgumentException("A rating needs an applicationId and a rating");
+        }
+        requireScale(rating.getRating());
+        ZonedDateTime now = Instant.now().atZone(ZoneOffset.UTC);
+        rating.setId(UUID.randomUUID());
+        rating.setCreatedAt(now);
+        rating.setUpdatedAt(now);
+    }
+
+    // Applies what the upsert reported to the histogram, leaderboard and windows, then evicts and notifies
+    private Rating applyUpsert(Rating rating, RatingBatchRepository.RatingUpsert result) {
+        UUID applicationId = rating.getApplicationId();
+        rating.setId(result.id());
+        rating.setVersion(result.version());
+        rating.setCreatedAt(result.createdAt() == null ? null : result.createdAt().atZone(ZoneOffset.UTC));
+        if (!result.changed()) {
+            return rating;
+        }
+
+        Integer previous = result.previousRating();
+        if (previous == null) {
+            ratingHistogram.record(applicationId, rating.getRating());
+            ratingLeaderboard.record(applicationId, rating.getRating(), 1);
+        } else {
+            ratingHistogram.record(applicationId, previous, -1);
+            ratingHistogram.record(applicationId, rating.getRating(), 1);
+            ratingLeaderboard.record(applicationId, rating.getRating() - previous, 0);
+        }
+        if (rating.getCreatedAt() != null) {
+            if (previous != null) {
+                ratingWindows.record(applicationId, rating.getCreatedAt(), previous, -1);
+            }
+            ratingWindows.record(applicationId, rating.getCreatedAt(), rating.getRating(), 1);
+        }
+
+        redisCache.evictPattern(CacheKeyBuilder.ratingsPattern(applicationId.toString()));
+        eventPublisher.publishEvent(new FeedEvent(applicationId,
+            previous == null ? FeedEvent.RATING_CREATED : FeedEvent.RATING_UPDATED, rating));
+        return rating;
+    }
+
+    // Not transactional on purpose: the row commits (guarded by @Version) before the old and new scale are moved in
+    // the histogram, so a failed write never leaves the stats off by one
+    @Override
+    public Rating updateRating(UUID id, Integer value) {
+        if (value == null) {
+            throw new IllegalArgumentException("A rating update needs a rating");
+        }
+        requireScale(value);
+        Rating rating = Validations.validateOptionalExistence(ratingRepositoryWrapper.findRating(id), Rating.class, id.toString());
+        int previous = rating.getRating();
+        rating.setRating(value);
+        rating.setUpdatedAt(Instant.now().atZone(ZoneOffset.UTC));
+        Rating saved = ratingRepositoryWrapper.saveRating(rating);
+        if (previous != value) {
+            ratingHistogram.record(saved.getApplicationId(), previous, -1);
+            ratingHistogram.record(saved.getApplicationId(), value, 1);
+            ratingLeaderboard.record(saved.getApplicationId(), value - previous, 0);
+            if (saved.getCreatedAt() != null) {
+                ratingWindows.record(saved.getApplicationId(), saved.getCreatedAt(), previous, -1);
+                ratingWindows.record(saved.getApplicationId(), saved.getCreatedAt(), value, 1);
+            }
+        }
+
+        redisCache.evictPattern(CacheKeyBuilder.ratingsPattern(saved.getApplicationId().toString()));
+        eventPublisher.publishEvent(new FeedEvent(saved.getApplicationId(), FeedEvent.RATING_UPDATED, saved));
         return saved;
     }
-}
\ No newline at end of file
+
+    @Override
+    public void deleteRating(UUID id) {
+        // The delete returns the row it removed; a request that lost a race with another delete finds nothing and
+        // fails before any count is taken out a second time
+        Rating rating = Validations.validateOptionalExistence(ratingRepositoryWrapper.deleteRating(id), Rating.class, id.toString());
+        if (rating.getRating() != null) {
+            ratingHistogram.record(rating.getApplicationId(), rating.getRating(), -1);
+            ratingLeaderboard.record(rating.getApplicationId(), -rating.getRating(), -1);
+            if (rating.getCreatedAt() != null) {
+                ratingWindows.record(rating.getApplicationId(), rating.getCreatedAt(), rating.getRating(), -1);
+            }
+        }
+
+        redisCache.evictPattern(CacheKeyBuilder.ratingsPattern(rating.getApplicationId().toString()));
+        eventPublisher.publishEvent(new FeedEvent(rating.getApplicationId(), FeedEvent.RATING_DELETED, id));
+    }
+
+    // Each chunk commits on its own together with its stats deltas, so an import never holds row locks for the whole
+    // stream, and is evicted and announced as soon as it has. A row failing validation stops the import after the
+    // chunks already committed.
+    @Override
+    public RatingImport submitRatings(Iterator<Rating> ratings) {
+        ZonedDateTime now = Instant.now().atZone(ZoneOffset.UTC);
+        ImportTally tally = new ImportTally();
+        List<Rating> chunk = new ArrayList<>(RatingBatchRepository.BATCH_SIZE);
+        // A user's second rating of an application starts a new chunk, so it replaces the first one in order
+        Set<UserRating> chunkUsers = new HashSet<>();
+        int row = 0;
+        while (ratings.hasNext()) {
+            Rating rating = ratings.next();
+            if (rating.getApplicationId() == null || rating.getRating() == null) {
+                throw new IllegalArgumentException("Rating " + row + " needs an applicationId and a rating");
+            }
+            if (rating.getRating() < 1 || rating.getRating() > RatingHistogram.SCALES) {
+                throw new IllegalArgumentException("Rating " + row + " must be between 1 and "
+                    + RatingHistogram.SCALES + ", was " + rating.getRating());
+            }
+            rating.setId(UUID.randomUUID());
+            rating.setCreatedAt(now);
+            rating.setUpdatedAt(now);
+            if (rating.getUserName() != null && !chunkUsers.add(new UserRating(rating.getApplicationId(), rating.getUserName()))) {
+                importChunk(chunk, tally);
+                chunkUsers.clear();
+                chunkUsers.add(new UserRating(rating.getApplicationId(), rating.getUserName()));
+            }
+            chunk.add(rating);
+            row++;
+            if (chunk.size() == RatingBatchRepository.BATCH_SIZE) {
+                importChunk(chunk, tally);
+                chunkUsers.clear();
+            }
+        }
+        importChunk(chunk, tally);
+        return new RatingImport(tally.inserted, tally.updated, tally.unchanged);
+    }
+
+    // Upserts the chunk and adds what changed to the stats in one transaction: +1 for the new value, -1 for a replaced
+    // one. The stats change like a histogram flush, so readers racing with it retry instead of caching the old counts.
+    // Caches are evicted, and the leaderboard, windows and feed follow, once it has committed. Clears the chunk.
+    private void importChunk(List<Rating> chunk, ImportTally tally) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Map<UUID, long[]> countsByApplication = new LinkedHashMap<>();
+        List<RatingBatchRepository.ImportedRating> imported = ratingHistogram.asFlush(() -> {
+            List<RatingBatchRepository.ImportedRating> rows = importAndCount(chunk, countsByApplication);
+            countsByApplication.keySet().forEach(applicationId ->
+                redisCache.evictPattern(CacheKeyBuilder.ratingsPattern(applicationId.toString())));
+            return rows;
+        });
+        chunk.clear();
+
+        countsByApplication.forEach((applicationId, counts) -> {
+            long sum = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                sum += (i + 1) * counts[i];
+            }
+            ratingLeaderboard.record(applicationId, sum, Arrays.stream(counts).sum());
+        });
+        Map<UUID, Long> writtenByApplication = new LinkedHashMap<>();
+        for (RatingBatchRepository.ImportedRating row : imported) {
+            if (!row.changed()) {
+                tally.unchanged++;
+                continue;
+            }
+            if (row.previousRating() == null) {
+                tally.inserted++;
+            } else {
+                tally.updated++;
+            }
+            writtenByApplication.merge(row.applicationId(), 1L, Long::sum);
+            if (row.createdAt() != null) {
+                ZonedDateTime createdAt = row.createdAt().atZone(ZoneOffset.UTC);
+                ratingWindows.record(row.applicationId(), createdAt, row.rating(), 1);
+                if (row.previousRating() != null) {
+                    ratingWindows.record(row.applicationId(), createdAt, row.previousRating(), -1);
+                }
+            }
+        }
+        writtenByApplication.forEach((applicationId, count) ->
+            eventPublisher.publishEvent(new FeedEvent(applicationId, FeedEvent.RATINGS_IMPORTED, count)));
+    }
+
+    // The chunk's transaction; fills countsByApplication with the net change per application and scale
+    private List<RatingBatchRepository.ImportedRating> importAndCount(List<Rating> chunk, Map<UUID, long[]> countsByApplication) {
+        return transactionTemplate.execute(status -> {
+            List<RatingBatchRepository.ImportedRating> rows = ratingRepositoryWrapper.importRatings(chunk);
+            for (RatingBatchRepository.ImportedRating row : rows) {
+                if (row.changed()) {
+                    long[] counts = countsByApplication.computeIfAbsent(row.applicationId(), id -> new long[RatingHistogram.SCALES]);
+                    counts[row.rating() - 1]++;
+                    if (row.previousRating() != null) {
+                        counts[row.previousRating() - 1]--;
+                    }
+                }
+            }
+            List<RatingBatchRepository.StatsDelta> deltas = new ArrayList<>();
+            countsByApplication.keySet().stream().sorted().forEach(applicationId -> {
+                long[] counts = countsByApplication.get(applicationId);
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] != 0) {
+                        deltas.add(new RatingBatchRepository.StatsDelta(applicationId, (short) (i + 1), counts[i]));
+                    }
+                }
+            });
+            if (!deltas.isEmpty()) {
+                ratingRepositoryWrapper.addToCategoryStats(deltas);
+            }
+            return rows;
+        });
+    }
+
+    private static final class ImportTally {
+        private int inserted;
+        private int updated;
+        private int unchanged;
+    }
+
+    private record UserRating(UUID applicationId, String userName) {
+    }
+
+    @Override
+    public List<RatingLeaderboard.Entry> getLeaderboard(String ranking, int limit) {
+        return ratingLeaderboard.top(RatingLeaderboard.Ranking.of(ranking), limit);
+    }
+
+    // A flush that evicted between the read and this put would leave pre-flush counts cached, so take them back out
+    private void cacheUnlessFlushed(String cacheKey, Object persisted, long sequence) {
+        redisCache.put(cacheKey, persisted);
+        if (ratingHistogram.flushSequence() != sequence) {
+            redisCache.evict(cacheKey);
+        }
+    }
+
+    // Adds counts still waiting in the histogram to the persisted (or cached) stats; the input is never modified
+    private List<ApplicationRatingStats> withPending(UUID applicationId, List<ApplicationRatingStats> persisted) {
+        long[] pending = ratingHistogram.pending(applicationId);
+        if (pending == null) {
+            return persisted;
+        }
+        long[] counts = pending.clone();
+        for (ApplicationRatingStats stats : persisted) {
+            counts[stats.getId().getScale() - 1] += stats.getCount();
+        }
+        List<ApplicationRatingStats> merged = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                merged.add(statsRow(applicationId, i + 1, counts[i]));
+            }
+        }
+        return merged;
+    }
+
+    private static ApplicationRatingStats statsRow(UUID applicationId, int scale, long count) {
+        ApplicationRatingStats stats = new ApplicationRatingStats();
+        stats.setId(new ApplicationRatingStatsId(applicationId, (short) scale));
+        stats.setCount(count);
+        return stats;
+    }
+
+    private static Double average(List<ApplicationRatingStats> stats) {
+        long totalSum = 0L;
+        long totalRatings = 0L;
+        for (ApplicationRatingStats s : stats) {
+            totalSum += s.getId().getScale() * s.getCount();
+            totalRatings += s.getCount();
+        }
+        return totalRatings == 0 ? DEFAULT_RATING : (double) totalSum / totalRatings;
+    }
+}
@@ -0,0 +1,58 @@
+package com.ratingsandreviews.rating;
+
+import com.ratingsandreviews.util.KeysetCursor;
+import org.springframework.data.domain.Sort;
+
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Sort keys supported for an application's ratings. Each is backed by an (application_id, column, id) index, so
+ * offset and keyset pages both read the index in order instead of sorting the application's ratings.
+ */
+public enum RatingSort {
+    UPDATED_AT("updatedAt", "updated_at"),
+    CREATED_AT("createdAt", "created_at"),
+    RATING("rating", "rating");
+
+    private final String property;
+    private final String column;
+
+    RatingSort(String property, String column) {
+        this.property = property;
+        this.column = column;
+    }
+
+    public static RatingSort of(String value) {
+        return Arrays.stream(values())
+            .filter(sort -> sort.property.equalsIgnoreCase(value))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Unsupported sort: " + value + " (use updatedAt, createdAt or rating)"));
+    }
+
+    // id breaks ties, matching the index and the keyset order
+    public Sort toSort(boolean ascending) {
+        Sort.Direction direction = ascending ? Sort.Direction.ASC : Sort.Direction.DESC;
+        return Sort.by(direction, property).and(Sort.by(direction, "id"));
+    }
+
+    String column() {
+        return column;
+    }
+
+    KeysetCursor cursorOf(Rating rating) {
+        return switch (this) {
+            case UPDATED_AT -> KeysetCursor.of(rating.getUpdatedAt().toInstant(), rating.getId());
+            case CREATED_AT -> KeysetCursor.of(rating.getCreatedAt().toInstant(), rating.getId());
+            case RATING -> KeysetCursor.of((long) rating.getRating(), rating.getId());
+        };
+    }
+
+    // The cursor's sort key as a query parameter for column
+    Object keyOf(KeysetCursor cursor) {
+        return switch (this) {
+            case UPDATED_AT, CREATED_AT -> cursor.keyAsInstant().atZone(ZoneOffset.UTC);
+            case RATING -> Math.toIntExact(cursor.keyAsLong());
+        };
+    }
+}
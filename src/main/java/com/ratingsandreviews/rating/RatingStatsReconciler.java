@@ -0,0 +1,201 @@
+package com.ratingsandreviews.rating;
+
+import com.ratingsandreviews.cache.ApplicationVersions;
+import com.ratingsandreviews.cache.CacheKeyBuilder;
+import com.ratingsandreviews.cache.CacheService;
+import com.ratingsandreviews.util.AppLogger;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Recomputes application_rating_stats from the ratings table and repairs any drift.
+ * Applications are checked in chunks on a fixed pool. Ratings reach the stats through the write-behind histogram of
+ * whichever instance took the write, so before a chunk is checked every running instance must have flushed since
+ * the chunk's application versions were read; the check then compares the rating counts with the persisted stats in
+ * one REPEATABLE READ snapshot (plain MVCC reads, ratings is never locked). An application whose version moved by
+ * the end of the check was written, or had counts flushed, meanwhile and is left for the next run. A write still on
+ * its way from commit to version bump can skew one check, so the check is taken twice, settle-ms apart, and only
+ * drift both agree on is repaired. Repairs add the difference rather than overwriting the row, so concurrent writes
+ * are never wiped out; a session-level Postgres advisory lock, held on a connection outside any transaction, keeps
+ * the run to one instance at a time.
+ */
+@Component
+public class RatingStatsReconciler {
+    private static final AppLogger logger = AppLogger.getInstance(RatingStatsReconciler.class);
+    // Advisory lock key shared by every instance; any constant unique among this database's advisory locks
+    static final long ADVISORY_LOCK_KEY = 0x52415453_54415453L;
+
+    private final RatingBatchRepository batchRepository;
+    private final RatingHistogram ratingHistogram;
+    private final ApplicationVersions applicationVersions;
+    private final CacheService redisCache;
+    private final TransactionTemplate snapshotTemplate;
+    private final int chunkSize;
+    private final long barrierTimeoutMs;
+    private final long settleMs;
+    private final ExecutorService workers;
+    // Runs the scheduled reconcile off the shared scheduler, whose flush loops must keep running meanwhile
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "rating-stats-reconcile");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean scheduledRunActive = new AtomicBoolean();
+
+    @Autowired
+    public RatingStatsReconciler(RatingBatchRepository batchRepository, RatingHistogram ratingHistogram,
+                                 ApplicationVersions applicationVersions, CacheService redisCacheService,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${application.ratings.reconciliation.chunk-size:200}") int chunkSize,
+                                 @Value("${application.ratings.reconciliation.parallelism:4}") int parallelism,
+                                 @Value("${application.ratings.reconciliation.barrier-timeout-ms:10000}") long barrierTimeoutMs,
+                                 @Value("${application.ratings.reconciliation.settle-ms:1000}") long settleMs) {
+        this.batchRepository = batchRepository;
+        this.ratingHistogram = ratingHistogram;
+        this.applicationVersions = applicationVersions;
+        this.redisCache = redisCacheService;
+        this.snapshotTemplate = new TransactionTemplate(transactionManager);
+        this.snapshotTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.snapshotTemplate.setReadOnly(true);
+        this.chunkSize = chunkSize;
+        this.barrierTimeoutMs = barrierTimeoutMs;
+        this.settleMs = settleMs;
+        this.workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "rating-stats-reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Hands the run to its own thread and returns; a run still going when the next one is due is not doubled up
+    @Scheduled(cron = "${application.ratings.reconciliation.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (!scheduledRunActive.compareAndSet(false, true)) {
+            logger.warn("Rating stats reconciliation still running, skipping this run");
+            return;
+        }
+        runner.execute(() -> {
+            try {
+                logger.info("Rating stats reconciliation: " + reconcile());
+            } catch (RuntimeException e) {
+                logger.error("Rating stats reconciliation failed: " + e.getMessage());
+            } finally {
+                scheduledRunActive.set(false);
+            }
+        });
+    }
+
+    public synchronized ReconciliationReport reconcile() {
+        return batchRepository.withAdvisoryLock(ADVISORY_LOCK_KEY, this::reconcileAll)
+            .orElseGet(() -> new ReconciliationReport(0, 0, 0, 0, 0, true));
+    }
+
+    private ReconciliationReport reconcileAll() {
+        long started = System.currentTimeMillis();
+        List<UUID> applicationIds = batchRepository.findApplicationIds();
+        List<CompletableFuture<ChunkResult>> chunks = new ArrayList<>();
+        for (int from = 0; from < applicationIds.size(); from += chunkSize) {
+            List<UUID> chunk = applicationIds.subList(from, Math.min(from + chunkSize, applicationIds.size()));
+            chunks.add(CompletableFuture.supplyAsync(() -> reconcileChunk(chunk), workers));
+        }
+        List<ChunkResult> results = chunks.stream().map(CompletableFuture::join).toList();
+        List<RatingBatchRepository.StatsDelta> repairs = results.stream().flatMap(result -> result.repairs().stream()).toList();
+        long drifted = repairs.stream().map(RatingBatchRepository.StatsDelta::applicationId).distinct().count();
+        long unsettled = results.stream().mapToLong(ChunkResult::unsettled).sum();
+        return new ReconciliationReport(applicationIds.size(), drifted, repairs.size(), unsettled,
+            System.currentTimeMillis() - started, false);
+    }
+
+    // Checks one chunk twice behind a flush barrier and applies the drift both checks agree on, for applications whose
+    // version did not move, in one transaction
+    ChunkResult reconcileChunk(List<UUID> applicationIds) {
+        Map<UUID, Long> versions = applicationVersions.current(applicationIds);
+        try {
+            if (!ratingHistogram.awaitFlushedEverywhere(barrierTimeoutMs)) {
+                logger.warn("Rating stats reconciliation skipped " + applicationIds.size()
+                    + " applications: not every instance flushed its rating histogram in time");
+                return new ChunkResult(List.of(), applicationIds.size());
+            }
+            Map<StatsKey, Long> first = observeDrift(applicationIds);
+            if (first.isEmpty()) {
+                return new ChunkResult(List.of(), 0);
+            }
+            Thread.sleep(settleMs);
+            Map<StatsKey, Long> second = observeDrift(applicationIds);
+            List<UUID> drifted = first.keySet().stream().map(StatsKey::applicationId).distinct().toList();
+            Map<UUID, Long> after = applicationVersions.current(drifted);
+            List<UUID> moved = drifted.stream().filter(id -> !after.get(id).equals(versions.get(id))).toList();
+            List<RatingBatchRepository.StatsDelta> repairs = first.entrySet().stream()
+                .filter(entry -> entry.getValue().equals(second.get(entry.getKey())))
+                .filter(entry -> !moved.contains(entry.getKey().applicationId()))
+                .map(entry -> new RatingBatchRepository.StatsDelta(entry.getKey().applicationId(), entry.getKey().scale(), entry.getValue()))
+                .sorted(Comparator.comparing(RatingBatchRepository.StatsDelta::applicationId).thenComparing(RatingBatchRepository.StatsDelta::scale))
+                .toList();
+            if (!repairs.isEmpty()) {
+                repairs.forEach(repair -> logger.warn("Rating stats drift for application " + repair.applicationId()
+                    + " scale " + repair.scale() + ": off by " + repair.count()));
+                batchRepository.addToStats(repairs);
+                repairs.stream().map(RatingBatchRepository.StatsDelta::applicationId).distinct().forEach(applicationId -> {
+                    redisCache.evict(CacheKeyBuilder.ratingStatsKey(applicationId.toString()));
+                    redisCache.evict(CacheKeyBuilder.ratingAvgKey(applicationId.toString()));
+                    applicationVersions.bump(applicationId);
+                });
+            }
+            return new ChunkResult(repairs, moved.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ChunkResult(List.of(), applicationIds.size());
+        }
+    }
+
+    // Non-zero (counted - persisted) per application and scale, read in one snapshot
+    private Map<StatsKey, Long> observeDrift(List<UUID> applicationIds) {
+        Map<StatsKey, Long> drift = snapshotTemplate.execute(status -> {
+            Map<StatsKey, Long> counted = new HashMap<>();
+            for (RatingBatchRepository.StatsDelta actual : batchRepository.countRatingsByScale(applicationIds)) {
+                counted.merge(new StatsKey(actual.applicationId(), actual.scale()), actual.count(), Long::sum);
+            }
+            for (RatingBatchRepository.StatsDelta persisted : batchRepository.findStats(applicationIds)) {
+                counted.merge(new StatsKey(persisted.applicationId(), persisted.scale()), -persisted.count(), Long::sum);
+            }
+            return counted;
+        });
+        drift.values().removeIf(count -> count == 0);
+        return drift;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        runner.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private record StatsKey(UUID applicationId, short scale) {
+    }
+
+    // unsettled: applications left unchecked or unrepaired because they were written or could not be flushed meanwhile
+    record ChunkResult(List<RatingBatchRepository.StatsDelta> repairs, long unsettled) {
+    }
+
+    // skipped when another instance held the lock and nothing was checked; unsettled applications wait for the next run
+    public record ReconciliationReport(int applications, long driftedApplications, int repairedRows, long unsettledApplications,
+                                       long durationMs, boolean skipped) {
+    }
+}
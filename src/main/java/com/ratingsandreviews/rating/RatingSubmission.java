@@ -0,0 +1,9 @@
+package com.ratingsandreviews.rating;
+
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+public record RatingSubmission(Rating savedRating, Double newAverage, List<ApplicationRatingStats> newCategoryStats,
+                               Page<Rating> page) {
+}
@@ -0,0 +1,7 @@
+package com.ratingsandreviews.rating;
+
+import java.util.List;
+import java.util.UUID;
+
+public record RatingSummary(UUID applicationId, Double average, List<ApplicationRatingStats> categoryStats) {
+}
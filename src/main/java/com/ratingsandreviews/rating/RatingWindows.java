@@ -0,0 +1,265 @@
+package com.ratingsandreviews.rating;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ratingsandreviews.util.AppLogger;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rating histograms over the last 24 hours, 7 days or 30 days.
+ * Ratings are counted per application in hourly buckets, keyed by the hour the rating was created, and persisted
+ * in application_rating_buckets. Each application's last 30 days are kept hot as a ring of hourly slots mirroring
+ * the table: loaded on first read, kept in step by this instance's flushes and dropped after ring-ttl-ms so writes
+ * flushed by other instances are picked up. A window query adds up at most 720 slots plus the deltas still buffered
+ * and never touches the ratings table. A ring is two flat int arrays, about 17KB per application, so
+ * max-applications bounds the heap used. Bucket writes are only buffered, never read from the table, and upserted
+ * on a timer like the all-time histogram; buckets older than the ring are purged hourly.
+ */
+@Component
+public class RatingWindows {
+    private static final AppLogger logger = AppLogger.getInstance(RatingWindows.class);
+    static final int SLOTS = 30 * 24;
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private final RatingBatchRepository batchRepository;
+    private final Cache<UUID, Ring> rings;
+    private final Map<BucketKey, Long> pending = new ConcurrentHashMap<>();
+    // Odd while a flush is moving pending deltas into the table, bumped when it starts and when it ends
+    private final AtomicLong flushSequence = new AtomicLong();
+
+    @Autowired
+    public RatingWindows(RatingBatchRepository batchRepository,
+                         @Value("${application.ratings.windows.max-applications:2000}") long maxApplications,
+                         @Value("${application.ratings.windows.ring-ttl-ms:300000}") long ringTtlMs) {
+        this.batchRepository = batchRepository;
+        this.rings = Caffeine.newBuilder()
+                .maximumSize(maxApplications)
+                .expireAfterWrite(Duration.ofMillis(ringTtlMs))
+                .build();
+    }
+
+    // createdAt is the creation time of the rating, also when an update or delete takes it back out of its bucket.
+    // Only buffers the delta: rings hold flushed counts, so the write path never loads one.
+    public void record(UUID applicationId, ZonedDateTime createdAt, int scale, long delta) {
+        long hour = hourOf(createdAt.toInstant());
+        if (hour <= currentHour() - SLOTS) {
+            return;
+        }
+        pending.merge(new BucketKey(applicationId, hour, (short) scale), delta, Long::sum);
+    }
+
+    // Counts per scale, indexed by scale - 1, for ratings created in the window ending now: the ring plus the deltas
+    // not yet flushed. Both are read again when a flush moved deltas from one to the other in between.
+    public long[] counts(UUID applicationId, Window window) {
+        long now = currentHour();
+        long from = now - window.hours + 1;
+        for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; attempt++) {
+            long sequence = flushSequence.get();
+            if (sequence % 2 == 0) {
+                long[] counts = ring(applicationId).sum(from, now);
+                addPending(applicationId, from, now, counts);
+                if (flushSequence.get() == sequence) {
+                    return counts;
+                }
+            }
+            Thread.onSpinWait();
+        }
+        synchronized (this) {
+            long[] counts = ring(applicationId).sum(from, now);
+            addPending(applicationId, from, now, counts);
+            return counts;
+        }
+    }
+
+    private void addPending(UUID applicationId, long fromHour, long toHour, long[] counts) {
+        pending.forEach((key, count) -> {
+            if (key.applicationId().equals(applicationId) && key.hour() >= fromHour && key.hour() <= toHour) {
+                counts[key.scale() - 1] += count;
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${application.ratings.windows.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        flushSequence.incrementAndGet();
+        try {
+            flushPending();
+        } finally {
+            flushSequence.incrementAndGet();
+        }
+    }
+
+    private void flushPending() {
+        List<RatingBatchRepository.BucketDelta> deltas = new ArrayList<>();
+        for (BucketKey key : pending.keySet()) {
+            // Writes merging after the remove start a new entry and go out with the next flush
+            Long count = pending.remove(key);
+            if (count != null && count != 0) {
+                deltas.add(new RatingBatchRepository.BucketDelta(key.applicationId(), startOf(key.hour()), key.scale(), count));
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        deltas.sort(Comparator.comparing(RatingBatchRepository.BucketDelta::applicationId)
+            .thenComparing(RatingBatchRepository.BucketDelta::bucketStart)
+            .thenComparing(RatingBatchRepository.BucketDelta::scale));
+        try {
+            batchRepository.addToBuckets(deltas);
+        } catch (RuntimeException e) {
+            logger.error("Rating bucket flush failed, retrying later: " + e.getMessage());
+            deltas.forEach(delta -> pending.merge(
+                new BucketKey(delta.applicationId(), hourOf(delta.bucketStart()), delta.scale()), delta.count(), Long::sum));
+            return;
+        }
+        // The table moved on, so do the cached rings; rings are only cached under this lock, so none can be missed
+        for (RatingBatchRepository.BucketDelta delta : deltas) {
+            Ring ring = rings.getIfPresent(delta.applicationId());
+            if (ring != null) {
+                ring.add(hourOf(delta.bucketStart()), delta.scale(), delta.count());
+            }
+        }
+    }
+
+    @Scheduled(cron = "${application.ratings.windows.purge-cron:0 5 * * * *}")
+    public void purge() {
+        int purged = batchRepository.deleteBucketsBefore(startOf(currentHour() - SLOTS + 1));
+        if (purged > 0) {
+            logger.info("Purged " + purged + " expired rating buckets");
+        }
+    }
+
+    // The cached ring, or one read from the table without the flush lock, so loads never wait on a flush's upsert.
+    // The ring is cached under the lock only if no flush started since the read; a flush then applies its deltas to
+    // it. Otherwise the read may predate the flush's upsert and is retaken; after a few overlaps it is read under
+    // the lock.
+    private Ring ring(UUID applicationId) {
+        Ring cached = rings.getIfPresent(applicationId);
+        if (cached != null) {
+            return cached;
+        }
+        for (int attempt = 0; attempt < MAX_LOAD_ATTEMPTS; attempt++) {
+            long sequence = flushSequence.get();
+            if (sequence % 2 == 0) {
+                Ring ring = read(applicationId);
+                synchronized (this) {
+                    if (flushSequence.get() == sequence) {
+                        rings.put(applicationId, ring);
+                        return ring;
+                    }
+                }
+            }
+            Thread.onSpinWait();
+        }
+        synchronized (this) {
+            Ring ring = read(applicationId);
+            rings.put(applicationId, ring);
+            return ring;
+        }
+    }
+
+    private Ring read(UUID applicationId) {
+        Ring ring = new Ring();
+        long since = currentHour() - SLOTS + 1;
+        for (RatingBatchRepository.BucketDelta bucket : batchRepository.findBuckets(applicationId, startOf(since))) {
+            ring.add(hourOf(bucket.bucketStart()), bucket.scale(), bucket.count());
+        }
+        return ring;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    private static long currentHour() {
+        return hourOf(Instant.now());
+    }
+
+    private static long hourOf(Instant instant) {
+        return Math.floorDiv(instant.getEpochSecond(), 3600);
+    }
+
+    private static Instant startOf(long hour) {
+        return Instant.ofEpochSecond(hour * 3600);
+    }
+
+    public enum Window {
+        DAY("24h", 24),
+        WEEK("7d", 7 * 24),
+        MONTH("30d", SLOTS);
+
+        private final String label;
+        private final int hours;
+
+        Window(String label, int hours) {
+            this.label = label;
+            this.hours = hours;
+        }
+
+        public static Window of(String value) {
+            return Arrays.stream(values())
+                .filter(window -> window.label.equalsIgnoreCase(value))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported window: " + value + " (use 24h, 7d or 30d)"));
+        }
+    }
+
+    private record BucketKey(UUID applicationId, long hour, short scale) {
+    }
+
+    // One application's last SLOTS hours; slot i holds hour h when h % SLOTS == i. Hours since the epoch and the
+    // per-hour counts of one application both fit an int, and the flat layout avoids an array header per slot.
+    private static final class Ring {
+        private static final int SCALES = RatingHistogram.SCALES;
+
+        private final int[] hours = new int[SLOTS];
+        private final int[] counts = new int[SLOTS * SCALES];
+
+        Ring() {
+            Arrays.fill(hours, Integer.MIN_VALUE);
+        }
+
+        synchronized void add(long hour, int scale, long delta) {
+            int slot = (int) Math.floorMod(hour, (long) SLOTS);
+            if (hours[slot] != hour) {
+                if (hours[slot] > hour) {
+                    // The slot has moved on to a newer hour; this one is out of range
+                    return;
+                }
+                hours[slot] = (int) hour;
+                Arrays.fill(counts, slot * SCALES, (slot + 1) * SCALES, 0);
+            }
+            counts[slot * SCALES + scale - 1] += (int) delta;
+        }
+
+        synchronized long[] sum(long fromHour, long toHour) {
+            long[] total = new long[SCALES];
+            for (long hour = fromHour; hour <= toHour; hour++) {
+                int slot = (int) Math.floorMod(hour, (long) SLOTS);
+                if (hours[slot] == hour) {
+                    for (int i = 0; i < SCALES; i++) {
+                        total[i] += counts[slot * SCALES + i];
+                    }
+                }
+            }
+            return total;
+        }
+    }
+}
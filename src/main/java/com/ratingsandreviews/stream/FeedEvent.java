@@ -0,0 +1,20 @@
+package com.ratingsandreviews.stream;
+
+import java.util.UUID;
+
+/**
+ * A write on one application, published by the services and pushed to that application's SSE subscribers.
+ * The payload is the written entity, or the id of the removed one for deletions.
+ */
+public record FeedEvent(UUID applicationId, String type, Object payload) {
+    public static final String COMMENT_CREATED = "comment.created";
+    public static final String COMMENT_UPDATED = "comment.updated";
+    public static final String COMMENT_DELETED = "comment.deleted";
+    // Batch insert; the payload is the number of comments added to the application
+    public static final String COMMENTS_IMPORTED = "comments.imported";
+    public static final String RATING_CREATED = "rating.created";
+    public static final String RATING_UPDATED = "rating.updated";
+    public static final String RATING_DELETED = "rating.deleted";
+    // Bulk import; the payload is the number of ratings added to the application
+    public static final String RATINGS_IMPORTED = "ratings.imported";
+}
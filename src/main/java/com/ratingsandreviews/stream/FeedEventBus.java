@@ -0,0 +1,155 @@
+package com.ratingsandreviews.stream;
+
+import com.ratingsandreviews.util.AppLogger;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * In-process fan-out of FeedEvents to SSE subscribers, keyed by application.
+ * Connections are held as async requests (SseEmitter), so an idle subscriber costs a registry entry and a socket,
+ * not a thread. Events are received after the publishing transaction commits and put on each subscriber's own
+ * bounded queue; a small worker pool drains the queues, one worker per subscriber at a time, so each subscriber sees
+ * its events in order and a slow client holds up one worker at most, never the other subscribers' queues. A blocked
+ * write is cut off by the container's write timeout; a subscriber whose queue fills up in the meantime is
+ * disconnected and has to reconnect and reload.
+ */
+@Component
+public class FeedEventBus {
+    private static final AppLogger logger = AppLogger.getInstance(FeedEventBus.class);
+
+    private final Map<UUID, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final long timeoutMs;
+    private final int queueCapacity;
+
+    @Autowired
+    public FeedEventBus(@Value("${application.stream.timeout-ms:1800000}") long timeoutMs,
+                        @Value("${application.stream.queue-capacity:256}") int queueCapacity,
+                        @Value("${application.stream.fanout-threads:4}") int fanoutThreads) {
+        this.timeoutMs = timeoutMs;
+        this.queueCapacity = queueCapacity;
+        this.workers = Executors.newFixedThreadPool(fanoutThreads, r -> {
+            Thread thread = new Thread(r, "feed-event-fanout");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public SseEmitter subscribe(UUID applicationId) {
+        Subscriber subscriber = new Subscriber(applicationId, newEmitter(timeoutMs));
+        // Added inside compute so a concurrent unsubscribe cannot drop the set between lookup and add
+        subscribers.compute(applicationId, (id, current) -> {
+            Set<Subscriber> set = current != null ? current : ConcurrentHashMap.newKeySet();
+            set.add(subscriber);
+            return set;
+        });
+        Runnable remove = () -> unsubscribe(subscriber);
+        subscriber.emitter.onCompletion(remove);
+        subscriber.emitter.onTimeout(remove);
+        subscriber.emitter.onError(e -> remove.run());
+        return subscriber.emitter;
+    }
+
+    // fallbackExecution delivers events published outside a transaction too
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEvent(FeedEvent event) {
+        Set<Subscriber> current = subscribers.get(event.applicationId());
+        if (current == null) {
+            return;
+        }
+        for (Subscriber subscriber : current) {
+            subscriber.offer(SseEmitter.event().name(event.type()).data(event.payload(), MediaType.APPLICATION_JSON));
+        }
+    }
+
+    // Idle connections are only noticed as dead on write; a comment line every interval flushes them out
+    @Scheduled(fixedDelayString = "${application.stream.heartbeat-ms:30000}")
+    public void heartbeat() {
+        subscribers.values().forEach(current -> current.forEach(subscriber -> subscriber.offer(SseEmitter.event().comment("heartbeat"))));
+    }
+
+    public int subscriberCount(UUID applicationId) {
+        Set<Subscriber> current = subscribers.get(applicationId);
+        return current == null ? 0 : current.size();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdownNow();
+        subscribers.values().forEach(current -> current.forEach(subscriber -> subscriber.emitter.complete()));
+    }
+
+    // Overridden by tests to observe what is sent
+    SseEmitter newEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.applicationId, (id, current) -> {
+            current.remove(subscriber);
+            return current.isEmpty() ? null : current;
+        });
+    }
+
+    private final class Subscriber {
+        private final UUID applicationId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscriber(UUID applicationId, SseEmitter emitter) {
+            this.applicationId = applicationId;
+            this.emitter = emitter;
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (!queue.offer(event)) {
+                logger.debug("Disconnecting SSE subscriber of application " + applicationId + ": " + queueCapacity + " events behind");
+                unsubscribe(this);
+                queue.clear();
+                emitter.complete();
+                return;
+            }
+            if (draining.compareAndSet(false, true)) {
+                workers.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while ((event = queue.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Dropping SSE subscriber of application " + applicationId + ": " + e.getMessage());
+                unsubscribe(this);
+                queue.clear();
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // An offer that raced with the end of the loop saw draining still set; pick its event up here
+            if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+                workers.execute(this::drain);
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.ratingsandreviews.stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.UUID;
+
+@RestController
+@RequestMapping("/v1/stream")
+public class StreamController {
+    private final FeedEventBus eventBus;
+
+    @Autowired
+    public StreamController(FeedEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    // Server-Sent Events of new, updated and deleted comments and new ratings of one application, in place of
+    // polling the comment and rating pages. Event names are the FeedEvent types; clients reconnect after the timeout.
+    @GetMapping(value = "/applications/{applicationId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamApplication(@PathVariable UUID applicationId) {
+        return eventBus.subscribe(applicationId);
+    }
+}
@@ -0,0 +1,20 @@
+package com.ratingsandreviews.util;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Slice-style page for keyset pagination: no total count, just the rows and the cursor for the next page.
+ */
+public record CursorPage<T>(List<T> content, int size, String nextCursor, boolean hasNext) {
+
+    /**
+     * Builds a page from a query that fetched up to {@code size + 1} rows; the extra row only signals that more exist.
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, KeysetCursor> cursorOf) {
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? cursorOf.apply(content.get(content.size() - 1)).encode() : null;
+        return new CursorPage<>(List.copyOf(content), size, nextCursor, hasNext);
+    }
+}
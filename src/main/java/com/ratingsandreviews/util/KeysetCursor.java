@@ -0,0 +1,81 @@
+package com.ratingsandreviews.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Opaque cursor for keyset pagination.
+ * Holds the sort key of the last returned row plus its id as a tie breaker, encoded as a URL-safe token.
+ */
+public record KeysetCursor(String key, UUID id) {
+    private static final String SEPARATOR = "|";
+
+    public static KeysetCursor of(Instant key, UUID id) {
+        // Microseconds match the precision of Postgres timestamps
+        long micros = Math.addExact(Math.multiplyExact(key.getEpochSecond(), 1_000_000L), key.getNano() / 1_000L);
+        return new KeysetCursor(Long.toString(micros), id);
+    }
+
+    public static KeysetCursor of(float key, UUID id) {
+        return new KeysetCursor(Float.toString(key), id);
+    }
+
+    public static KeysetCursor of(long key, UUID id) {
+        return new KeysetCursor(Long.toString(key), id);
+    }
+
+    // Double.toString round-trips exactly, so the next page starts right after the row
+    public static KeysetCursor of(double key, UUID id) {
+        return new KeysetCursor(Double.toString(key), id);
+    }
+
+    public String encode() {
+        byte[] raw = (key + SEPARATOR + id).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw);
+    }
+
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int split = raw.lastIndexOf(SEPARATOR);
+            return new KeysetCursor(raw.substring(0, split), UUID.fromString(raw.substring(split + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+
+    public Instant keyAsInstant() {
+        try {
+            long micros = Long.parseLong(key);
+            return Instant.ofEpochSecond(Math.floorDiv(micros, 1_000_000L), Math.floorMod(micros, 1_000_000L) * 1_000L);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor key: " + key, e);
+        }
+    }
+
+    public long keyAsLong() {
+        try {
+            return Long.parseLong(key);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor key: " + key, e);
+        }
+    }
+
+    public float keyAsFloat() {
+        try {
+            return Float.parseFloat(key);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor key: " + key, e);
+        }
+    }
+
+    public double keyAsDouble() {
+        try {
+            return Double.parseDouble(key);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor key: " + key, e);
+        }
+    }
+}
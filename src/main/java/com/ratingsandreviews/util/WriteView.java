@@ -0,0 +1,33 @@
+package com.ratingsandreviews.util;
+
+import java.util.UUID;
+
+/**
+ * Response shape for write endpoints.
+ * MINIMAL returns only the written entity with its id and version as an ETag; FULL also re-reads the first page
+ * (and, for ratings, the new average and stats) as the original endpoints did. FULL is opt-in through view=full or
+ * "Prefer: return=representation".
+ */
+public enum WriteView {
+    MINIMAL,
+    FULL;
+
+    public static WriteView resolve(String view, String prefer) {
+        if (view != null) {
+            return switch (view.toLowerCase()) {
+                case "full" -> FULL;
+                case "minimal" -> MINIMAL;
+                default -> throw new IllegalArgumentException("Unsupported view: " + view);
+            };
+        }
+        if (prefer != null && prefer.toLowerCase().contains("return=representation")) {
+            return FULL;
+        }
+        return MINIMAL;
+    }
+
+    // The version alone restarts at 0 for every entity, so it is qualified with the id to tell entities apart
+    public static String eTag(UUID id, long version) {
+        return "\"" + id + "-" + version + "\"";
+    }
+}
@@ -0,0 +1,138 @@
+package com.ratingsandreviews.application;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ApplicationNameIndexTest {
+    private static final UUID ANGRY_BIRDS = UUID.randomUUID();
+    private static final UUID ANGRY_BIRDS_2 = UUID.randomUUID();
+    private static final UUID BIRD_WATCHER = UUID.randomUUID();
+
+    @Mock
+    private ApplicationRepositoryWrapper wrapper;
+
+    private ApplicationNameIndex index;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        Instant now = Instant.now();
+        doAnswer(invocation -> {
+            ApplicationRepositoryWrapper.NameConsumer consumer = invocation.getArgument(1);
+            consumer.accept(ANGRY_BIRDS_2, "Angry Birds 2", now);
+            consumer.accept(BIRD_WATCHER, "Bird-Watcher", now);
+            consumer.accept(ANGRY_BIRDS, "Angry Birds", now);
+            return null;
+        }).when(wrapper).forEachName(any(Instant.class), any(ApplicationRepositoryWrapper.NameConsumer.class));
+        index = new ApplicationNameIndex(wrapper);
+        index.rebuild();
+    }
+
+    @Test
+    void normalize_lowercasesAndSeparatesWords() {
+        assertThat(ApplicationNameIndex.normalize("  Bird-Watcher  PRO!")).isEqualTo(" bird watcher pro");
+        assertThat(ApplicationNameIndex.normalize("--")).isEmpty();
+    }
+
+    @Test
+    void suggest_matchesPrefixOfAnyWord_shortestFirst() {
+        assertThat(ids(index.suggest("bir", 10))).containsExactly(ANGRY_BIRDS, BIRD_WATCHER, ANGRY_BIRDS_2);
+        assertThat(ids(index.suggest("angry b", 10))).containsExactly(ANGRY_BIRDS, ANGRY_BIRDS_2);
+        assertThat(index.suggest("ngry", 10)).isEmpty();
+        assertThat(index.suggest("  ", 10)).isEmpty();
+    }
+
+    @Test
+    void suggest_stopsAtLimit() {
+        assertThat(ids(index.suggest("b", 1))).containsExactly(ANGRY_BIRDS);
+        assertThatThrownBy(() -> index.suggest("b", ApplicationNameIndex.MAX_LIMIT + 1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void put_renamesAndRanksNewName_removeDropsIt() {
+        index.put(BIRD_WATCHER, "Birds");
+        assertThat(index.suggest("bird", 10)).first()
+            .isEqualTo(new ApplicationNameIndex.Suggestion(BIRD_WATCHER, "Birds"));
+        assertThat(index.suggest("watcher", 10)).isEmpty();
+
+        index.remove(ANGRY_BIRDS);
+        assertThat(ids(index.suggest("angry", 10))).containsExactly(ANGRY_BIRDS_2);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    void search_intersectsThePostingListsOfEveryTrigram() {
+        UUID watchBird = UUID.randomUUID();
+        UUID birdSeed = UUID.randomUUID();
+        UUID birdWatcher = UUID.randomUUID();
+        Map<UUID, String> names = new LinkedHashMap<>();
+        names.put(watchBird, "Watch Bird");
+        names.put(birdSeed, "Bird Seed");
+        names.put(birdWatcher, "Bird Watcher");
+        ApplicationNameIndex.Index built = ApplicationNameIndex.Index.build(names);
+
+        // "Watch Bird" holds every trigram but not the phrase; "Bird Seed" lacks the "watch" trigrams
+        assertThat(ids(built.search(ApplicationNameIndex.normalize("bird watch"), 10))).containsExactly(birdWatcher);
+        assertThat(ids(built.search(ApplicationNameIndex.normalize("bird"), 10))).containsExactly(birdSeed, watchBird, birdWatcher);
+    }
+
+    @Test
+    void search_givesUpAfterMaxCandidates() {
+        Map<UUID, String> names = new LinkedHashMap<>();
+        for (int i = 0; i < ApplicationNameIndex.MAX_CANDIDATES; i++) {
+            names.put(UUID.randomUUID(), "Watch Bird " + i);
+        }
+        UUID match = UUID.randomUUID();
+        names.put(match, "Bird Watcher Deluxe Edition");
+        ApplicationNameIndex.Index built = ApplicationNameIndex.Index.build(names);
+
+        // Every shorter name holds all the trigrams of "bird watch" without matching it, so the cap is hit first
+        assertThat(built.search(ApplicationNameIndex.normalize("bird watch"), 10)).isEmpty();
+        assertThat(ids(built.search(ApplicationNameIndex.normalize("bird watcher d"), 10))).containsExactly(match);
+    }
+
+    @Test
+    void refresh_beforeAnyRebuildSucceeded_bulkBuildsInstead() {
+        ApplicationRepositoryWrapper failing = mock(ApplicationRepositoryWrapper.class);
+        doThrow(new IllegalStateException("database down"))
+            .doAnswer(invocation -> {
+                invocation.<ApplicationRepositoryWrapper.NameConsumer>getArgument(1).accept(ANGRY_BIRDS, "Angry Birds", Instant.now());
+                return null;
+            })
+            .when(failing).forEachName(any(Instant.class), any(ApplicationRepositoryWrapper.NameConsumer.class));
+        ApplicationNameIndex fresh = new ApplicationNameIndex(failing);
+        fresh.rebuild();
+        assertThat(fresh.size()).isZero();
+
+        fresh.refresh();
+
+        // One full read for the build from EPOCH, then the catch-up poll from just before it
+        verify(failing, times(2)).forEachName(eq(Instant.EPOCH), any(ApplicationRepositoryWrapper.NameConsumer.class));
+        verify(failing).forEachName(argThat(since -> since.isAfter(Instant.EPOCH)), any(ApplicationRepositoryWrapper.NameConsumer.class));
+        assertThat(ids(fresh.suggest("angry", 10))).containsExactly(ANGRY_BIRDS);
+    }
+
+    private static List<UUID> ids(List<ApplicationNameIndex.Suggestion> suggestions) {
+        return suggestions.stream().map(ApplicationNameIndex.Suggestion::id).toList();
+    }
+}
@@ -1,6 +1,8 @@
 package com.ratingsandreviews.application;
 
 import com.ratingsandreviews.cache.CacheService;
+import com.ratingsandreviews.util.CursorPage;
+import com.ratingsandreviews.util.KeysetCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -26,6 +28,9 @@ class ApplicationServiceImplTest {
     @Mock
     private CacheService redisCacheService;
 
+    @Mock
+    private ApplicationNameIndex nameIndex;
+
     @InjectMocks
     private ApplicationServiceImpl service;
 
@@ -56,6 +61,42 @@ class ApplicationServiceImplTest {
         verify(redisCacheService).put(anyString(), eq(page)); // Verify cache is updated
     }
 
+    @Test
+    void getApplicationsAfter_fetchesOneExtraRowAndReturnsCursor() {
+        Application first = new Application();
+        first.setId(UUID.randomUUID());
+        first.setName("Alpha");
+        Application second = new Application();
+        second.setId(UUID.randomUUID());
+        second.setName("Beta");
+        when(wrapper.getApplicationsAfter("name", "a", ApplicationSort.NAME, true, null, 2)).thenReturn(List.of(first, second));
+
+        CursorPage<Application> result = service.getApplicationsAfter("name", "a", ApplicationSort.NAME, true, "", 1);
+
+        assertThat(result.content()).containsExactly(first);
+        assertTrue(result.hasNext());
+        KeysetCursor cursor = KeysetCursor.decode(result.nextCursor());
+        assertEquals("Alpha", cursor.key());
+        assertEquals(first.getId(), cursor.id());
+    }
+
+    @Test
+    void getApplicationsAfter_decodesCursor() {
+        UUID id = UUID.randomUUID();
+        String after = new KeysetCursor("Alpha", id).encode();
+        when(wrapper.getApplicationsAfter(any(), any(), any(), anyBoolean(), any(), anyInt())).thenReturn(List.of());
+
+        service.getApplicationsAfter(null, null, ApplicationSort.NAME, true, after, 10);
+
+        verify(wrapper).getApplicationsAfter(null, null, ApplicationSort.NAME, true, new KeysetCursor("Alpha", id), 11);
+    }
+
+    @Test
+    void applicationSort_rejectsUnindexedColumns() {
+        assertEquals(ApplicationSort.CREATED_AT, ApplicationSort.of("createdAt"));
+        assertThrows(IllegalArgumentException.class, () -> ApplicationSort.of("description"));
+    }
+
     @Test
     void installApplication_logsInstall() {
         // Just ensure no exception is thrown
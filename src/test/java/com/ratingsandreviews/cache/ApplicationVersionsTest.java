@@ -0,0 +1,178 @@
+package com.ratingsandreviews.cache;
+
+import com.ratingsandreviews.stream.FeedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ApplicationVersionsTest {
+    private AnnotationConfigApplicationContext context;
+    private ApplicationVersions versions;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        context = new AnnotationConfigApplicationContext(Config.class);
+        versions = context.getBean(ApplicationVersions.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void current_missingCounter_isSeededFromTheClockAndThenStable() {
+        UUID appId = UUID.randomUUID();
+        long before = System.currentTimeMillis() * 1000L;
+        long first = versions.current(appId);
+        assertThat(first).isGreaterThanOrEqualTo(before);
+        assertThat(versions.current(appId)).isEqualTo(first);
+    }
+
+    @Test
+    void bump_isMonotonicPerApplication() {
+        UUID appId = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        long start = versions.current(appId);
+        long otherStart = versions.current(other);
+        assertThat(versions.bump(appId)).isEqualTo(start + 1);
+        assertThat(versions.bump(appId)).isEqualTo(start + 2);
+        assertThat(versions.current(other)).isEqualTo(otherStart);
+    }
+
+    @Test
+    void eTag_isEqualUntilAWriteAndChangesAfterIt() {
+        UUID appId = UUID.randomUUID();
+        String before = versions.eTag(appId);
+        assertThat(versions.eTag(appId)).isEqualTo(before).startsWith("\"").endsWith("\"");
+
+        context.publishEvent(new FeedEvent(appId, FeedEvent.RATING_CREATED, null));
+
+        assertThat(versions.eTag(appId)).isNotEqualTo(before);
+    }
+
+    @Test
+    void scoped_keyChangesWithTheVersion() {
+        UUID appId = UUID.randomUUID();
+        String before = versions.scoped(appId, "comments:stats:" + appId);
+        assertThat(before).startsWith("comments:stats:" + appId + ":v");
+        assertThat(versions.scoped(appId, "comments:stats:" + appId)).isEqualTo(before);
+
+        versions.bump(appId);
+
+        assertThat(versions.scoped(appId, "comments:stats:" + appId)).isNotEqualTo(before);
+    }
+
+    @Test
+    void scoped_withinARequest_usesTheVersionTheETagWasReadAt() {
+        UUID appId = UUID.randomUUID();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            String eTag = versions.eTag(appId);
+            // Another instance writes between the ETag check and the cache lookup
+            context.getBean(CacheService.class).incrementCounter(CacheKeyBuilder.applicationVersionKey(appId.toString()), 0);
+
+            assertThat(versions.scoped(appId, "ratings:" + appId)).endsWith(":v" + eTag.replace("\"", ""));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+        // Outside the request the current version is read again
+        assertThat(versions.scoped(appId, "ratings:" + appId)).endsWith(":v" + versions.current(appId));
+    }
+
+    @Test
+    void eTag_ofSeveralApplications_changesWhenAnyOfThemIsWritten() {
+        List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID());
+        String before = versions.eTag(ids);
+        assertThat(versions.eTag(ids)).isEqualTo(before);
+
+        versions.bump(ids.get(1));
+
+        assertThat(versions.eTag(ids)).isNotEqualTo(before);
+    }
+
+    @Test
+    void onWrite_bumpsOnlyAfterTheTransactionCommits() {
+        UUID appId = UUID.randomUUID();
+        long start = versions.current(appId);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            context.publishEvent(new FeedEvent(appId, FeedEvent.RATING_CREATED, null));
+            // Readers inside the transaction window still see the old version
+            assertThat(versions.current(appId)).isEqualTo(start);
+        });
+
+        assertThat(versions.current(appId)).isEqualTo(start + 1);
+    }
+
+    @Test
+    void onWrite_rolledBackWrite_doesNotBump() {
+        UUID appId = UUID.randomUUID();
+        long start = versions.current(appId);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            context.publishEvent(new FeedEvent(appId, FeedEvent.RATING_CREATED, null));
+            status.setRollbackOnly();
+        });
+
+        assertThat(versions.current(appId)).isEqualTo(start);
+    }
+
+    @Configuration
+    @EnableTransactionManagement
+    static class Config {
+        @Bean
+        CacheService redisCacheService() {
+            return CaffeineCacheService.getInstance();
+        }
+
+        @Bean
+        ApplicationVersions applicationVersions(CacheService redisCacheService) {
+            return new ApplicationVersions(redisCacheService);
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager() {
+            return new NoOpTransactionManager();
+        }
+    }
+
+    // Runs transaction synchronization, and so the after-commit listeners, without a resource behind it
+    static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.ratingsandreviews.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CaffeineCacheServiceTest {
+    private final CaffeineCacheService cache = CaffeineCacheService.getInstance();
+
+    @Test
+    void getCounter_seedsOnceAndThenKeepsTheStoredValue() {
+        String key = "counter:" + UUID.randomUUID();
+        assertThat(cache.getCounter(key, 100)).isEqualTo(100);
+        assertThat(cache.getCounter(key, 500)).isEqualTo(100);
+    }
+
+    @Test
+    void incrementCounter_missingCounterStartsAfterTheSeed() {
+        String key = "counter:" + UUID.randomUUID();
+        assertThat(cache.incrementCounter(key, 100)).isEqualTo(101);
+        assertThat(cache.incrementCounter(key, 500)).isEqualTo(102);
+        assertThat(cache.getCounter(key, 500)).isEqualTo(102);
+    }
+
+    @Test
+    void incrementCounter_evictedCounterIsReseeded() {
+        String key = "counter:" + UUID.randomUUID();
+        cache.incrementCounter(key, 100);
+        cache.evict(key);
+        assertThat(cache.incrementCounter(key, 200)).isEqualTo(201);
+    }
+
+    @Test
+    void incrementCounter_concurrentIncrementsAreNotLost() throws Exception {
+        String key = "counter:" + UUID.randomUUID();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int i = 0; i < 1000; i++) {
+            pool.execute(() -> cache.incrementCounter(key, 0));
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(cache.getCounter(key, 0)).isEqualTo(1000);
+    }
+
+    @Test
+    void fields_areReadTogetherAndEvictedOneByOne() {
+        String key = "hash:" + UUID.randomUUID();
+        cache.putField(key, "a", 1L, 30);
+        cache.putField(key, "b", 2L, 30);
+        cache.putField(key, "a", 3L, 30);
+        assertThat(cache.getFields(key, Long.class)).containsExactlyInAnyOrderEntriesOf(Map.of("a", 3L, "b", 2L));
+
+        cache.evictField(key, "a");
+
+        assertThat(cache.getFields(key, Long.class)).containsExactlyEntriesOf(Map.of("b", 2L));
+        assertThat(cache.getFields("hash:" + UUID.randomUUID(), Long.class)).isEmpty();
+    }
+}
@@ -0,0 +1,72 @@
+package com.ratingsandreviews.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class RedisCacheServiceTest {
+    // getInstance keeps the first template it is given, so every test shares these mocks and resets them
+    @SuppressWarnings("unchecked")
+    private static final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private static final ValueOperations<String, Object> valueOps = mock(ValueOperations.class);
+    private static final RedisCacheService cache = RedisCacheService.getInstance(redisTemplate);
+
+    @BeforeEach
+    void setUp() {
+        reset(redisTemplate, valueOps);
+        when(redisTemplate.opsForValue()).thenReturn(valueOps);
+    }
+
+    @Test
+    void getCounter_existingCounter_isOneGetWithoutSeeding() {
+        when(valueOps.get("version:app:1")).thenReturn(42);
+        assertThat(cache.getCounter("version:app:1", 100)).isEqualTo(42);
+        verify(valueOps, times(1)).get("version:app:1");
+        verify(valueOps, never()).setIfAbsent(anyString(), any());
+    }
+
+    @Test
+    void getCounter_missingCounter_isSeededWithSetIfAbsentAndReadBack() {
+        when(valueOps.get("version:app:1")).thenReturn(null, 42);
+        assertThat(cache.getCounter("version:app:1", 100)).isEqualTo(42);
+        verify(valueOps).setIfAbsent("version:app:1", 100L);
+    }
+
+    @Test
+    void incrementCounter_seedsBeforeIncrementing() {
+        when(valueOps.increment("version:app:1")).thenReturn(101L);
+        assertThat(cache.incrementCounter("version:app:1", 100)).isEqualTo(101);
+        InOrder order = inOrder(valueOps);
+        order.verify(valueOps).setIfAbsent("version:app:1", 100L);
+        order.verify(valueOps).increment("version:app:1");
+    }
+
+    @Test
+    void counters_redisDown_fallBackToTheSeed() {
+        when(valueOps.get(anyString())).thenThrow(new RedisConnectionFailureException("down"));
+        when(valueOps.setIfAbsent(anyString(), any())).thenThrow(new RedisConnectionFailureException("down"));
+        assertThat(cache.getCounter("version:app:1", 100)).isEqualTo(100);
+        assertThat(cache.incrementCounter("version:app:1", 100)).isEqualTo(101);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getFields_isOneHashReadAndNeverAKeyScan() {
+        HashOperations<String, Object, Object> hashOps = mock(HashOperations.class);
+        doReturn(hashOps).when(redisTemplate).opsForHash();
+        when(hashOps.entries("histogram:heartbeats")).thenReturn(Map.of("a", 1L, "b", 2L));
+
+        assertThat(cache.getFields("histogram:heartbeats", Long.class)).containsExactlyInAnyOrderEntriesOf(Map.of("a", 1L, "b", 2L));
+        verify(redisTemplate, never()).keys(anyString());
+    }
+}
@@ -0,0 +1,91 @@
+package com.ratingsandreviews.comment;
+
+import com.ratingsandreviews.cache.ApplicationVersions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class CommentControllerTest {
+    @Mock
+    private CommentService service;
+
+    @Mock
+    private ApplicationVersions applicationVersions;
+
+    private CommentController controller;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        controller = new CommentController(service, applicationVersions);
+    }
+
+    @Test
+    void read_matchingIfNoneMatch_answers304WithoutQuerying() {
+        UUID appId = UUID.randomUUID();
+        when(applicationVersions.eTag(appId)).thenReturn("\"42\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        SentimentStatsResponse body = controller.getSentimentStats(appId, request("\"42\"", response));
+
+        assertThat(body).isNull();
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo("\"42\"");
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void read_staleIfNoneMatch_isServedWithTheCurrentETag() {
+        UUID appId = UUID.randomUUID();
+        when(applicationVersions.eTag(appId)).thenReturn("\"43\"");
+        SentimentStatsResponse stats = new SentimentStatsResponse(appId, 3, 1);
+        when(service.getSentimentStats(appId)).thenReturn(stats);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        SentimentStatsResponse body = controller.getSentimentStats(appId, request("\"42\"", response));
+
+        assertThat(body).isSameAs(stats);
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo("\"43\"");
+    }
+
+    @Test
+    void getComments_sortsByCommentSortWithIdTieBreak() {
+        UUID appId = UUID.randomUUID();
+        when(applicationVersions.eTag(appId)).thenReturn("\"1\"");
+
+        controller.getComments(appId, null, null, 0, 10, "best", "asc", null, request("\"0\"", new MockHttpServletResponse()));
+
+        verify(service).getComments(appId, null, null,
+            PageRequest.of(0, 10, Sort.by(Sort.Direction.ASC, "bestScore").and(Sort.by(Sort.Direction.ASC, "id"))), null);
+    }
+
+    @Test
+    void getComments_unknownSort_isRejectedWithoutQuerying() {
+        UUID appId = UUID.randomUUID();
+        when(applicationVersions.eTag(appId)).thenReturn("\"1\"");
+
+        assertThrows(IllegalArgumentException.class, () -> controller.getComments(appId, null, null, 0, 10,
+            "text", "desc", null, request("\"0\"", new MockHttpServletResponse())));
+        verifyNoInteractions(service);
+    }
+
+    private static ServletWebRequest request(String ifNoneMatch, MockHttpServletResponse response) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/v1/comments/sentiment-stats");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        return new ServletWebRequest(request, response);
+    }
+}
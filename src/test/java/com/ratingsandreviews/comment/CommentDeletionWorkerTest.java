@@ -0,0 +1,72 @@
+package com.ratingsandreviews.comment;
+
+import com.ratingsandreviews.cache.ApplicationVersions;
+import com.ratingsandreviews.cache.CacheService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CommentDeletionWorkerTest {
+    @Mock
+    private CommentDeletionJobRepository jobRepository;
+
+    @Mock
+    private CommentBatchRepository batchRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private CacheService caffeineCacheService;
+
+    @Mock
+    private ApplicationVersions applicationVersions;
+
+    private CommentDeletionWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(transactionTemplate.execute(any())).thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(jobRepository.save(any(CommentDeletionJob.class))).thenAnswer(inv -> inv.getArgument(0));
+        worker = new CommentDeletionWorker(jobRepository, batchRepository, transactionTemplate, caffeineCacheService, applicationVersions);
+    }
+
+    @Test
+    void drain_deletesInBatchesUntilSubtreeIsGone() {
+        CommentDeletionJob job = new CommentDeletionJob();
+        job.setId(UUID.randomUUID());
+        job.setApplicationId(UUID.randomUUID());
+        job.setPath(UUID.randomUUID().toString());
+        job.setStatus(CommentDeletionJob.Status.PENDING);
+        when(jobRepository.claimNext()).thenReturn(Optional.of(job), Optional.of(job), Optional.empty());
+        when(batchRepository.deleteSubtreeBatch(job.getApplicationId(), job.getPath(), job.getPath() + Comment.PATH_UPPER_BOUND))
+            .thenReturn(CommentBatchRepository.BATCH_SIZE, 7);
+
+        worker.drain();
+
+        assertThat(job.getDeleted()).isEqualTo(CommentBatchRepository.BATCH_SIZE + 7L);
+        assertThat(job.getStatus()).isEqualTo(CommentDeletionJob.Status.COMPLETED);
+        assertThat(job.getCompletedAt()).isNotNull();
+        verify(batchRepository, times(2)).deleteSubtreeBatch(any(), anyString(), anyString());
+        verify(caffeineCacheService, atLeastOnce()).evictPattern(startsWith("comments:app:" + job.getApplicationId()));
+        verify(applicationVersions).bump(job.getApplicationId());
+    }
+
+    @Test
+    void drain_noJobs_doesNothing() {
+        when(jobRepository.claimNext()).thenReturn(Optional.empty());
+        worker.drain();
+        verifyNoInteractions(batchRepository, caffeineCacheService, applicationVersions);
+    }
+}
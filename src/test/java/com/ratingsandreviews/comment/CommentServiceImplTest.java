@@ -1,17 +1,23 @@
 package com.ratingsandreviews.comment;
 
+import com.ratingsandreviews.cache.ApplicationVersions;
+import com.ratingsandreviews.cache.CacheKeyBuilder;
 import com.ratingsandreviews.cache.CacheService;
+import com.ratingsandreviews.stream.FeedEvent;
+import com.ratingsandreviews.util.CursorPage;
+import com.ratingsandreviews.util.KeysetCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -19,18 +25,40 @@ import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 class CommentServiceImplTest {
+    private static final int SEARCH_MAX_CANDIDATES = 1000;
+
     @Mock
     private CommentRepository repository;
 
+    @Mock
+    private CommentBatchRepository batchRepository;
+
+    @Mock
+    private CommentSentimentStatsRepository sentimentStatsRepository;
+
+    @Mock
+    private CommentDeletionJobRepository deletionJobRepository;
+
     @Mock
     private CacheService caffeineCacheService;
 
-    @InjectMocks
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private ApplicationVersions applicationVersions;
+
+    @Mock
+    private CommentTreeJsonStreamer treeStreamer;
+
     private CommentServiceImpl service;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        service = new CommentServiceImpl(repository, batchRepository, sentimentStatsRepository, treeStreamer,
+            deletionJobRepository, eventPublisher, caffeineCacheService, applicationVersions, SEARCH_MAX_CANDIDATES);
+        when(applicationVersions.scoped(any(), anyString())).thenAnswer(inv -> inv.getArgument(1) + ":v1");
     }
 
     @Test
@@ -48,6 +76,7 @@ class CommentServiceImplTest {
         assertEquals(1, saved.getLevel());
         assertNotNull(saved.getCreatedAt());
         assertNotNull(saved.getUpdatedAt());
+        verify(repository).incrementReplyCount(eq(parent.getId()), eq(1L), eq(0L), eq(0L), any());
         verify(caffeineCacheService, atLeastOnce()).evictPattern(anyString());
     }
 
@@ -63,6 +92,86 @@ class CommentServiceImplTest {
         verify(caffeineCacheService, atLeastOnce()).evictPattern(anyString());
     }
 
+    @Test
+    void addComments_validatesParentsOnceAndEvictsPerUser() {
+        UUID appId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        Comment parent = new Comment();
+        parent.setId(UUID.randomUUID());
+        parent.setApplicationId(appId);
+        parent.setLevel(1);
+        List<Comment> batch = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Comment reply = new Comment();
+            reply.setApplicationId(appId);
+            reply.setUserId(userId);
+            reply.setParentId(parent.getId());
+            batch.add(reply);
+        }
+        when(repository.findAllById(Set.of(parent.getId()))).thenReturn(List.of(parent));
+        List<Comment> saved = service.addComments(batch);
+        assertThat(saved).allSatisfy(c -> {
+            assertNotNull(c.getId());
+            assertEquals(2, c.getLevel());
+        });
+        verify(repository, times(1)).findAllById(any());
+        verify(batchRepository).insertAll(batch);
+        verify(batchRepository).incrementReplyCounts(eq(Map.of(parent.getId(), 3L)), eq(Map.of()), eq(Map.of()), any());
+        verify(repository, never()).save(any(Comment.class));
+        // user comments, user pages, user tree and the shared lazy tree: one eviction each for the single (app, user) pair
+        verify(caffeineCacheService, times(4)).evictPattern(anyString());
+        // One aggregate feed event for the application, not one per row
+        verify(eventPublisher).publishEvent(new FeedEvent(appId, FeedEvent.COMMENTS_IMPORTED, 3L));
+        verify(eventPublisher, times(1)).publishEvent(any(Object.class));
+    }
+
+    @Test
+    void addComments_severalUsers_evictsSharedTreePagesOncePerApplication() {
+        UUID appId = UUID.randomUUID();
+        List<Comment> batch = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Comment review = new Comment();
+            review.setApplicationId(appId);
+            review.setUserId(UUID.randomUUID());
+            batch.add(review);
+        }
+
+        service.addComments(batch);
+
+        verify(caffeineCacheService, times(1)).evictPattern(CacheKeyBuilder.commentTreePagePattern(appId.toString()));
+        // user comments, user pages and user tree for each of the three users, plus the shared lazy tree once
+        verify(caffeineCacheService, times(10)).evictPattern(anyString());
+    }
+
+    @Test
+    void addComments_unknownParent_throws() {
+        Comment reply = new Comment();
+        reply.setApplicationId(UUID.randomUUID());
+        reply.setUserId(UUID.randomUUID());
+        reply.setParentId(UUID.randomUUID());
+        when(repository.findAllById(any())).thenReturn(List.of());
+        assertThrows(RuntimeException.class, () -> service.addComments(List.of(reply)));
+        verify(batchRepository, never()).insertAll(anyList());
+    }
+
+    @Test
+    void getSentimentStats_readsAggregateRowsAndCaches() {
+        UUID appId = UUID.randomUUID();
+        CommentSentimentStats positive = new CommentSentimentStats();
+        positive.setId(new CommentSentimentStatsId(appId, (short) Comment.POSITIVE));
+        positive.setCount(7L);
+        CommentSentimentStats negative = new CommentSentimentStats();
+        negative.setId(new CommentSentimentStatsId(appId, (short) Comment.NEGATIVE));
+        negative.setCount(2L);
+        when(caffeineCacheService.get(anyString(), eq(SentimentStatsResponse.class))).thenReturn(null);
+        when(sentimentStatsRepository.findByIdApplicationId(appId)).thenReturn(List.of(positive, negative));
+        SentimentStatsResponse result = service.getSentimentStats(appId);
+        assertEquals(7L, result.getPositive());
+        assertEquals(2L, result.getNegative());
+        // Keyed by the application version, so entries built before a write are never read again
+        verify(caffeineCacheService).put(CacheKeyBuilder.commentSentimentStatsKey(appId.toString()) + ":v1", result);
+    }
+
     @Test
     void updateComment_updatesTextAndSentiment() {
         Comment existing = new Comment();
@@ -76,6 +185,64 @@ class CommentServiceImplTest {
         assertEquals("new text", updated.getText());
         assertEquals(Short.valueOf((short)1), updated.getSentiment());
         verify(caffeineCacheService, atLeastOnce()).evictPattern(anyString());
+        verify(caffeineCacheService).evictPattern(CacheKeyBuilder.commentSentimentStatsKey(existing.getApplicationId().toString()));
+    }
+
+    @Test
+    void addComment_negativeReply_countsTowardsNegativeReplies() {
+        Comment root = new Comment();
+        root.setId(UUID.randomUUID());
+        root.setLevel(0);
+        Comment reply = new Comment();
+        reply.setParentId(root.getId());
+        reply.setUserId(UUID.randomUUID());
+        reply.setApplicationId(UUID.randomUUID());
+        reply.setSentimentNegative();
+        when(repository.findById(root.getId())).thenReturn(Optional.of(root));
+        when(repository.save(any(Comment.class))).thenAnswer(inv -> inv.getArgument(0));
+        service.addComment(reply);
+        verify(repository).incrementReplyCount(eq(root.getId()), eq(1L), eq(0L), eq(1L), any());
+    }
+
+    @Test
+    void addComments_repliesWithoutSentiment_countAsRepliesButNotAsVotes() {
+        UUID appId = UUID.randomUUID();
+        Comment root = new Comment();
+        root.setId(UUID.randomUUID());
+        root.setApplicationId(appId);
+        root.setLevel(0);
+        List<Comment> batch = new ArrayList<>();
+        for (Short sentiment : Arrays.asList((short) Comment.POSITIVE, null, (short) Comment.NEGATIVE, null, null)) {
+            Comment reply = new Comment();
+            reply.setApplicationId(appId);
+            reply.setUserId(UUID.randomUUID());
+            reply.setParentId(root.getId());
+            reply.setSentiment(sentiment);
+            batch.add(reply);
+        }
+        when(repository.findAllById(Set.of(root.getId()))).thenReturn(List.of(root));
+        service.addComments(batch);
+        // best_score is the Wilson bound of 1 positive out of 2 votes, not 4 "non-negative" out of 5 replies
+        verify(batchRepository).incrementReplyCounts(eq(Map.of(root.getId(), 5L)), eq(Map.of(root.getId(), 1L)),
+            eq(Map.of(root.getId(), 1L)), any());
+    }
+
+    @Test
+    void deleteComment_replyWithNeutralReplies_takesOffOnlyTheVotesItHeld() {
+        UUID rootId = UUID.randomUUID();
+        Comment reply = new Comment();
+        reply.setId(UUID.randomUUID());
+        reply.setParentId(rootId);
+        reply.setLevel(1);
+        reply.setPath(rootId + Comment.PATH_SEPARATOR + reply.getId());
+        reply.setUserId(UUID.randomUUID());
+        reply.setApplicationId(UUID.randomUUID());
+        String pathEnd = reply.getPath() + Comment.PATH_UPPER_BOUND;
+        when(repository.findById(reply.getId())).thenReturn(Optional.of(reply));
+        when(repository.countSubtree(reply.getApplicationId(), reply.getPath(), pathEnd)).thenReturn(4L);
+        when(repository.countPositiveInSubtree(reply.getApplicationId(), reply.getPath(), pathEnd)).thenReturn(1L);
+        service.deleteComment(reply.getId());
+        verify(repository).decrementReplyCount(rootId, 4L, 1L, 0L);
     }
 
     @Test
@@ -89,6 +256,56 @@ class CommentServiceImplTest {
         service.deleteComment(id);
         verify(repository).deleteById(id);
         verify(caffeineCacheService, atLeastOnce()).evictPattern(anyString());
+        verify(eventPublisher).publishEvent(new FeedEvent(existing.getApplicationId(), FeedEvent.COMMENT_DELETED, id));
+    }
+
+    @Test
+    void deleteComment_reply_decrementsRootBySubtreeSize() {
+        UUID rootId = UUID.randomUUID();
+        Comment reply = new Comment();
+        reply.setId(UUID.randomUUID());
+        reply.setParentId(rootId);
+        reply.setLevel(1);
+        reply.setPath(rootId + Comment.PATH_SEPARATOR + reply.getId());
+        reply.setUserId(UUID.randomUUID());
+        reply.setApplicationId(UUID.randomUUID());
+        when(repository.findById(reply.getId())).thenReturn(Optional.of(reply));
+        when(repository.countSubtree(reply.getApplicationId(), reply.getPath(), reply.getPath() + Comment.PATH_UPPER_BOUND)).thenReturn(4L);
+        service.deleteComment(reply.getId());
+        verify(repository).decrementReplyCount(rootId, 4L, 0L, 0L);
+        verify(repository).deleteById(reply.getId());
+    }
+
+    @Test
+    void deleteCommentAsync_tombstonesSubtreeAndQueuesJob() {
+        UUID rootId = UUID.randomUUID();
+        Comment reply = new Comment();
+        reply.setId(UUID.randomUUID());
+        reply.setParentId(rootId);
+        reply.setLevel(1);
+        reply.setPath(rootId + Comment.PATH_SEPARATOR + reply.getId());
+        reply.setUserId(UUID.randomUUID());
+        reply.setApplicationId(UUID.randomUUID());
+        String pathEnd = reply.getPath() + Comment.PATH_UPPER_BOUND;
+        when(repository.findById(reply.getId())).thenReturn(Optional.of(reply));
+        when(batchRepository.tombstoneSubtree(eq(reply.getApplicationId()), eq(reply.getPath()), eq(pathEnd), any()))
+            .thenReturn(List.of(reply.getUserId(), UUID.randomUUID(), UUID.randomUUID()));
+        when(deletionJobRepository.save(any(CommentDeletionJob.class))).thenAnswer(inv -> inv.getArgument(0));
+        CommentDeletionJob job = service.deleteCommentAsync(reply.getId());
+        assertThat(job.getStatus()).isEqualTo(CommentDeletionJob.Status.PENDING);
+        assertThat(job.getTotal()).isEqualTo(3);
+        assertThat(job.getPath()).isEqualTo(reply.getPath());
+        verify(repository).decrementReplyCount(rootId, 3L, 0L, 0L);
+        verify(repository, never()).deleteById(any());
+        verify(caffeineCacheService).evictPattern("comments:app:" + reply.getApplicationId());
+        verify(caffeineCacheService).evictPattern(CacheKeyBuilder.commentTreePattern(reply.getApplicationId().toString()));
+    }
+
+    @Test
+    void getDeletionJob_missing_throws() {
+        UUID jobId = UUID.randomUUID();
+        when(deletionJobRepository.findById(jobId)).thenReturn(Optional.empty());
+        assertThrows(RuntimeException.class, () -> service.getDeletionJob(jobId));
     }
 
     @Test
@@ -105,19 +322,103 @@ class CommentServiceImplTest {
         userComment.setParentId(root.getId());
         userComment.setLevel(1);
         userComment.setUserId(userId);
-        Page<Comment> userPage = new PageImpl<>(List.of(userComment));
+        userComment.setPath(root.getId() + Comment.PATH_SEPARATOR + userComment.getId());
+        Comment other = new Comment();
+        other.setId(UUID.randomUUID());
+        other.setApplicationId(appId);
+        other.setLevel(0);
         // Mock all cache calls to return null (cache miss)
         when(caffeineCacheService.get(anyString(), any())).thenReturn(null);
-        when(repository.findByApplicationIdAndUserId(appId, userId, PageRequest.of(0, 10))).thenReturn(userPage);
-        when(repository.findAncestorsForComments(anyList())).thenReturn(List.of(root));
-        when(repository.findByApplicationId(appId, PageRequest.of(0, 10))).thenReturn(new PageImpl<>(List.of(root)));
+        when(repository.countPinnedRoots(appId, userId, 0)).thenReturn(1L);
+        when(repository.findPinnedRoots(appId, userId, 0, CommentSort.UPDATED_AT, false, null, 0L, 10)).thenReturn(List.of(root));
+        when(repository.findUnpinnedRoots(appId, userId, 0, CommentSort.UPDATED_AT, false, null, 0L, 9)).thenReturn(List.of(other));
+        when(repository.countRoots(appId, 0)).thenReturn(2L);
+        when(repository.findUserRepliesInThreads(appId, userId, List.of(root.getId().toString()))).thenReturn(List.of(userComment));
         Page<Comment> result = service.getComments(appId, null, null, PageRequest.of(0, 10), userId);
-        assertThat(result.getContent()).hasSize(1);
+        assertThat(result.getContent()).extracting(Comment::getId).containsExactly(root.getId(), other.getId());
+        assertThat(result.getTotalElements()).isEqualTo(2);
         assertThat(result.getContent().get(0).getChildren()).isNotEmpty();
         assertThat(result.getContent().get(0).getChildren().get(0).getId()).isEqualTo(userComment.getId());
+        assertThat(result.getContent().get(1).getChildren()).isEmpty();
+        verify(repository, never()).findByApplicationIdAndUserId(any(), any(), any());
         verify(caffeineCacheService, atLeastOnce()).put(anyString(), any());
     }
 
+    @Test
+    void getComments_userFirst_laterPageSkipsPinnedRoots() {
+        UUID appId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        Comment pinned = new Comment();
+        pinned.setId(UUID.randomUUID());
+        pinned.setApplicationId(appId);
+        Comment other = new Comment();
+        other.setId(UUID.randomUUID());
+        other.setApplicationId(appId);
+        when(caffeineCacheService.get(anyString(), any())).thenReturn(null);
+        when(repository.countPinnedRoots(appId, userId, 0)).thenReturn(1L);
+        when(repository.findUnpinnedRoots(appId, userId, 0, CommentSort.UPDATED_AT, false, null, 1L, 2)).thenReturn(List.of(other));
+        when(repository.countRoots(appId, 0)).thenReturn(3L);
+        Page<Comment> result = service.getComments(appId, null, null, PageRequest.of(1, 2), userId);
+        assertThat(result.getContent()).extracting(Comment::getId).containsExactly(other.getId());
+        verify(repository, never()).findPinnedRoots(any(), any(), anyInt(), any(), anyBoolean(), any(), anyLong(), anyInt());
+        verify(repository, never()).findUserRepliesInThreads(any(), any(), any());
+    }
+
+    @Test
+    void getComments_userFirst_keepsRequestedSort() {
+        UUID appId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        Comment pinned = new Comment();
+        pinned.setId(UUID.randomUUID());
+        Comment other = new Comment();
+        other.setId(UUID.randomUUID());
+        when(caffeineCacheService.get(anyString(), any())).thenReturn(null);
+        when(repository.countPinnedRoots(appId, userId, 0)).thenReturn(1L);
+        when(repository.findPinnedRoots(appId, userId, 0, CommentSort.REPLY_COUNT, true, null, 0L, 5)).thenReturn(List.of(pinned));
+        when(repository.findUnpinnedRoots(appId, userId, 0, CommentSort.REPLY_COUNT, true, null, 0L, 4)).thenReturn(List.of(other));
+        Pageable pageable = PageRequest.of(0, 5, CommentSort.REPLY_COUNT.toSort(true));
+
+        Page<Comment> result = service.getComments(appId, null, null, pageable, userId);
+
+        assertThat(result.getContent()).extracting(Comment::getId).containsExactly(pinned.getId(), other.getId());
+        verify(caffeineCacheService).put(contains(CommentSort.REPLY_COUNT.toSort(true).toString()), any());
+    }
+
+    @Test
+    void getPinnedCommentsByCursor_pagesFromPinnedIntoOtherRoots() {
+        UUID appId = UUID.randomUUID();
+        UUID userId = UUID.randomUUID();
+        Comment pinnedA = rootWithBestScore(0.9);
+        Comment pinnedB = rootWithBestScore(0.8);
+        Comment otherA = rootWithBestScore(0.95);
+        Comment otherB = rootWithBestScore(0.5);
+        when(repository.findPinnedRoots(appId, userId, 0, CommentSort.BEST, false, null, 0L, 3)).thenReturn(List.of(pinnedA, pinnedB));
+        when(repository.findUnpinnedRoots(appId, userId, 0, CommentSort.BEST, false, null, 0L, 1)).thenReturn(List.of(otherA));
+
+        CursorPage<Comment> first = service.getPinnedCommentsByCursor(appId, userId, null, CommentSort.BEST, false, null, 2);
+
+        assertThat(first.content()).extracting(Comment::getId).containsExactly(pinnedA.getId(), pinnedB.getId());
+        assertThat(first.hasNext()).isTrue();
+
+        // The page ended on a pinned root: the next one resumes the pinned part, finds it exhausted and starts the others
+        KeysetCursor afterPinnedB = KeysetCursor.of(0.8, pinnedB.getId());
+        when(repository.findPinnedRoots(eq(appId), eq(userId), eq(0), eq(CommentSort.BEST), eq(false), eq(afterPinnedB), eq(0L), eq(3)))
+            .thenReturn(List.of());
+        when(repository.findUnpinnedRoots(appId, userId, 0, CommentSort.BEST, false, null, 0L, 3)).thenReturn(List.of(otherA, otherB));
+
+        CursorPage<Comment> second = service.getPinnedCommentsByCursor(appId, userId, null, CommentSort.BEST, false, first.nextCursor(), 2);
+
+        assertThat(second.content()).extracting(Comment::getId).containsExactly(otherA.getId(), otherB.getId());
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    private static Comment rootWithBestScore(double bestScore) {
+        Comment root = new Comment();
+        root.setId(UUID.randomUUID());
+        root.setBestScore(bestScore);
+        return root;
+    }
+
     @Test
     void getComments_defaultLogic_returnsPage() {
         UUID appId = UUID.randomUUID();
@@ -145,11 +446,12 @@ class CommentServiceImplTest {
         userComment.setParentId(root.getId());
         userComment.setLevel(1);
         userComment.setUserId(userId);
+        userComment.setPath(root.getId() + Comment.PATH_SEPARATOR + userComment.getId());
         // Mock all cache calls to return null (cache miss)
         when(caffeineCacheService.get(anyString(), any())).thenReturn(null);
         when(repository.findByApplicationIdAndUserId(appId, userId, Pageable.unpaged())).thenReturn(new PageImpl<>(List.of(userComment)));
-        when(repository.findAncestorsForComments(anyList())).thenReturn(List.of(root));
-        when(repository.findAll()).thenReturn(new ArrayList<>(List.of(root, userComment)));
+        when(repository.findAllById(List.of(root.getId()))).thenReturn(List.of(root));
+        when(repository.streamCommentTree(appId)).thenReturn(Stream.of(root, userComment));
         List<Comment> result = service.getCommentTree(appId, userId);
         assertThat(result).hasSize(1);
         assertThat(result.get(0).getChildren()).isNotEmpty();
@@ -164,9 +466,171 @@ class CommentServiceImplTest {
         root.setId(UUID.randomUUID());
         root.setApplicationId(appId);
         root.setLevel(0);
-        when(repository.findAll()).thenReturn(List.of(root));
+        when(repository.streamCommentTree(appId)).thenReturn(Stream.of(root));
         List<Comment> result = service.getCommentTree(appId, null);
         assertThat(result).hasSize(1);
+        verify(repository, never()).findAll();
+    }
+
+    @Test
+    void getCommentTree_depthFirstRows_assembledIntoNestedTree() {
+        UUID appId = UUID.randomUUID();
+        Comment rootA = new Comment();
+        rootA.setId(UUID.randomUUID());
+        rootA.setApplicationId(appId);
+        Comment replyA1 = new Comment();
+        replyA1.setId(UUID.randomUUID());
+        replyA1.setParentId(rootA.getId());
+        replyA1.setLevel(1);
+        Comment replyA1a = new Comment();
+        replyA1a.setId(UUID.randomUUID());
+        replyA1a.setParentId(replyA1.getId());
+        replyA1a.setLevel(2);
+        Comment replyA2 = new Comment();
+        replyA2.setId(UUID.randomUUID());
+        replyA2.setParentId(rootA.getId());
+        replyA2.setLevel(1);
+        Comment rootB = new Comment();
+        rootB.setId(UUID.randomUUID());
+        rootB.setApplicationId(appId);
+        when(repository.streamCommentTree(appId)).thenReturn(Stream.of(rootA, replyA1, replyA1a, replyA2, rootB));
+        List<Comment> result = service.getCommentTree(appId, null);
+        assertThat(result).extracting(Comment::getId).containsExactly(rootA.getId(), rootB.getId());
+        assertThat(rootA.getChildren()).extracting(Comment::getId).containsExactly(replyA1.getId(), replyA2.getId());
+        assertThat(replyA1.getChildren()).extracting(Comment::getId).containsExactly(replyA1a.getId());
+        assertThat(rootB.getChildren()).isEmpty();
     }
-}
 
+    @Test
+    void getCommentSubtree_streamsPathRangeFromTopComment() {
+        UUID appId = UUID.randomUUID();
+        Comment root = new Comment();
+        root.setId(UUID.randomUUID());
+        root.setApplicationId(appId);
+        Comment top = new Comment();
+        top.setId(UUID.randomUUID());
+        top.setApplicationId(appId);
+        top.setParentId(root.getId());
+        top.setPath(root.getId() + Comment.PATH_SEPARATOR + top.getId());
+        Comment reply = new Comment();
+        reply.setId(UUID.randomUUID());
+        reply.setApplicationId(appId);
+        reply.setParentId(top.getId());
+        reply.setPath(top.getPath() + Comment.PATH_SEPARATOR + reply.getId());
+        assertThat(reply.ancestorIds()).containsExactly(root.getId(), top.getId());
+        when(repository.findById(top.getId())).thenReturn(Optional.of(top));
+        when(repository.streamSubtree(appId, top.getPath(), top.getPath() + Comment.PATH_UPPER_BOUND)).thenReturn(Stream.of(top, reply));
+        Comment result = service.getCommentSubtree(appId, top.getId());
+        assertEquals(top.getId(), result.getId());
+        assertThat(result.getChildren()).extracting(Comment::getId).containsExactly(reply.getId());
+    }
+
+    @Test
+    void getCommentsByCursor_returnsNextCursorAndResumesFromIt() {
+        UUID appId = UUID.randomUUID();
+        List<Comment> rows = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Comment c = new Comment();
+            c.setId(UUID.randomUUID());
+            c.setApplicationId(appId);
+            c.setUpdatedAt(java.time.ZonedDateTime.now().minusMinutes(i).truncatedTo(java.time.temporal.ChronoUnit.MICROS));
+            rows.add(c);
+        }
+        when(repository.findRootsKeysetDesc(eq(appId), eq(0), any(), any(), eq(3))).thenReturn(rows);
+        CursorPage<Comment> first = service.getCommentsByCursor(appId, null, null, null, 2, false);
+        assertThat(first.content()).hasSize(2);
+        assertTrue(first.hasNext());
+        assertNotNull(first.nextCursor());
+
+        Comment last = rows.get(1);
+        when(repository.findRootsKeysetDesc(appId, 0, last.getUpdatedAt().toInstant().atZone(java.time.ZoneOffset.UTC), last.getId(), 3))
+            .thenReturn(List.of(rows.get(2)));
+        CursorPage<Comment> second = service.getCommentsByCursor(appId, null, null, first.nextCursor(), 2, false);
+        assertThat(second.content()).extracting(Comment::getId).containsExactly(rows.get(2).getId());
+        assertFalse(second.hasNext());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void getCommentTreePage_limitsDepthAndFanOutAndReportsRemaining() {
+        UUID appId = UUID.randomUUID();
+        java.time.ZonedDateTime now = java.time.ZonedDateTime.now().truncatedTo(java.time.temporal.ChronoUnit.MICROS);
+        Comment root = new Comment();
+        root.setId(UUID.randomUUID());
+        root.setApplicationId(appId);
+        root.setUpdatedAt(now);
+        List<Comment> replies = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Comment reply = new Comment();
+            reply.setId(UUID.randomUUID());
+            reply.setApplicationId(appId);
+            reply.setParentId(root.getId());
+            reply.setUpdatedAt(now.minusMinutes(i + 1));
+            replies.add(reply);
+        }
+        when(caffeineCacheService.get(anyString(), any())).thenReturn(null);
+        when(repository.findRootsKeysetDesc(eq(appId), eq(0), any(), any(), eq(2))).thenReturn(List.of(root));
+        when(repository.findNewestChildren(Set.of(root.getId()), 2)).thenReturn(replies);
+        when(repository.countChildren(eq(appId), anyCollection()))
+            .thenReturn(List.<Object[]>of(new Object[]{root.getId(), 5L}));
+
+        CursorPage<Comment> result = service.getCommentTreePage(appId, null, null, 2, 1);
+
+        assertThat(result.content()).hasSize(1);
+        Comment loadedRoot = result.content().get(0);
+        assertThat(loadedRoot.getChildren()).extracting(Comment::getId).containsExactly(replies.get(0).getId());
+        assertEquals(4L, loadedRoot.getRemainingChildren());
+        assertNotNull(loadedRoot.getNextChildrenCursor());
+        // The loaded reply sits on the depth limit: no children read, none reported for it
+        assertEquals(0L, loadedRoot.getChildren().get(0).getRemainingChildren());
+        assertNull(loadedRoot.getChildren().get(0).getNextChildrenCursor());
+        verify(caffeineCacheService).put(anyString(), eq(result));
+    }
+
+    @Test
+    void searchComments_keepsRankOrderAndEncodesRankCursor() {
+        UUID appId = UUID.randomUUID();
+        Comment best = new Comment();
+        best.setId(UUID.randomUUID());
+        Comment second = new Comment();
+        second.setId(UUID.randomUUID());
+        Comment third = new Comment();
+        third.setId(UUID.randomUUID());
+        List<Object[]> ranked = List.of(
+            new Object[]{best.getId(), 0.9f, 3L},
+            new Object[]{second.getId(), 0.5f, 3L},
+            new Object[]{third.getId(), 0.1f, 3L});
+        when(repository.searchRanked(eq(appId), eq("battery"), eq(1), eq(Float.MAX_VALUE), any(), eq(3),
+            eq(SEARCH_MAX_CANDIDATES))).thenReturn(ranked);
+        when(repository.findAllById(List.of(best.getId(), second.getId()))).thenReturn(List.of(second, best));
+        CommentSearchPage result = service.searchComments(appId, "battery", 1, null, 2);
+        assertThat(result.content()).extracting(Comment::getId).containsExactly(best.getId(), second.getId());
+        assertTrue(result.hasNext());
+        assertFalse(result.truncated());
+        KeysetCursor next = KeysetCursor.decode(result.nextCursor());
+        assertEquals(0.5f, next.keyAsFloat());
+        assertEquals(second.getId(), next.id());
+    }
+
+    @Test
+    void searchComments_moreMatchesThanCandidates_isFlaggedTruncatedFromTheSameScan() {
+        UUID appId = UUID.randomUUID();
+        UUID match = UUID.randomUUID();
+        List<Object[]> ranked = List.<Object[]>of(new Object[]{match, 0.4f, SEARCH_MAX_CANDIDATES + 1L});
+        when(repository.searchRanked(eq(appId), eq("great"), eq(0), anyFloat(), any(), eq(11), eq(SEARCH_MAX_CANDIDATES)))
+            .thenReturn(ranked);
+
+        assertTrue(service.searchComments(appId, "great", null, null, 10).truncated());
+        verify(repository).searchRanked(any(), any(), anyInt(), anyFloat(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void searchComments_exactlyAsManyMatchesAsCandidates_isNotTruncated() {
+        UUID appId = UUID.randomUUID();
+        List<Object[]> ranked = List.<Object[]>of(new Object[]{UUID.randomUUID(), 0.4f, (long) SEARCH_MAX_CANDIDATES});
+        when(repository.searchRanked(eq(appId), eq("great"), eq(0), anyFloat(), any(), eq(11), eq(SEARCH_MAX_CANDIDATES)))
+            .thenReturn(ranked);
+
+        assertFalse(service.searchComments(appId, "great", null, null, 10).truncated());
+    }
+}
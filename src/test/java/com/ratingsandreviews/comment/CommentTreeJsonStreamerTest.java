@@ -0,0 +1,103 @@
+package com.ratingsandreviews.comment;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.ByteArrayOutputStream;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class CommentTreeJsonStreamerTest {
+    @Mock
+    private CommentRepository repository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private CommentTreeJsonStreamer streamer;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        streamer = new CommentTreeJsonStreamer(repository, entityManager, objectMapper);
+    }
+
+    @Test
+    void writeApplicationTree_nestsDepthFirstRowsAndDetachesEach() throws Exception {
+        UUID appId = UUID.randomUUID();
+        Comment rootA = comment(null);
+        Comment replyA1 = comment(rootA);
+        Comment replyA1a = comment(replyA1);
+        Comment replyA2 = comment(rootA);
+        Comment rootB = comment(null);
+        when(repository.streamCommentTree(appId)).thenReturn(Stream.of(rootA, replyA1, replyA1a, replyA2, rootB));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        streamer.writeApplicationTree(appId, out);
+
+        JsonNode tree = objectMapper.readTree(out.toByteArray());
+        assertEquals(2, tree.size());
+        assertEquals(rootA.getId().toString(), tree.get(0).get("id").asText());
+        JsonNode rootAChildren = tree.get(0).get("children");
+        assertEquals(2, rootAChildren.size());
+        assertEquals(replyA1a.getId().toString(), rootAChildren.get(0).get("children").get(0).get("id").asText());
+        assertEquals(replyA2.getId().toString(), rootAChildren.get(1).get("id").asText());
+        assertEquals(0, tree.get(1).get("children").size());
+        verify(entityManager, times(5)).detach(any());
+    }
+
+    @Test
+    void writeApplicationTree_writesNodeFieldsThroughTheObjectMapper() throws Exception {
+        UUID appId = UUID.randomUUID();
+        Comment root = comment(null);
+        root.setText("great app");
+        root.setReplyCount(4);
+        root.setRemainingChildren(4L);
+        root.setNextChildrenCursor("cursor");
+        when(repository.streamCommentTree(appId)).thenReturn(Stream.of(root));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        streamer.writeApplicationTree(appId, out);
+
+        String json = out.toString();
+        JsonNode node = objectMapper.readTree(json).get(0);
+        // Parsed back from text like the streamed side, so numbers get the same node types on both sides
+        JsonNode expected = objectMapper.readTree(objectMapper.writeValueAsString(root));
+        // Every field the mapper writes for a Comment, with children written once, by the streamer
+        expected.fieldNames().forEachRemaining(field -> assertEquals(expected.get(field), node.get(field), field));
+        assertEquals(4, node.get("remainingChildren").asLong());
+        assertEquals("cursor", node.get("nextChildrenCursor").asText());
+        assertEquals(json.indexOf("\"children\""), json.lastIndexOf("\"children\""));
+    }
+
+    @Test
+    void writeSubtree_missingTop_writesNull() throws Exception {
+        Comment top = comment(null);
+        top.setPath(top.getId().toString());
+        when(repository.streamSubtree(any(), any(), any())).thenReturn(Stream.empty());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        streamer.writeSubtree(top, out);
+        assertEquals("null", out.toString());
+    }
+
+    private Comment comment(Comment parent) {
+        Comment c = new Comment();
+        c.setId(UUID.randomUUID());
+        if (parent != null) {
+            c.setParentId(parent.getId());
+            c.setLevel(parent.getLevel() + 1);
+        }
+        return c;
+    }
+}
@@ -0,0 +1,98 @@
+package com.ratingsandreviews.rating;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class RatingBatchRepositoryTest {
+    private Connection connection;
+    private PreparedStatement tryLock;
+    private PreparedStatement unlock;
+    private RatingBatchRepository repository;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        DataSource dataSource = mock(DataSource.class);
+        connection = mock(Connection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        tryLock = statement("SELECT pg_try_advisory_lock(?)");
+        unlock = statement("SELECT pg_advisory_unlock(?)");
+        repository = new RatingBatchRepository(new JdbcTemplate(dataSource));
+    }
+
+    @Test
+    void withAdvisoryLock_lockTaken_runsTheWorkOutsideATransactionAndUnlocks() throws SQLException {
+        returns(tryLock, true);
+        returns(unlock, true);
+
+        assertThat(repository.withAdvisoryLock(7L, () -> "done")).contains("done");
+
+        InOrder order = inOrder(tryLock, unlock, connection);
+        order.verify(tryLock).executeQuery();
+        order.verify(unlock).executeQuery();
+        order.verify(connection).close();
+        verify(connection, never()).setAutoCommit(false);
+    }
+
+    @Test
+    void withAdvisoryLock_heldElsewhere_skipsTheWork() throws SQLException {
+        returns(tryLock, false);
+
+        assertThat(repository.withAdvisoryLock(7L, () -> "done")).isEqualTo(Optional.empty());
+
+        verify(unlock, never()).executeQuery();
+        verify(connection).close();
+    }
+
+    @Test
+    void withAdvisoryLock_failingWork_stillUnlocks() throws SQLException {
+        returns(tryLock, true);
+        returns(unlock, true);
+
+        assertThrows(IllegalStateException.class, () -> repository.withAdvisoryLock(7L, () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        verify(unlock).executeQuery();
+        verify(connection).close();
+    }
+
+    @Test
+    void withAdvisoryLock_unlockFails_abortsTheConnectionInsteadOfPoolingIt() throws SQLException {
+        returns(tryLock, true);
+        when(unlock.executeQuery()).thenThrow(new SQLException("connection reset"));
+
+        assertThrows(RuntimeException.class, () -> repository.withAdvisoryLock(7L, () -> "done"));
+
+        verify(connection).abort(any());
+    }
+
+    private PreparedStatement statement(String sql) throws SQLException {
+        PreparedStatement statement = mock(PreparedStatement.class);
+        when(connection.prepareStatement(sql)).thenReturn(statement);
+        return statement;
+    }
+
+    private static void returns(PreparedStatement statement, boolean value) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(1);
+        when(rs.getMetaData()).thenReturn(metaData);
+        when(rs.next()).thenReturn(true, false);
+        when(rs.getBoolean(1)).thenReturn(value);
+        when(statement.executeQuery()).thenReturn(rs);
+    }
+}
@@ -0,0 +1,84 @@
+package com.ratingsandreviews.rating;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ratingsandreviews.cache.ApplicationVersions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class RatingControllerTest {
+    @Mock
+    private RatingService ratingService;
+
+    @Mock
+    private RatingStatsReconciler statsReconciler;
+
+    @Mock
+    private ApplicationVersions applicationVersions;
+
+    private RatingController controller;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        controller = new RatingController(ratingService, statsReconciler, applicationVersions, new ObjectMapper());
+    }
+
+    @Test
+    void average_matchingIfNoneMatch_answers304WithoutReading() {
+        UUID appId = UUID.randomUUID();
+        when(applicationVersions.eTag(appId)).thenReturn("\"42\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        Double body = controller.getAverageRatingForApplication(appId.toString(), request("\"42\"", response));
+
+        assertThat(body).isNull();
+        assertThat(response.getStatus()).isEqualTo(304);
+        verifyNoInteractions(ratingService);
+    }
+
+    @Test
+    void categoryStats_staleIfNoneMatch_isServedWithTheCurrentVersion() {
+        UUID appId = UUID.randomUUID();
+        when(applicationVersions.eTag(appId)).thenReturn("\"43\"");
+        List<ApplicationRatingStats> stats = List.of();
+        when(ratingService.getCategoryStatsForApplication(appId.toString())).thenReturn(stats);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        List<ApplicationRatingStats> body = controller.getCategoryStatsForApplication(appId.toString(), null,
+            request("\"42\"", response));
+
+        assertThat(body).isSameAs(stats);
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo("\"43\"");
+    }
+
+    @Test
+    void summary_matchingIfNoneMatch_answers304WithoutReading() {
+        List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID());
+        when(applicationVersions.eTag(ids)).thenReturn("\"abc\"");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        List<RatingSummary> body = controller.getSummaries(ids, request("\"abc\"", response));
+
+        assertThat(body).isNull();
+        assertThat(response.getStatus()).isEqualTo(304);
+        verifyNoInteractions(ratingService);
+    }
+
+    private static ServletWebRequest request(String ifNoneMatch, MockHttpServletResponse response) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/v1/ratings/average");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        return new ServletWebRequest(request, response);
+    }
+}
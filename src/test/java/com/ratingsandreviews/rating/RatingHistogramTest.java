@@ -0,0 +1,218 @@
+package com.ratingsandreviews.rating;
+
+import com.ratingsandreviews.cache.ApplicationVersions;
+import com.ratingsandreviews.cache.CacheKeyBuilder;
+import com.ratingsandreviews.cache.CacheService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RatingHistogramTest {
+    private static final String HEARTBEATS = CacheKeyBuilder.histogramHeartbeatsKey();
+
+    @Mock
+    private RatingBatchRepository batchRepository;
+
+    @Mock
+    private CacheService redisCacheService;
+
+    @Mock
+    private ApplicationVersions applicationVersions;
+
+    private RatingHistogram histogram;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        histogram = new RatingHistogram(batchRepository, redisCacheService, applicationVersions, Long.MAX_VALUE, 40, 30000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        histogram.shutdown();
+    }
+
+    @Test
+    void record_accumulatesPendingPerScale() {
+        UUID appId = UUID.randomUUID();
+        histogram.record(appId, 5);
+        histogram.record(appId, 5);
+        histogram.record(appId, 1);
+        assertThat(histogram.pending(appId)).containsExactly(1, 0, 0, 0, 2);
+        assertThat(histogram.pending(UUID.randomUUID())).isNull();
+    }
+
+    @Test
+    void flush_writesDeltasAndClearsPending() {
+        UUID appId = UUID.randomUUID();
+        histogram.record(appId, 3);
+        histogram.record(appId, 4);
+        histogram.flush();
+        verify(batchRepository).addToStats(List.of(
+            new RatingBatchRepository.StatsDelta(appId, (short) 3, 1),
+            new RatingBatchRepository.StatsDelta(appId, (short) 4, 1)));
+        verify(redisCacheService, atLeastOnce()).evict(contains(appId.toString()));
+        verify(applicationVersions).bump(appId);
+        assertThat(histogram.pending(appId)).isNull();
+        assertThat(histogram.trackedApplications()).isZero();
+    }
+
+    @Test
+    void flush_nothingPending_bumpsNoVersion() {
+        histogram.flush();
+        verify(applicationVersions, never()).bump(any());
+    }
+
+    @Test
+    void record_afterDrainedEntryWasDropped_isStillFlushed() {
+        UUID appId = UUID.randomUUID();
+        histogram.record(appId, 1);
+        histogram.flush();
+        histogram.record(appId, 2);
+        histogram.flush();
+        verify(batchRepository).addToStats(List.of(new RatingBatchRepository.StatsDelta(appId, (short) 2, 1)));
+        assertThat(histogram.trackedApplications()).isZero();
+    }
+
+    @Test
+    void flush_failure_keepsCountsPending() {
+        UUID appId = UUID.randomUUID();
+        histogram.record(appId, 2);
+        doThrow(new RuntimeException("db down")).when(batchRepository).addToStats(anyList());
+        histogram.flush();
+        assertThat(histogram.pending(appId)).containsExactly(0, 1, 0, 0, 0);
+        assertThat(histogram.trackedApplications()).isEqualTo(1);
+        verify(redisCacheService, never()).evict(anyString());
+        verify(applicationVersions, never()).bump(any());
+    }
+
+    @Test
+    void flush_movedRating_writesOffsettingDeltas() {
+        UUID appId = UUID.randomUUID();
+        histogram.record(appId, 2, -1);
+        histogram.record(appId, 5, 1);
+        histogram.flush();
+        verify(batchRepository).addToStats(List.of(
+            new RatingBatchRepository.StatsDelta(appId, (short) 2, -1),
+            new RatingBatchRepository.StatsDelta(appId, (short) 5, 1)));
+    }
+
+    @Test
+    void flush_sequenceIsOddFromDrainUntilEviction() {
+        UUID appId = UUID.randomUUID();
+        histogram.record(appId, 4);
+        List<Long> seen = new ArrayList<>();
+        doAnswer(inv -> seen.add(histogram.flushSequence())).when(batchRepository).addToStats(anyList());
+        doAnswer(inv -> seen.add(histogram.flushSequence())).when(redisCacheService).evict(anyString());
+
+        assertThat(histogram.flushSequence()).isZero();
+        histogram.flush();
+
+        assertThat(seen).containsOnly(1L);
+        assertThat(histogram.flushSequence()).isEqualTo(2);
+    }
+
+    @Test
+    void asFlush_runsWriteWithTheSequenceOddAndTurnsItEvenAfterwards() {
+        assertThat(histogram.asFlush(histogram::flushSequence)).isEqualTo(1L);
+        assertThat(histogram.flushSequence()).isEqualTo(2);
+
+        assertThatThrownBy(() -> histogram.asFlush(() -> {
+            throw new IllegalStateException("rolled back");
+        })).isInstanceOf(IllegalStateException.class);
+        assertThat(histogram.flushSequence()).isEqualTo(4);
+    }
+
+    @Test
+    void flush_heartbeatCountsOnlySuccessfulFlushes() {
+        UUID appId = UUID.randomUUID();
+        histogram.flush();
+        histogram.record(appId, 2);
+        doThrow(new RuntimeException("db down")).when(batchRepository).addToStats(anyList());
+        histogram.flush();
+
+        ArgumentCaptor<RatingHistogram.Heartbeat> published = ArgumentCaptor.forClass(RatingHistogram.Heartbeat.class);
+        verify(redisCacheService, times(2)).putField(eq(HEARTBEATS), anyString(), published.capture(), eq(30L));
+        assertThat(published.getAllValues()).extracting(RatingHistogram.Heartbeat::flushes).containsExactly(1L, 1L);
+    }
+
+    @Test
+    void awaitFlushedEverywhere_waitsForTwoFlushesOnEveryInstance() throws Exception {
+        String own = instanceId();
+        when(redisCacheService.getFields(HEARTBEATS, RatingHistogram.Heartbeat.class)).thenReturn(
+            heartbeats(own, 0L, "other", 5L), heartbeats(own, 2L, "other", 6L), heartbeats(own, 2L, "other", 7L));
+
+        assertThat(histogram.awaitFlushedEverywhere(1000)).isTrue();
+        // One HGETALL per poll, never a key scan
+        verify(redisCacheService, times(3)).getFields(HEARTBEATS, RatingHistogram.Heartbeat.class);
+    }
+
+    @Test
+    void awaitFlushedEverywhere_expiredInstance_isNotWaitedFor() throws Exception {
+        String own = instanceId();
+        when(redisCacheService.getFields(HEARTBEATS, RatingHistogram.Heartbeat.class)).thenReturn(
+            heartbeats(own, 0L, "other", 5L), heartbeats(own, 2L));
+
+        assertThat(histogram.awaitFlushedEverywhere(1000)).isTrue();
+    }
+
+    @Test
+    void awaitFlushedEverywhere_staleHeartbeat_isDroppedAndNotWaitedFor() throws Exception {
+        String own = instanceId();
+        long now = System.currentTimeMillis();
+        Map<String, RatingHistogram.Heartbeat> withDead = Map.of(
+            own, new RatingHistogram.Heartbeat(0L, now), "dead", new RatingHistogram.Heartbeat(5L, now - 60_000));
+        when(redisCacheService.getFields(HEARTBEATS, RatingHistogram.Heartbeat.class)).thenReturn(
+            withDead, heartbeats(own, 2L));
+
+        assertThat(histogram.awaitFlushedEverywhere(1000)).isTrue();
+        verify(redisCacheService).evictField(HEARTBEATS, "dead");
+    }
+
+    @Test
+    void awaitFlushedEverywhere_instanceNeverFlushing_timesOut() throws Exception {
+        String own = instanceId();
+        when(redisCacheService.getFields(HEARTBEATS, RatingHistogram.Heartbeat.class)).thenReturn(
+            heartbeats(own, 0L, "other", 5L), heartbeats(own, 2L, "other", 5L));
+
+        assertThat(histogram.awaitFlushedEverywhere(100)).isFalse();
+    }
+
+    @Test
+    void awaitFlushedEverywhere_heartbeatsUnreadable_returnsFalse() throws Exception {
+        when(redisCacheService.getFields(anyString(), eq(RatingHistogram.Heartbeat.class))).thenReturn(Map.of());
+
+        assertThat(histogram.awaitFlushedEverywhere(1000)).isFalse();
+    }
+
+    // The field this histogram publishes its heartbeat under
+    private String instanceId() {
+        histogram.register();
+        ArgumentCaptor<String> field = ArgumentCaptor.forClass(String.class);
+        verify(redisCacheService).putField(eq(HEARTBEATS), field.capture(), any(), eq(30L));
+        return field.getValue();
+    }
+
+    // Fresh heartbeats: instance id, flush count, instance id, flush count...
+    private static Map<String, RatingHistogram.Heartbeat> heartbeats(Object... idsAndFlushes) {
+        Map<String, RatingHistogram.Heartbeat> heartbeats = new HashMap<>();
+        for (int i = 0; i < idsAndFlushes.length; i += 2) {
+            heartbeats.put((String) idsAndFlushes[i], new RatingHistogram.Heartbeat((Long) idsAndFlushes[i + 1], System.currentTimeMillis()));
+        }
+        return heartbeats;
+    }
+}
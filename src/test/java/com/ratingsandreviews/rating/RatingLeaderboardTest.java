@@ -0,0 +1,94 @@
+package com.ratingsandreviews.rating;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class RatingLeaderboardTest {
+    @Mock
+    private RatingRepositoryWrapper wrapper;
+
+    @Mock
+    private RatingHistogram ratingHistogram;
+
+    private RatingLeaderboard leaderboard;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        leaderboard = new RatingLeaderboard(wrapper, ratingHistogram, 10, 3.0);
+    }
+
+    @Test
+    void top_ranksByExactAndBayesianAverage() {
+        UUID single = UUID.randomUUID();
+        UUID popular = UUID.randomUUID();
+        leaderboard.record(single, 5, 1);                // one 5-star rating
+        leaderboard.record(popular, 4 * 100 + 5 * 50, 150); // mostly 4s, many ratings
+
+        assertThat(leaderboard.top(RatingLeaderboard.Ranking.AVERAGE, 10))
+            .extracting(RatingLeaderboard.Entry::applicationId).containsExactly(single, popular);
+        assertThat(leaderboard.top(RatingLeaderboard.Ranking.BAYESIAN, 10))
+            .extracting(RatingLeaderboard.Entry::applicationId).containsExactly(popular, single);
+        assertThat(leaderboard.top(RatingLeaderboard.Ranking.AVERAGE, 1)).hasSize(1);
+    }
+
+    @Test
+    void record_updatesPositionAndDropsEmptyApplications() {
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        leaderboard.record(a, 3, 1);
+        leaderboard.record(b, 4, 1);
+        assertThat(leaderboard.top(RatingLeaderboard.Ranking.AVERAGE, 10))
+            .extracting(RatingLeaderboard.Entry::applicationId).containsExactly(b, a);
+        leaderboard.record(a, 5 * 2, 2);
+        assertThat(leaderboard.top(RatingLeaderboard.Ranking.AVERAGE, 10))
+            .extracting(RatingLeaderboard.Entry::applicationId).containsExactly(a, b);
+        leaderboard.record(b, -4, -1);
+        assertThat(leaderboard.top(RatingLeaderboard.Ranking.AVERAGE, 10))
+            .extracting(RatingLeaderboard.Entry::applicationId).containsExactly(a);
+    }
+
+    @Test
+    void refresh_rebuildsFromPersistedTotalsAndPendingCounts() {
+        UUID appId = UUID.randomUUID();
+        UUID stale = UUID.randomUUID();
+        leaderboard.record(stale, 5, 1);
+        when(wrapper.getRatingTotals()).thenReturn(List.<Object[]>of(new Object[]{appId, 8L, 2L}));
+        when(ratingHistogram.pending(appId)).thenReturn(new long[]{1, 0, 0, 0, 0});
+        leaderboard.refresh();
+        List<RatingLeaderboard.Entry> top = leaderboard.top(RatingLeaderboard.Ranking.AVERAGE, 10);
+        assertThat(top).extracting(RatingLeaderboard.Entry::applicationId).containsExactly(appId);
+        assertThat(top.get(0).ratings()).isEqualTo(3);
+        assertThat(top.get(0).average()).isEqualTo(3.0);
+    }
+
+    @Test
+    void refresh_flushBetweenTotalsAndPending_readsBothAgain() {
+        UUID appId = UUID.randomUUID();
+        // The first read sees the totals before the flush commits and the pending counts after it drained them
+        when(ratingHistogram.flushSequence()).thenReturn(2L, 4L);
+        when(wrapper.getRatingTotals()).thenReturn(List.<Object[]>of(new Object[]{appId, 8L, 2L}), List.<Object[]>of(new Object[]{appId, 9L, 3L}));
+
+        leaderboard.refresh();
+
+        verify(wrapper, times(2)).getRatingTotals();
+        List<RatingLeaderboard.Entry> top = leaderboard.top(RatingLeaderboard.Ranking.AVERAGE, 10);
+        assertThat(top.get(0).ratings()).isEqualTo(3);
+        assertThat(top.get(0).average()).isEqualTo(3.0);
+    }
+
+    @Test
+    void top_rejectsOutOfRangeLimit() {
+        assertThrows(IllegalArgumentException.class, () -> leaderboard.top(RatingLeaderboard.Ranking.AVERAGE, 0));
+        assertThrows(IllegalArgumentException.class, () -> leaderboard.top(RatingLeaderboard.Ranking.AVERAGE, RatingLeaderboard.MAX_LIMIT + 1));
+    }
+}
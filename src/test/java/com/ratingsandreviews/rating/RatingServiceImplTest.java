@@ -1,18 +1,36 @@
 package com.ratingsandreviews.rating;
 
+import com.ratingsandreviews.cache.ApplicationVersions;
+import com.ratingsandreviews.cache.CacheKeyBuilder;
 import com.ratingsandreviews.cache.CacheService;
+import com.ratingsandreviews.stream.FeedEvent;
+import com.ratingsandreviews.util.CursorPage;
+import com.ratingsandreviews.util.KeysetCursor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,23 +44,60 @@ class RatingServiceImplTest {
     @Mock
     private CacheService redisCacheService;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private RatingHistogram ratingHistogram;
+
+    @Mock
+    private RatingLeaderboard ratingLeaderboard;
+
+    @Mock
+    private RatingWindows ratingWindows;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ApplicationVersions applicationVersions;
+
     @InjectMocks
     private RatingServiceImpl service;
 
+    // What importRatings has stored per (application, user name), to answer like the upsert would
+    private final Map<String, Integer> imported = new HashMap<>();
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        when(applicationVersions.scoped(any(), anyString())).thenAnswer(inv -> inv.getArgument(1) + ":v1");
+        when(transactionTemplate.execute(any())).thenAnswer(inv -> inv.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(ratingHistogram.asFlush(any())).thenAnswer(inv -> inv.<Supplier<?>>getArgument(0).get());
+        when(wrapper.importRatings(anyList())).thenAnswer(invocation -> {
+            List<Rating> chunk = invocation.getArgument(0);
+            return chunk.stream().map(r -> {
+                Integer previous = r.getUserName() == null ? null : imported.put(r.getApplicationId() + "/" + r.getUserName(), r.getRating());
+                return new RatingBatchRepository.ImportedRating(r.getApplicationId(), r.getRating(), previous,
+                    r.getCreatedAt().toInstant(), !r.getRating().equals(previous));
+            }).toList();
+        });
     }
 
     @Test
     void submitRating_savesAndReturns() {
         Rating rating = new Rating();
         rating.setApplicationId(UUID.randomUUID());
+        rating.setRating(4);
         when(wrapper.saveRating(any(Rating.class))).thenReturn(rating);
         Rating saved = service.submitRating(rating);
         assertNotNull(saved);
         verify(wrapper).saveRating(rating);
+        verify(ratingHistogram).record(rating.getApplicationId(), 4);
+        verify(ratingLeaderboard).record(rating.getApplicationId(), 4, 1);
+        verify(ratingWindows).record(rating.getApplicationId(), rating.getCreatedAt(), 4, 1);
         verify(redisCacheService).evictPattern(anyString());
+        verify(eventPublisher).publishEvent(new FeedEvent(rating.getApplicationId(), FeedEvent.RATING_CREATED, rating));
     }
 
     @Test
@@ -76,5 +131,498 @@ class RatingServiceImplTest {
         assertThat(result).hasSize(1);
         verify(redisCacheService).put(anyString(), eq(stats));
     }
-}
 
+    @Test
+    void getCategoryStatsForApplication_mergesPendingCounts() {
+        UUID appId = UUID.randomUUID();
+        ApplicationRatingStats fives = new ApplicationRatingStats();
+        fives.setId(new ApplicationRatingStatsId(appId, (short) 5));
+        fives.setCount(10L);
+        when(redisCacheService.get(anyString(), eq(List.class))).thenReturn(List.of(fives));
+        when(ratingHistogram.pending(appId)).thenReturn(new long[]{2, 0, 0, 0, 3});
+        List<ApplicationRatingStats> result = service.getCategoryStatsForApplication(appId.toString());
+        assertThat(result).extracting(stats -> stats.getId().getScale()).containsExactly((short) 1, (short) 5);
+        assertThat(result).extracting(ApplicationRatingStats::getCount).containsExactly(2L, 13L);
+        assertThat(fives.getCount()).isEqualTo(10L);
+    }
+
+    @Test
+    void getCategoryStatsForApplication_flushDuringRead_readsAgainAndCachesTheSettledCounts() {
+        UUID appId = UUID.randomUUID();
+        ApplicationRatingStats beforeFlush = new ApplicationRatingStats();
+        beforeFlush.setId(new ApplicationRatingStatsId(appId, (short) 5));
+        beforeFlush.setCount(10L);
+        ApplicationRatingStats afterFlush = new ApplicationRatingStats();
+        afterFlush.setId(new ApplicationRatingStatsId(appId, (short) 5));
+        afterFlush.setCount(13L);
+        // Odd: a flush is running; then one completes between the first read's two checks
+        when(ratingHistogram.flushSequence()).thenReturn(1L, 2L, 4L);
+        when(wrapper.getCategoryStatsForApplication(appId)).thenReturn(List.of(beforeFlush), List.of(afterFlush));
+        // Nothing is pending in either read: the flush drained three ratings that only the second read sees persisted
+
+        List<ApplicationRatingStats> result = service.getCategoryStatsForApplication(appId.toString());
+
+        assertThat(result).extracting(ApplicationRatingStats::getCount).containsExactly(13L);
+        verify(wrapper, times(2)).getCategoryStatsForApplication(appId);
+        verify(redisCacheService).put(CacheKeyBuilder.ratingStatsKey(appId.toString()), List.of(afterFlush));
+        verify(redisCacheService, never()).put(anyString(), eq(List.of(beforeFlush)));
+        verify(redisCacheService, never()).evict(anyString());
+    }
+
+    @Test
+    void getRatingForApplication_withPendingCounts_averagesMergedHistogram() {
+        UUID appId = UUID.randomUUID();
+        when(redisCacheService.get(anyString(), eq(List.class))).thenReturn(List.of());
+        when(ratingHistogram.pending(appId)).thenReturn(new long[]{1, 0, 0, 0, 1});
+        assertEquals(3.0, service.getRatingForApplication(appId.toString()));
+        verify(wrapper, never()).getAvgByApplicationId(anyString());
+    }
+
+    @Test
+    void submitRatings_insertsInBatchesAndUpdatesStatsOncePerGroup() {
+        UUID appA = UUID.randomUUID();
+        UUID appB = UUID.randomUUID();
+        List<Rating> ratings = new ArrayList<>();
+        for (int i = 0; i < RatingBatchRepository.BATCH_SIZE + 1; i++) {
+            Rating rating = new Rating();
+            rating.setApplicationId(i == 0 ? appB : appA);
+            rating.setRating(i == 0 ? 1 : 5);
+            ratings.add(rating);
+        }
+        RatingImport result = service.submitRatings(ratings.iterator());
+        assertEquals(new RatingImport(RatingBatchRepository.BATCH_SIZE + 1, 0, 0), result);
+        // One transaction, and one stats upsert per (application, scale), per chunk
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(wrapper, times(2)).importRatings(anyList());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<RatingBatchRepository.StatsDelta>> deltas = ArgumentCaptor.forClass(List.class);
+        verify(wrapper, times(2)).addToCategoryStats(deltas.capture());
+        assertThat(deltas.getAllValues().get(0)).containsExactlyInAnyOrder(
+            new RatingBatchRepository.StatsDelta(appA, (short) 5, RatingBatchRepository.BATCH_SIZE - 1),
+            new RatingBatchRepository.StatsDelta(appB, (short) 1, 1));
+        assertThat(deltas.getAllValues().get(1)).containsExactly(new RatingBatchRepository.StatsDelta(appA, (short) 5, 1));
+        // Stats change under the histogram's flush sequence, then each chunk is evicted and announced on its own
+        verify(ratingHistogram, times(2)).asFlush(any());
+        verify(redisCacheService, times(2)).evictPattern(CacheKeyBuilder.ratingsPattern(appA.toString()));
+        verify(redisCacheService).evictPattern(CacheKeyBuilder.ratingsPattern(appB.toString()));
+        verify(eventPublisher).publishEvent(new FeedEvent(appA, FeedEvent.RATINGS_IMPORTED, (long) RatingBatchRepository.BATCH_SIZE - 1));
+        verify(eventPublisher).publishEvent(new FeedEvent(appA, FeedEvent.RATINGS_IMPORTED, 1L));
+        verify(eventPublisher).publishEvent(new FeedEvent(appB, FeedEvent.RATINGS_IMPORTED, 1L));
+        assertThat(ratings).allSatisfy(rating -> assertNotNull(rating.getId()));
+    }
+
+    @Test
+    void submitRatings_laterChunkFails_earlierChunkIsAlreadyEvictedAndAnnounced() {
+        UUID appId = UUID.randomUUID();
+        List<Rating> ratings = new ArrayList<>();
+        for (int i = 0; i < RatingBatchRepository.BATCH_SIZE + 1; i++) {
+            Rating rating = new Rating();
+            rating.setApplicationId(appId);
+            rating.setRating(3);
+            ratings.add(rating);
+        }
+        doNothing().doThrow(new IllegalStateException("connection lost")).when(wrapper).addToCategoryStats(anyList());
+
+        assertThrows(IllegalStateException.class, () -> service.submitRatings(ratings.iterator()));
+
+        verify(redisCacheService, times(1)).evictPattern(CacheKeyBuilder.ratingsPattern(appId.toString()));
+        verify(eventPublisher, times(1)).publishEvent(any(FeedEvent.class));
+        verify(eventPublisher).publishEvent(new FeedEvent(appId, FeedEvent.RATINGS_IMPORTED, (long) RatingBatchRepository.BATCH_SIZE));
+    }
+
+    @Test
+    void submitRatings_missingApplication_throws() {
+        Rating rating = new Rating();
+        rating.setRating(3);
+        assertThrows(IllegalArgumentException.class, () -> service.submitRatings(List.of(rating).iterator()));
+        verify(wrapper, never()).importRatings(anyList());
+    }
+
+    @Test
+    void submitRatings_sameUserTwice_replacesTheEarlierRating() {
+        UUID appId = UUID.randomUUID();
+        List<Rating> ratings = new ArrayList<>();
+        for (int value : new int[]{2, 2, 4}) {
+            Rating rating = new Rating();
+            rating.setApplicationId(appId);
+            rating.setUserName("ann");
+            rating.setRating(value);
+            ratings.add(rating);
+        }
+
+        RatingImport result = service.submitRatings(ratings.iterator());
+
+        // Each repeat starts a new chunk; the resubmitted 2 changes nothing, the 4 moves the rating from 2 to 4
+        assertEquals(new RatingImport(1, 1, 1), result);
+        verify(wrapper, times(3)).importRatings(anyList());
+        verify(wrapper).addToCategoryStats(List.of(new RatingBatchRepository.StatsDelta(appId, (short) 2, 1)));
+        verify(wrapper).addToCategoryStats(List.of(
+            new RatingBatchRepository.StatsDelta(appId, (short) 2, -1), new RatingBatchRepository.StatsDelta(appId, (short) 4, 1)));
+        verify(ratingLeaderboard).record(appId, 2, 1);
+        verify(ratingLeaderboard).record(appId, 2, 0);
+        verify(ratingWindows).record(eq(appId), any(), eq(2), eq(-1L));
+        verify(eventPublisher, times(2)).publishEvent(new FeedEvent(appId, FeedEvent.RATINGS_IMPORTED, 1L));
+    }
+
+    @Test
+    void submitRatings_ratingOutsideScale_throwsWithRowNumber() {
+        Rating valid = new Rating();
+        valid.setApplicationId(UUID.randomUUID());
+        valid.setRating(4);
+        // The entity setter rejects it, so only a row built some other way can carry a 9
+        Rating invalid = mock(Rating.class);
+        when(invalid.getApplicationId()).thenReturn(UUID.randomUUID());
+        when(invalid.getRating()).thenReturn(9);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> service.submitRatings(List.of(valid, invalid).iterator()));
+        assertThat(e.getMessage()).startsWith("Rating 1 must be between 1 and 5");
+        verify(wrapper, never()).importRatings(anyList());
+    }
+
+    @Test
+    void updateRating_missingOrOutOfRange_throwsBeforeLoading() {
+        UUID id = UUID.randomUUID();
+        assertThrows(IllegalArgumentException.class, () -> service.updateRating(id, null));
+        assertThrows(IllegalArgumentException.class, () -> service.updateRating(id, 0));
+        assertThrows(IllegalArgumentException.class, () -> service.updateRating(id, 6));
+        verify(wrapper, never()).findRating(any());
+    }
+
+    @Test
+    void updateRating_movesCountBetweenScales() {
+        UUID id = UUID.randomUUID();
+        Rating rating = new Rating();
+        rating.setId(id);
+        rating.setApplicationId(UUID.randomUUID());
+        rating.setRating(2);
+        when(wrapper.findRating(id)).thenReturn(Optional.of(rating));
+        when(wrapper.saveRating(rating)).thenReturn(rating);
+
+        Rating saved = service.updateRating(id, 5);
+
+        assertEquals(5, saved.getRating());
+        verify(ratingHistogram).record(rating.getApplicationId(), 2, -1);
+        verify(ratingHistogram).record(rating.getApplicationId(), 5, 1);
+        verify(ratingLeaderboard).record(rating.getApplicationId(), 3, 0);
+        verify(eventPublisher).publishEvent(new FeedEvent(rating.getApplicationId(), FeedEvent.RATING_UPDATED, rating));
+    }
+
+    @Test
+    void updateRating_sameValue_leavesStatsAlone() {
+        UUID id = UUID.randomUUID();
+        Rating rating = new Rating();
+        rating.setApplicationId(UUID.randomUUID());
+        rating.setRating(4);
+        when(wrapper.findRating(id)).thenReturn(Optional.of(rating));
+        when(wrapper.saveRating(rating)).thenReturn(rating);
+
+        service.updateRating(id, 4);
+
+        verify(ratingHistogram, never()).record(any(UUID.class), anyInt(), anyLong());
+        verify(ratingLeaderboard, never()).record(any(UUID.class), anyLong(), anyLong());
+    }
+
+    @Test
+    void deleteRating_removesFromStats() {
+        UUID id = UUID.randomUUID();
+        Rating rating = new Rating();
+        rating.setId(id);
+        rating.setApplicationId(UUID.randomUUID());
+        rating.setRating(3);
+        when(wrapper.deleteRating(id)).thenReturn(Optional.of(rating));
+
+        service.deleteRating(id);
+
+        verify(ratingHistogram).record(rating.getApplicationId(), 3, -1);
+        verify(ratingLeaderboard).record(rating.getApplicationId(), -3, -1);
+        verify(redisCacheService).evictPattern(CacheKeyBuilder.ratingsPattern(rating.getApplicationId().toString()));
+        verify(eventPublisher).publishEvent(new FeedEvent(rating.getApplicationId(), FeedEvent.RATING_DELETED, id));
+    }
+
+    @Test
+    void deleteRating_missing_throws() {
+        UUID id = UUID.randomUUID();
+        when(wrapper.deleteRating(id)).thenReturn(Optional.empty());
+        assertThrows(RuntimeException.class, () -> service.deleteRating(id));
+        verify(ratingHistogram, never()).record(any(UUID.class), anyInt(), anyLong());
+    }
+
+    @Test
+    void deleteRating_concurrentSecondDelete_takesTheCountsOutOnce() {
+        UUID id = UUID.randomUUID();
+        Rating rating = new Rating();
+        rating.setId(id);
+        rating.setApplicationId(UUID.randomUUID());
+        rating.setRating(4);
+        rating.setCreatedAt(ZonedDateTime.now(ZoneOffset.UTC));
+        // The first DELETE ... RETURNING removes the row, the second one finds nothing left
+        when(wrapper.deleteRating(id)).thenReturn(Optional.of(rating), Optional.empty());
+
+        service.deleteRating(id);
+        assertThrows(RuntimeException.class, () -> service.deleteRating(id));
+
+        verify(ratingHistogram, times(1)).record(rating.getApplicationId(), 4, -1);
+        verify(ratingLeaderboard, times(1)).record(rating.getApplicationId(), -4, -1);
+        verify(ratingWindows, times(1)).record(rating.getApplicationId(), rating.getCreatedAt(), 4, -1);
+        verify(redisCacheService, times(1)).evictPattern(CacheKeyBuilder.ratingsPattern(rating.getApplicationId().toString()));
+        verify(eventPublisher, times(1)).publishEvent(any(FeedEvent.class));
+    }
+
+    @Test
+    void getCategoryStatsForApplication_window_readsBuckets() {
+        UUID appId = UUID.randomUUID();
+        when(ratingWindows.counts(appId, RatingWindows.Window.WEEK)).thenReturn(new long[]{0, 2, 0, 0, 7});
+
+        List<ApplicationRatingStats> stats = service.getCategoryStatsForApplication(appId.toString(), "7d");
+
+        assertThat(stats).extracting(s -> s.getId().getScale()).containsExactly((short) 2, (short) 5);
+        assertThat(stats).extracting(ApplicationRatingStats::getCount).containsExactly(2L, 7L);
+        verifyNoInteractions(wrapper);
+    }
+
+    @Test
+    void getCategoryStatsForApplication_unknownWindow_throws() {
+        assertThrows(IllegalArgumentException.class,
+            () -> service.getCategoryStatsForApplication(UUID.randomUUID().toString(), "2w"));
+    }
+
+    @Test
+    void submitRating_firstRatingOfUser_insertsAndCounts() {
+        UUID appId = UUID.randomUUID();
+        UUID id = UUID.randomUUID();
+        Rating rating = new Rating();
+        rating.setApplicationId(appId);
+        rating.setUserName("alice");
+        rating.setRating(4);
+        when(wrapper.upsertRating(rating)).thenReturn(Optional.of(
+            new RatingBatchRepository.RatingUpsert(id, null, Instant.now(), 0, true)));
+
+        Rating saved = service.submitRating(rating);
+
+        assertEquals(id, saved.getId());
+        verify(wrapper, never()).saveRating(any());
+        verify(ratingHistogram).record(appId, 4);
+        verify(ratingLeaderboard).record(appId, 4, 1);
+        verify(eventPublisher).publishEvent(new FeedEvent(appId, FeedEvent.RATING_CREATED, saved));
+    }
+
+    @Test
+    void submitRating_userChangesRating_appliesDelta() {
+        UUID appId = UUID.randomUUID();
+        Rating rating = new Rating();
+        rating.setApplicationId(appId);
+        rating.setUserName("alice");
+        rating.setRating(2);
+        when(wrapper.upsertRating(rating)).thenReturn(Optional.of(
+            new RatingBatchRepository.RatingUpsert(UUID.randomUUID(), 5, Instant.now(), 3, true)));
+
+        Rating saved = service.submitRating(rating);
+
+        assertEquals(3, saved.getVersion());
+        verify(ratingHistogram).record(appId, 5, -1);
+        verify(ratingHistogram).record(appId, 2, 1);
+        verify(ratingLeaderboard).record(appId, -3, 0);
+        verify(eventPublisher).publishEvent(new FeedEvent(appId, FeedEvent.RATING_UPDATED, saved));
+    }
+
+    @Test
+    void submitRating_retryWithSameValue_isNoOp() {
+        Rating rating = new Rating();
+        rating.setApplicationId(UUID.randomUUID());
+        rating.setUserName("alice");
+        rating.setRating(3);
+        when(wrapper.upsertRating(rating)).thenReturn(Optional.of(
+            new RatingBatchRepository.RatingUpsert(UUID.randomUUID(), 3, Instant.now(), 1, false)));
+
+        service.submitRating(rating);
+
+        verifyNoInteractions(ratingHistogram, ratingLeaderboard, ratingWindows, redisCacheService, eventPublisher);
+    }
+
+    @Test
+    void submitRating_lostInsertRace_retriesOnce() {
+        Rating rating = new Rating();
+        rating.setApplicationId(UUID.randomUUID());
+        rating.setUserName("alice");
+        rating.setRating(5);
+        when(wrapper.upsertRating(rating)).thenReturn(Optional.empty(), Optional.of(
+            new RatingBatchRepository.RatingUpsert(UUID.randomUUID(), 1, Instant.now(), 1, true)));
+
+        service.submitRating(rating);
+
+        verify(wrapper, times(2)).upsertRating(rating);
+        verify(ratingHistogram).record(rating.getApplicationId(), 1, -1);
+    }
+
+    @Test
+    void submitRatingWithAggregates_buildsResponseFromOneStatementAndCachesItsStats() {
+        UUID appId = UUID.randomUUID();
+        UUID savedId = UUID.randomUUID();
+        Rating rating = new Rating();
+        rating.setApplicationId(appId);
+        rating.setUserName("alice");
+        rating.setRating(5);
+        Rating older = new Rating();
+        older.setId(UUID.randomUUID());
+        older.setApplicationId(appId);
+        older.setRating(3);
+        Rating previousVersion = new Rating();
+        previousVersion.setId(savedId);
+        previousVersion.setApplicationId(appId);
+        previousVersion.setRating(1);
+        when(wrapper.upsertRatingWithAggregates(rating, 10)).thenReturn(Optional.of(new RatingBatchRepository.RatingWrite(
+            new RatingBatchRepository.RatingUpsert(savedId, 1, Instant.now(), 2, true),
+            List.of(new RatingBatchRepository.StatsDelta(appId, (short) 1, 1), new RatingBatchRepository.StatsDelta(appId, (short) 3, 1)),
+            List.of(previousVersion, older))));
+        when(ratingHistogram.flushSequence()).thenReturn(8L);
+        when(ratingHistogram.pending(appId)).thenReturn(new long[]{-1, 0, 0, 0, 1});
+
+        RatingSubmission submission = service.submitRatingWithAggregates(rating, 10);
+
+        assertThat(submission.page().getContent()).extracting(Rating::getId).containsExactly(savedId, older.getId());
+        assertThat(submission.page().getTotalElements()).isEqualTo(2);
+        assertThat(submission.newCategoryStats()).extracting(ApplicationRatingStats::getCount).containsExactly(1L, 1L);
+        assertEquals(4.0, submission.newAverage());
+        verify(wrapper, never()).getCategoryStatsForApplication(any());
+        verify(wrapper, never()).getRatingsByApplicationId(any(), any());
+        // Persisted counts are cached after this write's eviction; the pending ones stay in the histogram
+        InOrder cache = inOrder(redisCacheService);
+        cache.verify(redisCacheService).evictPattern(CacheKeyBuilder.ratingsPattern(appId.toString()));
+        cache.verify(redisCacheService).put(CacheKeyBuilder.ratingStatsKey(appId.toString()), List.of(
+            statsRow(appId, 1, 1), statsRow(appId, 3, 1)));
+        cache.verify(redisCacheService).put(CacheKeyBuilder.ratingAvgKey(appId.toString()), 2.0);
+        // The page comes from the pre-write snapshot, which a concurrent submit's eviction may already have outdated
+        verify(redisCacheService, never()).put(startsWith(CacheKeyBuilder.ratingsPageKey(appId.toString(), 0, 10, "")), any());
+        verify(redisCacheService, never()).evict(anyString());
+    }
+
+    @Test
+    void submitRatingWithAggregates_flushDuringWrite_rereadsStatsWithoutCachingTheSnapshot() {
+        UUID appId = UUID.randomUUID();
+        Rating rating = new Rating();
+        rating.setApplicationId(appId);
+        rating.setRating(4);
+        when(wrapper.upsertRatingWithAggregates(rating, 10)).thenReturn(Optional.of(new RatingBatchRepository.RatingWrite(
+            new RatingBatchRepository.RatingUpsert(UUID.randomUUID(), null, Instant.now(), 0, true), List.of(), List.of())));
+        when(ratingHistogram.flushSequence()).thenReturn(2L, 4L);
+        when(wrapper.getCategoryStatsForApplication(appId)).thenReturn(new ArrayList<>());
+
+        service.submitRatingWithAggregates(rating, 10);
+
+        verify(wrapper).getCategoryStatsForApplication(appId);
+        verify(redisCacheService, never()).put(eq(CacheKeyBuilder.ratingAvgKey(appId.toString())), any());
+        verify(redisCacheService, never()).put(startsWith(CacheKeyBuilder.ratingsPageKey(appId.toString(), 0, 10, "")), any());
+    }
+
+    @Test
+    void submitRatingWithAggregates_flushBetweenWriteAndWriteBack_leavesNothingStaleCached() {
+        UUID appId = UUID.randomUUID();
+        Rating rating = new Rating();
+        rating.setApplicationId(appId);
+        rating.setRating(4);
+        when(wrapper.upsertRatingWithAggregates(rating, 10)).thenReturn(Optional.of(new RatingBatchRepository.RatingWrite(
+            new RatingBatchRepository.RatingUpsert(UUID.randomUUID(), null, Instant.now(), 0, true),
+            List.of(new RatingBatchRepository.StatsDelta(appId, (short) 2, 3)), List.of())));
+        // Even and unchanged across the statement, then a whole flush runs before the write-back puts land
+        when(ratingHistogram.flushSequence()).thenReturn(4L, 4L, 6L);
+
+        RatingSubmission submission = service.submitRatingWithAggregates(rating, 10);
+
+        // The caller still gets the snapshot, which was consistent when read
+        assertThat(submission.newCategoryStats()).extracting(ApplicationRatingStats::getCount).containsExactly(3L);
+        // but the counts that flush replaced are taken out of the cache right after they were put
+        String statsKey = CacheKeyBuilder.ratingStatsKey(appId.toString());
+        String avgKey = CacheKeyBuilder.ratingAvgKey(appId.toString());
+        InOrder cache = inOrder(redisCacheService);
+        cache.verify(redisCacheService).put(eq(statsKey), any());
+        cache.verify(redisCacheService).evict(statsKey);
+        cache.verify(redisCacheService).put(eq(avgKey), any());
+        cache.verify(redisCacheService).evict(avgKey);
+        verify(wrapper, never()).getCategoryStatsForApplication(any());
+    }
+
+    @Test
+    void getSummaries_readsCacheOnceAndQueriesOnlyMisses() {
+        UUID cachedApp = UUID.randomUUID();
+        UUID missedApp = UUID.randomUUID();
+        UUID unratedApp = UUID.randomUUID();
+        ApplicationRatingStats cachedStats = new ApplicationRatingStats();
+        cachedStats.setId(new ApplicationRatingStatsId(cachedApp, (short) 5));
+        cachedStats.setCount(2L);
+        ApplicationRatingStats loadedStats = new ApplicationRatingStats();
+        loadedStats.setId(new ApplicationRatingStatsId(missedApp, (short) 3));
+        loadedStats.setCount(4L);
+        List<Object> cached = new ArrayList<>();
+        cached.add(List.of(cachedStats));
+        cached.add(null);
+        cached.add(null);
+        doReturn(cached).when(redisCacheService).getAll(anyList(), eq(List.class));
+        when(wrapper.getCategoryStatsForApplications(List.of(missedApp, unratedApp))).thenReturn(List.of(loadedStats));
+
+        List<RatingSummary> summaries = service.getSummaries(List.of(cachedApp, missedApp, unratedApp, cachedApp));
+
+        assertThat(summaries).extracting(RatingSummary::applicationId).containsExactly(cachedApp, missedApp, unratedApp);
+        assertThat(summaries).extracting(RatingSummary::average).containsExactly(5.0, 3.0, 0.0);
+        verify(redisCacheService, times(1)).getAll(anyList(), eq(List.class));
+        verify(redisCacheService, never()).get(anyString(), any());
+        verify(wrapper, never()).getCategoryStatsForApplication(any());
+        verify(redisCacheService).putAll(Map.of(
+            CacheKeyBuilder.ratingStatsKey(missedApp.toString()), List.of(loadedStats),
+            CacheKeyBuilder.ratingStatsKey(unratedApp.toString()), List.of()));
+    }
+
+    @Test
+    void getSummaries_tooManyIds_throws() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i <= RatingServiceImpl.MAX_SUMMARY_IDS; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        assertThrows(IllegalArgumentException.class, () -> service.getSummaries(ids));
+        verifyNoInteractions(redisCacheService);
+    }
+
+    @Test
+    void getRatingsByApplicationIdAfter_pagesByRatingThenId() {
+        UUID appId = UUID.randomUUID();
+        Rating top = new Rating();
+        top.setId(UUID.randomUUID());
+        top.setRating(5);
+        Rating next = new Rating();
+        next.setId(UUID.randomUUID());
+        next.setRating(4);
+        UUID cursorId = UUID.randomUUID();
+        String after = KeysetCursor.of(5L, cursorId).encode();
+        when(wrapper.getRatingsByApplicationIdAfter(appId, RatingSort.RATING, false, KeysetCursor.of(5L, cursorId), 2))
+            .thenReturn(List.of(top, next));
+
+        CursorPage<Rating> page = service.getRatingsByApplicationIdAfter(appId, RatingSort.RATING, false, after, 1);
+
+        assertThat(page.content()).containsExactly(top);
+        assertEquals(KeysetCursor.of(5L, top.getId()), KeysetCursor.decode(page.nextCursor()));
+    }
+
+    @Test
+    void getRatingsByApplicationId_cachesPerSort() {
+        UUID appId = UUID.randomUUID();
+        PageRequest byRating = PageRequest.of(0, 10, RatingSort.RATING.toSort(true));
+        when(wrapper.getRatingsByApplicationId(appId, byRating)).thenReturn(new PageImpl<>(List.of()));
+
+        service.getRatingsByApplicationId(appId, byRating);
+
+        verify(redisCacheService).get(CacheKeyBuilder.ratingsPageKey(appId.toString(), 0, 10, byRating.getSort().toString()) + ":v1", Page.class);
+    }
+
+    @Test
+    void ratingSort_rejectsUnindexedColumns() {
+        assertEquals(RatingSort.UPDATED_AT, RatingSort.of("updatedat"));
+        assertThrows(IllegalArgumentException.class, () -> RatingSort.of("userName"));
+    }
+
+    private static ApplicationRatingStats statsRow(UUID applicationId, int scale, long count) {
+        ApplicationRatingStats stats = new ApplicationRatingStats();
+        stats.setId(new ApplicationRatingStatsId(applicationId, (short) scale));
+        stats.setCount(count);
+        return stats;
+    }
+}
@@ -0,0 +1,180 @@
+package com.ratingsandreviews.rating;
+
+import com.ratingsandreviews.cache.ApplicationVersions;
+import com.ratingsandreviews.cache.CacheKeyBuilder;
+import com.ratingsandreviews.cache.CacheService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RatingStatsReconcilerTest {
+    @Mock
+    private RatingBatchRepository batchRepository;
+
+    @Mock
+    private RatingHistogram ratingHistogram;
+
+    @Mock
+    private ApplicationVersions applicationVersions;
+
+    @Mock
+    private CacheService redisCacheService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private RatingStatsReconciler reconciler;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(batchRepository.withAdvisoryLock(anyLong(), any()))
+            .thenAnswer(inv -> Optional.of(inv.<Supplier<?>>getArgument(1).get()));
+        when(ratingHistogram.awaitFlushedEverywhere(anyLong())).thenReturn(true);
+        when(applicationVersions.current(anyCollection())).thenAnswer(inv -> versions(inv.getArgument(0), 1L));
+        reconciler = new RatingStatsReconciler(batchRepository, ratingHistogram, applicationVersions, redisCacheService,
+            transactionManager, 2, 2, 1000, 0);
+    }
+
+    private static Map<UUID, Long> versions(Collection<UUID> applicationIds, long version) {
+        Map<UUID, Long> versions = new LinkedHashMap<>();
+        applicationIds.forEach(id -> versions.put(id, version));
+        return versions;
+    }
+
+    @AfterEach
+    void tearDown() {
+        reconciler.shutdown();
+    }
+
+    @Test
+    void reconcile_repairsOnlyDriftedRows() throws Exception {
+        UUID appA = UUID.randomUUID();
+        UUID appB = UUID.randomUUID();
+        when(batchRepository.findApplicationIds()).thenReturn(List.of(appA, appB));
+        when(batchRepository.countRatingsByScale(anyCollection())).thenReturn(List.of(
+            new RatingBatchRepository.StatsDelta(appA, (short) 5, 3),
+            new RatingBatchRepository.StatsDelta(appA, (short) 4, 1),
+            new RatingBatchRepository.StatsDelta(appB, (short) 1, 2)));
+        when(batchRepository.findStats(anyCollection())).thenReturn(List.of(
+            new RatingBatchRepository.StatsDelta(appA, (short) 5, 3),
+            new RatingBatchRepository.StatsDelta(appA, (short) 4, 2),
+            new RatingBatchRepository.StatsDelta(appB, (short) 1, 2)));
+
+        RatingStatsReconciler.ReconciliationReport report = reconciler.reconcile();
+
+        verify(ratingHistogram).awaitFlushedEverywhere(1000);
+        verify(batchRepository).withAdvisoryLock(eq(RatingStatsReconciler.ADVISORY_LOCK_KEY), any());
+        verify(batchRepository).addToStats(List.of(new RatingBatchRepository.StatsDelta(appA, (short) 4, -1)));
+        verify(redisCacheService).evict(CacheKeyBuilder.ratingStatsKey(appA.toString()));
+        verify(redisCacheService, never()).evict(CacheKeyBuilder.ratingStatsKey(appB.toString()));
+        verify(applicationVersions).bump(appA);
+        verify(applicationVersions, never()).bump(appB);
+        assertThat(report.applications()).isEqualTo(2);
+        assertThat(report.driftedApplications()).isEqualTo(1);
+        assertThat(report.repairedRows()).isEqualTo(1);
+    }
+
+    @Test
+    void reconcile_missingStatsRow_isInserted() {
+        UUID app = UUID.randomUUID();
+        when(batchRepository.findApplicationIds()).thenReturn(List.of(app));
+        when(batchRepository.countRatingsByScale(anyCollection())).thenReturn(List.of(
+            new RatingBatchRepository.StatsDelta(app, (short) 2, 7)));
+        when(batchRepository.findStats(anyCollection())).thenReturn(List.of());
+
+        reconciler.reconcile();
+
+        verify(batchRepository).addToStats(List.of(new RatingBatchRepository.StatsDelta(app, (short) 2, 7)));
+    }
+
+    @Test
+    void reconcile_splitsApplicationsIntoChunks() {
+        List<UUID> apps = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        when(batchRepository.findApplicationIds()).thenReturn(apps);
+        when(batchRepository.countRatingsByScale(anyCollection())).thenReturn(List.of());
+        when(batchRepository.findStats(anyCollection())).thenReturn(List.of());
+
+        RatingStatsReconciler.ReconciliationReport report = reconciler.reconcile();
+
+        verify(batchRepository, times(3)).countRatingsByScale(anyCollection());
+        verify(batchRepository, never()).addToStats(anyList());
+        assertThat(report.driftedApplications()).isZero();
+    }
+
+    @Test
+    void reconcile_instancesNotFlushedInTime_skipsChunk() throws Exception {
+        UUID app = UUID.randomUUID();
+        when(batchRepository.findApplicationIds()).thenReturn(List.of(app));
+        // Another instance may still hold unflushed counts for app, which would look like drift
+        when(ratingHistogram.awaitFlushedEverywhere(anyLong())).thenReturn(false);
+
+        RatingStatsReconciler.ReconciliationReport report = reconciler.reconcile();
+
+        verify(batchRepository, never()).countRatingsByScale(anyCollection());
+        verify(batchRepository, never()).addToStats(anyList());
+        assertThat(report.unsettledApplications()).isEqualTo(1);
+    }
+
+    @Test
+    void reconcile_driftSeenByOnlyOneCheck_isNotRepaired() {
+        UUID app = UUID.randomUUID();
+        when(batchRepository.findApplicationIds()).thenReturn(List.of(app));
+        // The first check catches a rating committed but not yet recorded; by the second it has been flushed
+        when(batchRepository.countRatingsByScale(anyCollection())).thenReturn(
+            List.of(new RatingBatchRepository.StatsDelta(app, (short) 4, 3)),
+            List.of(new RatingBatchRepository.StatsDelta(app, (short) 4, 3)));
+        when(batchRepository.findStats(anyCollection())).thenReturn(
+            List.of(new RatingBatchRepository.StatsDelta(app, (short) 4, 2)),
+            List.of(new RatingBatchRepository.StatsDelta(app, (short) 4, 3)));
+
+        reconciler.reconcile();
+
+        verify(batchRepository, never()).addToStats(anyList());
+    }
+
+    @Test
+    void reconcile_applicationWrittenDuringCheck_isNotRepaired() {
+        UUID app = UUID.randomUUID();
+        when(batchRepository.findApplicationIds()).thenReturn(List.of(app));
+        when(batchRepository.countRatingsByScale(anyCollection())).thenReturn(List.of(new RatingBatchRepository.StatsDelta(app, (short) 1, 1)));
+        when(batchRepository.findStats(anyCollection())).thenReturn(List.of());
+        // The version read before the barrier differs from the one read after both checks
+        when(applicationVersions.current(anyCollection()))
+            .thenAnswer(inv -> versions(inv.getArgument(0), 1L))
+            .thenAnswer(inv -> versions(inv.getArgument(0), 2L));
+
+        RatingStatsReconciler.ReconciliationReport report = reconciler.reconcile();
+
+        verify(batchRepository, times(2)).countRatingsByScale(anyCollection());
+        verify(batchRepository, never()).addToStats(anyList());
+        assertThat(report.unsettledApplications()).isEqualTo(1);
+    }
+
+    @Test
+    void reconcile_lockHeldElsewhere_skipsRun() throws Exception {
+        // doReturn: re-stubbing with when() would call the setUp answer with a null supplier
+        doReturn(Optional.empty()).when(batchRepository).withAdvisoryLock(anyLong(), any());
+
+        RatingStatsReconciler.ReconciliationReport report = reconciler.reconcile();
+
+        assertThat(report.skipped()).isTrue();
+        verify(ratingHistogram, never()).awaitFlushedEverywhere(anyLong());
+        verify(batchRepository, never()).findApplicationIds();
+    }
+}
@@ -0,0 +1,147 @@
+package com.ratingsandreviews.rating;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RatingWindowsTest {
+    @Mock
+    private RatingBatchRepository batchRepository;
+
+    private RatingWindows windows;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        windows = new RatingWindows(batchRepository, 100, 60_000);
+        when(batchRepository.findBuckets(any(UUID.class), any(Instant.class))).thenReturn(List.of());
+    }
+
+    @Test
+    void counts_onlyIncludeRatingsInsideTheWindow() {
+        UUID appId = UUID.randomUUID();
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        windows.record(appId, now, 5, 1);
+        windows.record(appId, now.minusDays(3), 4, 1);
+        windows.record(appId, now.minusDays(20), 1, 1);
+
+        assertThat(windows.counts(appId, RatingWindows.Window.DAY)).containsExactly(0, 0, 0, 0, 1);
+        assertThat(windows.counts(appId, RatingWindows.Window.WEEK)).containsExactly(0, 0, 0, 1, 1);
+        assertThat(windows.counts(appId, RatingWindows.Window.MONTH)).containsExactly(1, 0, 0, 1, 1);
+    }
+
+    @Test
+    void record_olderThanTheRing_isIgnored() {
+        UUID appId = UUID.randomUUID();
+        windows.record(appId, ZonedDateTime.now(ZoneOffset.UTC).minusDays(31), 3, 1);
+        windows.flush();
+        assertThat(windows.counts(appId, RatingWindows.Window.MONTH)).containsOnly(0);
+        verify(batchRepository, never()).addToBuckets(anyList());
+    }
+
+    @Test
+    void counts_loadPersistedBuckets() {
+        UUID appId = UUID.randomUUID();
+        Instant hourAgo = Instant.now().minus(Duration.ofHours(1));
+        when(batchRepository.findBuckets(eq(appId), any(Instant.class))).thenReturn(List.of(
+            new RatingBatchRepository.BucketDelta(appId, hourAgo, (short) 2, 6)));
+        assertThat(windows.counts(appId, RatingWindows.Window.DAY)).containsExactly(0, 6, 0, 0, 0);
+    }
+
+    @Test
+    void counts_loadOverlappingAFlush_isRetaken() {
+        UUID appId = UUID.randomUUID();
+        // A zero ttl reloads the ring on every call
+        windows = new RatingWindows(batchRepository, 100, 0);
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        windows.record(appId, now, 5, 1);
+
+        Instant bucketStart = Instant.ofEpochSecond(Math.floorDiv(now.toEpochSecond(), 3600) * 3600);
+        when(batchRepository.findBuckets(eq(appId), any(Instant.class)))
+            .thenAnswer(invocation -> {
+                // The flush moves the buffered delta into the table after this read has missed it
+                windows.flush();
+                return List.of();
+            })
+            .thenReturn(List.of(new RatingBatchRepository.BucketDelta(appId, bucketStart, (short) 5, 1)));
+
+        assertThat(windows.counts(appId, RatingWindows.Window.DAY)).containsExactly(0, 0, 0, 0, 1);
+    }
+
+    @Test
+    void record_onlyBuffersAndNeverReadsTheTable() {
+        UUID appId = UUID.randomUUID();
+        windows.record(appId, ZonedDateTime.now(ZoneOffset.UTC), 4, 1);
+        verify(batchRepository, never()).findBuckets(any(UUID.class), any(Instant.class));
+    }
+
+    @Test
+    void flush_movesDeltasIntoTheCachedRing() {
+        UUID appId = UUID.randomUUID();
+        assertThat(windows.counts(appId, RatingWindows.Window.DAY)).containsOnly(0);
+        windows.record(appId, ZonedDateTime.now(ZoneOffset.UTC), 3, 1);
+        assertThat(windows.counts(appId, RatingWindows.Window.DAY)).containsExactly(0, 0, 1, 0, 0);
+
+        windows.flush();
+
+        assertThat(windows.counts(appId, RatingWindows.Window.DAY)).containsExactly(0, 0, 1, 0, 0);
+        verify(batchRepository, times(1)).findBuckets(eq(appId), any(Instant.class));
+    }
+
+    @Test
+    void counts_ringReloadedWhileDeltasAreBuffered_stillIncludesThem() {
+        UUID appId = UUID.randomUUID();
+        // A zero ttl reloads the ring on every call
+        windows = new RatingWindows(batchRepository, 100, 0);
+        Instant hourAgo = Instant.now().minus(Duration.ofHours(1));
+        when(batchRepository.findBuckets(eq(appId), any(Instant.class))).thenReturn(List.of(
+            new RatingBatchRepository.BucketDelta(appId, hourAgo, (short) 2, 6)));
+        windows.record(appId, ZonedDateTime.now(ZoneOffset.UTC), 5, 1);
+
+        assertThat(windows.counts(appId, RatingWindows.Window.DAY)).containsExactly(0, 6, 0, 0, 1);
+        assertThat(windows.counts(appId, RatingWindows.Window.DAY)).containsExactly(0, 6, 0, 0, 1);
+    }
+
+    @Test
+    void flush_writesBufferedDeltasOnce() {
+        UUID appId = UUID.randomUUID();
+        ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
+        windows.record(appId, now, 3, 1);
+        windows.record(appId, now, 3, 1);
+        windows.flush();
+        windows.flush();
+
+        Instant bucketStart = Instant.ofEpochSecond(Math.floorDiv(now.toEpochSecond(), 3600) * 3600);
+        verify(batchRepository, times(1)).addToBuckets(List.of(
+            new RatingBatchRepository.BucketDelta(appId, bucketStart, (short) 3, 2)));
+    }
+
+    @Test
+    void flush_failure_keepsDeltasBuffered() {
+        UUID appId = UUID.randomUUID();
+        windows.record(appId, ZonedDateTime.now(ZoneOffset.UTC), 1, 1);
+        doThrow(new RuntimeException("db down")).doNothing().when(batchRepository).addToBuckets(anyList());
+        windows.flush();
+        windows.flush();
+        verify(batchRepository, times(2)).addToBuckets(anyList());
+    }
+
+    @Test
+    void window_of_rejectsUnknownLabels() {
+        assertThat(RatingWindows.Window.of("7D")).isEqualTo(RatingWindows.Window.WEEK);
+        assertThrows(IllegalArgumentException.class, () -> RatingWindows.Window.of("1y"));
+    }
+}
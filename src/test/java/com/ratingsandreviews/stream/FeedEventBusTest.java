@@ -0,0 +1,129 @@
+package com.ratingsandreviews.stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+
+class FeedEventBusTest {
+    private final List<RecordingEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final FeedEventBus eventBus = new FeedEventBus(60_000L, 2, 2) {
+        @Override
+        SseEmitter newEmitter(long timeoutMs) {
+            RecordingEmitter emitter = new RecordingEmitter(timeoutMs);
+            emitters.add(emitter);
+            return emitter;
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        emitters.forEach(emitter -> emitter.release.countDown());
+        eventBus.shutdown();
+    }
+
+    @Test
+    void subscribe_registersPerApplication() {
+        UUID appId = UUID.randomUUID();
+        UUID otherAppId = UUID.randomUUID();
+        eventBus.subscribe(appId);
+        eventBus.subscribe(appId);
+        eventBus.subscribe(otherAppId);
+        assertThat(eventBus.subscriberCount(appId)).isEqualTo(2);
+        assertThat(eventBus.subscriberCount(otherAppId)).isEqualTo(1);
+        assertThat(eventBus.subscriberCount(UUID.randomUUID())).isZero();
+    }
+
+    @Test
+    void subscribe_returnsEmitterWithConfiguredTimeout() {
+        SseEmitter emitter = eventBus.subscribe(UUID.randomUUID());
+        assertThat(emitter.getTimeout()).isEqualTo(60_000L);
+    }
+
+    @Test
+    void onEvent_withoutSubscribers_isIgnored() {
+        assertDoesNotThrow(() -> eventBus.onEvent(new FeedEvent(UUID.randomUUID(), FeedEvent.COMMENT_CREATED, "payload")));
+    }
+
+    @Test
+    void onEvent_deliversInOrderToSubscribersOfTheApplicationOnly() {
+        UUID appId = UUID.randomUUID();
+        RecordingEmitter subscriber = (RecordingEmitter) eventBus.subscribe(appId);
+        RecordingEmitter bystander = (RecordingEmitter) eventBus.subscribe(UUID.randomUUID());
+        subscriber.release.countDown();
+        bystander.release.countDown();
+
+        eventBus.onEvent(new FeedEvent(appId, FeedEvent.COMMENT_CREATED, "first"));
+        eventBus.onEvent(new FeedEvent(appId, FeedEvent.COMMENT_UPDATED, "second"));
+
+        waitUntil(() -> subscriber.sent.size() == 2);
+        assertThat(subscriber.sent.get(0)).contains("event:" + FeedEvent.COMMENT_CREATED).contains("first");
+        assertThat(subscriber.sent.get(1)).contains("event:" + FeedEvent.COMMENT_UPDATED).contains("second");
+        assertThat(bystander.sent).isEmpty();
+    }
+
+    @Test
+    void onEvent_stalledSubscriber_doesNotDelayOthers_andIsDroppedOnOverflow() {
+        UUID appId = UUID.randomUUID();
+        RecordingEmitter stalled = (RecordingEmitter) eventBus.subscribe(appId);
+        RecordingEmitter healthy = (RecordingEmitter) eventBus.subscribe(appId);
+        healthy.release.countDown();
+
+        // The stalled subscriber's worker blocks on the first write; two more fill its queue, the fourth overflows it.
+        // Each event reaches the healthy subscriber before the next is offered, so only the stalled queue can fill up.
+        for (int i = 0; i < 4; i++) {
+            int delivered = i + 1;
+            eventBus.onEvent(new FeedEvent(appId, FeedEvent.COMMENT_CREATED, "event-" + i));
+            waitUntil(() -> healthy.sent.size() == delivered);
+            if (i == 0) {
+                waitUntil(() -> stalled.blocked);
+            }
+        }
+
+        assertThat(healthy.sent).hasSize(4);
+        assertThat(stalled.sent).isEmpty();
+        assertThat(eventBus.subscriberCount(appId)).isEqualTo(1);
+    }
+
+    private static void waitUntil(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000L;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition met within 5s").isLessThan(deadline);
+            Thread.onSpinWait();
+        }
+    }
+
+    // Records the rendered events instead of writing to a response; blocks every write until released
+    private static final class RecordingEmitter extends SseEmitter {
+        private final List<String> sent = new CopyOnWriteArrayList<>();
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile boolean blocked;
+
+        RecordingEmitter(long timeoutMs) {
+            super(timeoutMs);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            blocked = true;
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            StringBuilder rendered = new StringBuilder();
+            builder.build().forEach(part -> rendered.append(part.getData()));
+            sent.add(rendered.toString());
+        }
+    }
+}
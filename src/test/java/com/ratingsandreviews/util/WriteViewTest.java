@@ -0,0 +1,42 @@
+package com.ratingsandreviews.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WriteViewTest {
+
+    @Test
+    void resolve_defaultsToMinimal() {
+        assertThat(WriteView.resolve(null, null)).isEqualTo(WriteView.MINIMAL);
+        assertThat(WriteView.resolve(null, "return=minimal")).isEqualTo(WriteView.MINIMAL);
+    }
+
+    @Test
+    void resolve_preferReturnRepresentation_isFull() {
+        assertThat(WriteView.resolve(null, "return=representation")).isEqualTo(WriteView.FULL);
+        assertThat(WriteView.resolve(null, "respond-async, Return=Representation")).isEqualTo(WriteView.FULL);
+    }
+
+    @Test
+    void resolve_viewParameterWinsOverPrefer() {
+        assertThat(WriteView.resolve("FULL", null)).isEqualTo(WriteView.FULL);
+        assertThat(WriteView.resolve("minimal", "return=representation")).isEqualTo(WriteView.MINIMAL);
+    }
+
+    @Test
+    void resolve_unknownView_throws() {
+        assertThrows(IllegalArgumentException.class, () -> WriteView.resolve("compact", null));
+    }
+
+    @Test
+    void eTag_isQuotedAndQualifiedByTheEntityId() {
+        UUID id = UUID.fromString("6f1c1f0e-3b7a-4a53-9d55-2a0f7f4f8e11");
+        assertThat(WriteView.eTag(id, 0)).isEqualTo("\"6f1c1f0e-3b7a-4a53-9d55-2a0f7f4f8e11-0\"");
+        assertThat(WriteView.eTag(id, 0)).isNotEqualTo(WriteView.eTag(UUID.randomUUID(), 0));
+        assertThat(WriteView.eTag(id, 1)).isNotEqualTo(WriteView.eTag(id, 0));
+    }
+}